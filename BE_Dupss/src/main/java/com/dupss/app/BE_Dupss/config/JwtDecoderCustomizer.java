@@ -3,53 +3,48 @@ package com.dupss.app.BE_Dupss.config;
 
 import com.dupss.app.BE_Dupss.service.JwtService;
 import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.SignedJWT;
 import lombok.RequiredArgsConstructor;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.BadJwtException;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
-import java.util.Objects;
+import java.util.Collections;
+import java.util.Map;
 
 @Component
 @RequiredArgsConstructor
 public class JwtDecoderCustomizer implements JwtDecoder {
 
-    @Value("${jwt.secret-key}")
-    private String secretKey;
-
-    private NimbusJwtDecoder nimbusJwtDecoder = null;
-
     private final JwtService jwtService;
 
+    // Chuyển đổi claim (exp, iat, ...) giống NimbusJwtDecoder mặc định
+    private final MappedJwtClaimSetConverter claimSetConverter =
+            MappedJwtClaimSetConverter.withDefaults(Collections.emptyMap());
+
     @Override
     public Jwt decode(String token) throws JwtException {
+        SignedJWT signedJWT;
+        Map<String, Object> claims;
         try {
-            if(!jwtService.verifyToken(token)) {
+            signedJWT = jwtService.verifyAccessToken(token);
+            if(signedJWT == null) {
                 throw new JwtException("Invalid token");
             }
-
-            if(Objects.isNull(nimbusJwtDecoder)) {
-                SecretKeySpec secretKeySpec = new SecretKeySpec(
-                        secretKey.getBytes(StandardCharsets.UTF_8),
-                        "HS384");
-
-                nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
-                        .macAlgorithm(MacAlgorithm.HS384)
-                        .build();
-            }
+            claims = claimSetConverter.convert(signedJWT.getJWTClaimsSet().getClaims());
         } catch (ParseException | JOSEException e) {
-            throw new RuntimeException(e);
+            throw new BadJwtException("Invalid token", e);
         }
-        return nimbusJwtDecoder.decode(token);
+
+        return Jwt.withTokenValue(token)
+                .headers(headers -> headers.putAll(signedJWT.getHeader().toJSONObject()))
+                .claims(jwtClaims -> jwtClaims.putAll(claims))
+                .build();
     }
 
 }
-
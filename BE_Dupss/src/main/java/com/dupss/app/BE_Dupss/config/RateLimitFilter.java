@@ -0,0 +1,350 @@
+package com.dupss.app.BE_Dupss.config;
+
+import com.dupss.app.BE_Dupss.exception.ErrorResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giới hạn tần suất cho các endpoint công khai tốn tài nguyên (đăng nhập, OTP qua email, chatbot).
+ * Mỗi route có ngân sách riêng, áp dụng theo IP và theo username nếu request đã xác thực.
+ * Với đăng nhập/đăng ký và OTP còn áp dụng thêm theo username/email gửi trong body, để đổi IP
+ * (botnet, proxy xoay vòng) không đoán mật khẩu hay OTP của một tài khoản nhanh hơn được.
+ * Ngân sách theo IP lớn hơn nhiều so với theo tài khoản, vì cả văn phòng/trường học có thể dùng chung một IP NAT.
+ * Trên các route này body phải là JSON và không quá max-body-bytes, nếu không request bị từ chối (4xx)
+ * thay vì lọt qua mà không bị tính theo tài khoản.
+ * IP lấy từ request.getRemoteAddr(): phía sau nginx, server.forward-headers-strategy=native để Tomcat
+ * thay bằng IP client trong X-Forwarded-For, chỉ khi kết nối đến từ proxy tin cậy (xem application.yml).
+ * Bucket được cài theo GCRA (tương đương token bucket) trên một AtomicLong nên không cần khoá;
+ * các key được giữ trong cache Caffeine có giới hạn kích thước và tự hết hạn khi không dùng.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final ObjectMapper objectMapper;
+    private final List<Route> routes;
+    private final Cache<String, AtomicLong> buckets;
+    private final int maxBodyBytes;
+
+    @Autowired
+    public RateLimitFilter(ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.rate-limit.max-keys:100000}") long maxKeys,
+                           @Value("${app.rate-limit.max-body-bytes:16384}") int maxBodyBytes,
+                           @Value("${app.rate-limit.auth.capacity:10}") int authCapacity,
+                           @Value("${app.rate-limit.auth.ip-capacity:100}") int authIpCapacity,
+                           @Value("${app.rate-limit.auth.period-seconds:60}") long authPeriod,
+                           @Value("${app.rate-limit.otp-forgot.capacity:3}") int forgotCapacity,
+                           @Value("${app.rate-limit.otp-forgot.ip-capacity:30}") int forgotIpCapacity,
+                           @Value("${app.rate-limit.otp-forgot.period-seconds:600}") long forgotPeriod,
+                           @Value("${app.rate-limit.otp-reset.capacity:5}") int resetCapacity,
+                           @Value("${app.rate-limit.otp-reset.ip-capacity:50}") int resetIpCapacity,
+                           @Value("${app.rate-limit.otp-reset.period-seconds:600}") long resetPeriod,
+                           @Value("${app.rate-limit.chat.capacity:20}") int chatCapacity,
+                           @Value("${app.rate-limit.chat.ip-capacity:60}") int chatIpCapacity,
+                           @Value("${app.rate-limit.chat.period-seconds:60}") long chatPeriod) {
+        this(objectMapper, meterRegistry, maxKeys, maxBodyBytes,
+                new Budget(authCapacity, authIpCapacity, authPeriod),
+                new Budget(forgotCapacity, forgotIpCapacity, forgotPeriod),
+                new Budget(resetCapacity, resetIpCapacity, resetPeriod),
+                new Budget(chatCapacity, chatIpCapacity, chatPeriod));
+    }
+
+    RateLimitFilter(ObjectMapper objectMapper, MeterRegistry meterRegistry, long maxKeys, int maxBodyBytes,
+                    Budget auth, Budget forgot, Budget reset, Budget chat) {
+        this.objectMapper = objectMapper;
+        this.maxBodyBytes = maxBodyBytes;
+        // Gửi OTP và nhập OTP có ngân sách riêng: gửi lại mã không làm hết lượt nhập mã và ngược lại
+        this.routes = List.of(
+                new Route("otp-forgot", List.of("/api/auth/password/forgot"), "email", forgot, meterRegistry),
+                new Route("otp-reset", List.of("/api/auth/password/reset"), "email", reset, meterRegistry),
+                new Route("auth", List.of("/api/auth/login", "/api/auth/register", "/api/auth/refresh-token"),
+                        "username", auth, meterRegistry),
+                new Route("chat", List.of("/chat", "/chat/**"), null, chat, meterRegistry)
+        );
+        long longestPeriod = Math.max(Math.max(auth.periodSeconds(), chat.periodSeconds()),
+                Math.max(forgot.periodSeconds(), reset.periodSeconds()));
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofSeconds(longestPeriod))
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Route route = findRoute(request.getRequestURI());
+        if (route == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long retryAfterNanos = route.ipBucket.tryAcquire("ip:" + request.getRemoteAddr());
+        if (retryAfterNanos == 0 && route.subjectField != null && HttpMethod.POST.matches(request.getMethod())) {
+            if (!isJson(request.getContentType())) {
+                route.rejected.increment();
+                writeError(request, response, HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Nội dung yêu cầu phải là JSON");
+                return;
+            }
+            // Không tin Content-Length: body chunked không khai báo độ dài nên luôn đọc tối đa maxBodyBytes + 1 byte
+            byte[] body = request.getInputStream().readNBytes(maxBodyBytes + 1);
+            if (body.length > maxBodyBytes) {
+                route.rejected.increment();
+                writeError(request, response, HttpStatus.PAYLOAD_TOO_LARGE, "Nội dung yêu cầu quá lớn");
+                return;
+            }
+            JsonNode json = parse(body);
+            if (json == null) {
+                route.rejected.increment();
+                writeError(request, response, HttpStatus.BAD_REQUEST, "Nội dung yêu cầu không hợp lệ");
+                return;
+            }
+            request = new CachedBodyRequest(request, body);
+            String subject = readSubject(json, route.subjectField);
+            if (subject != null) {
+                retryAfterNanos = route.subjectBucket.tryAcquire("subject:" + subject);
+            }
+        }
+        String username = currentUsername();
+        if (retryAfterNanos == 0 && username != null) {
+            retryAfterNanos = route.subjectBucket.tryAcquire("user:" + username);
+        }
+
+        if (retryAfterNanos > 0) {
+            route.rejected.increment();
+            writeTooManyRequests(request, response, retryAfterNanos);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static boolean isJson(String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("json");
+    }
+
+    private Route findRoute(String uri) {
+        for (Route route : routes) {
+            for (String pattern : route.patterns) {
+                if (pathMatcher.match(pattern, uri)) {
+                    return route;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Trả về null nếu body rỗng, không phải JSON hợp lệ hoặc không phải object.
+     */
+    private JsonNode parse(byte[] body) {
+        if (body.length == 0) {
+            return null;
+        }
+        try {
+            JsonNode json = objectMapper.readTree(body);
+            return json != null && json.isObject() ? json : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lấy username/email trong body JSON, chuẩn hoá để "Admin" và "admin " dùng chung một bucket.
+     * Không có trường này (vd. refresh-token) thì chỉ còn giới hạn theo IP/user.
+     */
+    private static String readSubject(JsonNode json, String field) {
+        JsonNode value = json.get(field);
+        if (value == null || !value.isTextual() || value.asText().isBlank()) {
+            return null;
+        }
+        return value.asText().trim().toLowerCase(Locale.ROOT);
+    }
+
+    private String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private void writeTooManyRequests(HttpServletRequest request, HttpServletResponse response, long retryAfterNanos)
+            throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999L));
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        writeError(request, response, HttpStatus.TOO_MANY_REQUESTS,
+                "Bạn đã gửi quá nhiều yêu cầu, vui lòng thử lại sau " + retryAfterSeconds + " giây");
+    }
+
+    private void writeError(HttpServletRequest request, HttpServletResponse response, HttpStatus status,
+                            String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                .timestamp(new Date())
+                .status(status.value())
+                .error(status.getReasonPhrase())
+                .message(message)
+                .path(request.getRequestURI())
+                .build();
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+    }
+
+    /**
+     * Ngân sách của một route: capacity request mỗi periodSeconds cho mỗi tài khoản, ipCapacity cho mỗi IP.
+     */
+    record Budget(int capacity, int ipCapacity, long periodSeconds) {
+    }
+
+    private final class Route {
+        private final List<String> patterns;
+        // Trường trong body JSON dùng làm key giới hạn thêm, null nếu route chỉ giới hạn theo IP/user
+        private final String subjectField;
+        private final Bucket subjectBucket;
+        private final Bucket ipBucket;
+        private final Counter rejected;
+
+        private Route(String name, List<String> patterns, String subjectField, Budget budget,
+                      MeterRegistry meterRegistry) {
+            this.patterns = patterns;
+            this.subjectField = subjectField;
+            this.subjectBucket = new Bucket(name, budget.capacity(), budget.periodSeconds());
+            this.ipBucket = new Bucket(name, budget.ipCapacity(), budget.periodSeconds());
+            this.rejected = Counter.builder("dupss.ratelimit.rejected")
+                    .tag("route", name)
+                    .description("Requests rejected by the in-process rate limiter")
+                    .register(meterRegistry);
+        }
+    }
+
+    private final class Bucket {
+        private final String route;
+        // Khoảng thời gian sinh ra một token và độ "dồn" tối đa cho phép (capacity token)
+        private final long emissionIntervalNanos;
+        private final long burstNanos;
+
+        private Bucket(String route, int capacity, long periodSeconds) {
+            this.route = route;
+            this.emissionIntervalNanos = TimeUnit.SECONDS.toNanos(periodSeconds) / capacity;
+            this.burstNanos = emissionIntervalNanos * capacity;
+        }
+
+        /**
+         * Trả về 0 nếu được phép, ngược lại là số nano giây cần chờ.
+         */
+        private long tryAcquire(String key) {
+            AtomicLong theoreticalArrival = buckets.get(route + "|" + key, k -> new AtomicLong(Long.MIN_VALUE));
+            while (true) {
+                long now = System.nanoTime();
+                long current = theoreticalArrival.get();
+                long tat = current == Long.MIN_VALUE || current < now ? now : current;
+                long next = tat + emissionIntervalNanos;
+                long wait = next - now - burstNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (theoreticalArrival.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Đọc trước body (nhỏ) để lấy key giới hạn rồi phát lại cho controller.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return input.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
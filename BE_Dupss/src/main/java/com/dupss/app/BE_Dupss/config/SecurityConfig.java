@@ -3,6 +3,8 @@ package com.dupss.app.BE_Dupss.config;
 import java.util.Arrays;
 import java.util.List;
 
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -37,6 +39,10 @@ public class SecurityConfig {
     private final UserDetailServiceCustomizer userDetailsService;
     private final CustomAuthenticationEntryPoint authenticationEntryPoint;
 
+    // Work factor của BCrypt (log2 số vòng), đo bằng BCryptLoginBenchmark trước khi tăng
+    @Value("${app.password-hashing.bcrypt-strength:10}")
+    private int bcryptStrength;
+
     // Danh sách các đường dẫn công khai (WHITE LIST)
     private static final String[] WHITE_LIST = {
             // Auth endpoints
@@ -57,12 +63,16 @@ public class SecurityConfig {
             // Topic và consultant endpoints
             "/api/topics",
             //Chat box
-            "/chat/**"
+            "/chat/**",
+            // Health check cho probe của load balancer / container
+            "/actuator/health",
+            "/actuator/health/**"
     };
 
     // Các đường dẫn API chỉ dành cho ADMIN
     private static final String[] ADMIN_ENDPOINTS = {
-            "/api/admin/**"
+            "/api/admin/**",
+            "/actuator/**"
     };
     // Các đường dẫn API dành cho ADMIN và MANAGER
     private static final String[] MANAGER_ENDPOINTS = {
@@ -86,7 +96,7 @@ public class SecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     @Bean
@@ -120,7 +130,9 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth ->
-                        auth.requestMatchers(WHITE_LIST).permitAll()
+                        // Lượt dispatch ASYNC của SSE đã được kiểm tra quyền ở request ban đầu
+                        auth.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                                .requestMatchers(WHITE_LIST).permitAll()
                                 .requestMatchers(ADMIN_ENDPOINTS).hasAuthority("ROLE_ADMIN")
                                 .requestMatchers(MANAGER_ENDPOINTS).hasAnyAuthority("ROLE_ADMIN", "ROLE_MANAGER")
                                 .anyRequest().authenticated()
@@ -10,6 +10,8 @@ import com.dupss.app.BE_Dupss.dto.response.CreateUserResponse;
 import com.dupss.app.BE_Dupss.dto.response.UpdateUserResponse;
 import com.dupss.app.BE_Dupss.dto.response.UserDetailResponse;
 import com.dupss.app.BE_Dupss.service.AdminService;
+import com.dupss.app.BE_Dupss.service.ConsultantRatingService;
+import com.dupss.app.BE_Dupss.service.CourseEnrollmentCounter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -27,6 +29,8 @@ import java.util.Map;
 public class AdminController {
 
     private final AdminService adminService;
+    private final ConsultantRatingService consultantRatingService;
+    private final CourseEnrollmentCounter courseEnrollmentCounter;
 
     @GetMapping("/users")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
@@ -92,4 +96,30 @@ public class AdminController {
         }
     }
 
-}
\ No newline at end of file
+    @PostMapping("/consultants/ratings/rebuild")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<?> rebuildConsultantRatings() {
+        try {
+            int consultants = consultantRatingService.rebuild();
+            return ResponseEntity.ok(Map.of("message", "Đã tính lại đánh giá cho " + consultants + " tư vấn viên"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(
+                    Map.of("message", "Lỗi: " + e.getMessage())
+            );
+        }
+    }
+
+    @PostMapping("/courses/enrollments/recount")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<?> recountCourseEnrollments() {
+        try {
+            int courses = courseEnrollmentCounter.recount();
+            return ResponseEntity.ok(Map.of("message", "Đã đếm lại lượt đăng ký cho " + courses + " khoá học"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(
+                    Map.of("message", "Lỗi: " + e.getMessage())
+            );
+        }
+    }
+
+}
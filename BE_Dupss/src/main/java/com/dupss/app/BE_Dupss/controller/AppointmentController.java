@@ -2,6 +2,8 @@ package com.dupss.app.BE_Dupss.controller;
 
 import com.dupss.app.BE_Dupss.dto.request.*;
 import com.dupss.app.BE_Dupss.dto.response.AppointmentResponseDto;
+import com.dupss.app.BE_Dupss.dto.response.CursorPageResponse;
+import com.dupss.app.BE_Dupss.dto.response.UnassignedAppointmentResponse;
 import com.dupss.app.BE_Dupss.service.AppointmentService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -33,13 +35,14 @@ public class AppointmentController {
     }
 
     /**
-     * API lấy tất cả cuộc hẹn
-     * Chỉ dành cho admin
+     * API tìm kiếm cuộc hẹn theo ngày, trạng thái, tư vấn viên, chủ đề, khách/thành viên
+     * Kết quả phân trang theo cursor: truyền nextCursor của trang trước để lấy trang tiếp theo
      */
     @GetMapping
-    @PreAuthorize("hasRole('ADMIN') or hasRole('ROLE_CONSULTANT')")
-    public ResponseEntity<List<AppointmentResponseDto>> getAllAppointments() {
-        return ResponseEntity.ok(appointmentService.getAllAppointments());
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_MANAGER', 'ROLE_STAFF', 'ROLE_CONSULTANT')")
+    public ResponseEntity<CursorPageResponse<AppointmentResponseDto>> searchAppointments(
+            @ModelAttribute AppointmentSearchRequest searchRequest) {
+        return ResponseEntity.ok(appointmentService.searchAppointments(searchRequest));
     }
 
     /**
@@ -134,8 +137,10 @@ public class AppointmentController {
 
     @GetMapping("/unassigned")
     @PreAuthorize("hasRole('ADMIN') or hasRole('ROLE_CONSULTANT')")
-    public ResponseEntity<List<AppointmentResponseDto>> getUnassignedAppointments() {
-        return ResponseEntity.ok(appointmentService.getUnassignedAppointments());
+    public ResponseEntity<CursorPageResponse<UnassignedAppointmentResponse>> getUnassignedAppointments(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(appointmentService.getUnassignedAppointments(cursor, size));
     }
 
     @PutMapping("/{id}/claim")
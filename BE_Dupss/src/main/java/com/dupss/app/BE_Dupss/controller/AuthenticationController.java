@@ -40,6 +40,7 @@ import java.text.ParseException;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import com.dupss.app.BE_Dupss.dto.request.ChangePasswordRequest;
 import com.dupss.app.BE_Dupss.dto.response.ChangePasswordResponse;
@@ -53,9 +54,8 @@ public class AuthenticationController {
     private final AuthenticationService authenticationService;
     private final UserService userService;
     @PostMapping("/login")
-    public ResponseEntity<LoginResponse> login(@Valid @RequestBody LoginRequest request) {
-        LoginResponse response = authenticationService.login(request);
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<LoginResponse>> login(@Valid @RequestBody LoginRequest request) {
+        return authenticationService.login(request).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/refresh-token")
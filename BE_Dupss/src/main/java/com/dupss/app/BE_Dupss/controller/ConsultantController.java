@@ -1,22 +1,34 @@
 package com.dupss.app.BE_Dupss.controller;
 
+import com.dupss.app.BE_Dupss.dto.request.SlotBulkRequest;
 import com.dupss.app.BE_Dupss.dto.request.SlotRequestDto;
 import com.dupss.app.BE_Dupss.dto.response.AppointmentResponseDto;
+import com.dupss.app.BE_Dupss.dto.response.CursorPageResponse;
+import com.dupss.app.BE_Dupss.dto.response.UnassignedAppointmentResponse;
 import com.dupss.app.BE_Dupss.dto.response.ConsultantResponse;
+import com.dupss.app.BE_Dupss.dto.response.SlotBulkResponse;
 import com.dupss.app.BE_Dupss.dto.response.SlotResponseDto;
 import com.dupss.app.BE_Dupss.entity.User;
 import com.dupss.app.BE_Dupss.respository.AppointmentRepository;
 import com.dupss.app.BE_Dupss.respository.SlotRepository;
 import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.service.AppointmentEventBroadcaster;
 import com.dupss.app.BE_Dupss.service.AppointmentService;
 import com.dupss.app.BE_Dupss.service.ConsultantService;
+import com.dupss.app.BE_Dupss.service.CurrentUserResolver;
 import com.dupss.app.BE_Dupss.service.SlotService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -33,6 +45,8 @@ public class ConsultantController {
     private final AppointmentRepository appointmentRepository;
     private final SlotService slotService;
     private final ConsultantService consultantService;
+    private final AppointmentEventBroadcaster appointmentEventBroadcaster;
+    private final CurrentUserResolver currentUserResolver;
 
     /**
      * API lấy tất cả tư vấn viên đang hoạt động
@@ -67,10 +81,40 @@ public class ConsultantController {
      */
     @GetMapping("/appointments/unassigned")
     @PreAuthorize("hasAnyAuthority('ROLE_CONSULTANT', 'ROLE_ADMIN', 'ROLE_MANAGER')")
-    public ResponseEntity<List<AppointmentResponseDto>> getUnassignedAppointments() {
-        List<AppointmentResponseDto> appointments = appointmentService.getUnassignedAppointments();
+    public ResponseEntity<CursorPageResponse<UnassignedAppointmentResponse>> getUnassignedAppointments(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        CursorPageResponse<UnassignedAppointmentResponse> appointments = appointmentService.getUnassignedAppointments(cursor, size);
         return ResponseEntity.ok(appointments);
     }
+
+    /**
+     * API đếm số cuộc hẹn chưa được phân công (cho thẻ thống kê trên dashboard)
+     */
+    @GetMapping("/appointments/unassigned/count")
+    @PreAuthorize("hasAnyAuthority('ROLE_CONSULTANT', 'ROLE_ADMIN', 'ROLE_MANAGER')")
+    public ResponseEntity<Map<String, Long>> countUnassignedAppointments() {
+        return ResponseEntity.ok(Map.of("count", appointmentService.countUnassignedAppointments()));
+    }
+
+    /**
+     * API SSE đẩy sự kiện cuộc hẹn (tạo, nhận, bắt đầu, kết thúc, huỷ) thay cho việc poll danh sách.
+     * Tư vấn viên nhận sự kiện của mình và của hàng chờ phân công, admin/manager nhận tất cả.
+     * Khi kết nối lại, EventSource tự gửi header Last-Event-ID để phát lại các sự kiện bị lỡ;
+     * nhận sự kiện "resync" thì tải lại danh sách qua các API bên trên.
+     */
+    @GetMapping(value = "/appointments/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyAuthority('ROLE_CONSULTANT', 'ROLE_ADMIN', 'ROLE_MANAGER')")
+    public SseEmitter streamAppointmentEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        Long consultantId = currentUserResolver.getCurrentUserId()
+                .orElseThrow(() -> new IllegalArgumentException("Người dùng chưa đăng nhập"));
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        boolean allAppointments = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch(authority -> authority.equals("ROLE_ADMIN") || authority.equals("ROLE_MANAGER"));
+        return appointmentEventBroadcaster.subscribe(consultantId, allAppointments, lastEventId);
+    }
     
     /**
      * API nhận cuộc hẹn chưa được phân công
@@ -103,6 +147,17 @@ public class ConsultantController {
         return ResponseEntity.status(HttpStatus.CREATED).body(res);
     }
 
+    /**
+     * API tạo hàng loạt slot từ lịch mẫu theo tuần trong một khoảng ngày
+     * Trả về số slot được tạo và số slot bị bỏ qua
+     */
+    @PostMapping("/slots/bulk")
+    @PreAuthorize("hasAuthority('ROLE_CONSULTANT')")
+    public ResponseEntity<SlotBulkResponse> createSlotsBulk(@Valid @RequestBody SlotBulkRequest request) {
+        SlotBulkResponse res = slotService.createSlotsBulk(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(res);
+    }
+
     @GetMapping("/available")
     public ResponseEntity<List<ConsultantResponse>> getAvailableConsultants() {
         List<ConsultantResponse> consultants = consultantService.getAllConsultants();
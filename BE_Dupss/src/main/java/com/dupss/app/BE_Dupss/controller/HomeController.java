@@ -147,4 +147,19 @@ public class HomeController {
         return ResponseEntity.ok(res);
     }
 
+    @GetMapping("/slots/earliest")
+    public ResponseEntity<List<SlotResponseDto>> getEarliestAvailableSlots(@RequestParam Long topicId,
+                                                                           @RequestParam(required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate from,
+                                                                           @RequestParam(required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate to,
+                                                                           @RequestParam(defaultValue = "10") int limit) {
+        if (from == null) {
+            from = LocalDate.now();
+        }
+        if (to == null) {
+            to = from.plusDays(30);
+        }
+        List<SlotResponseDto> res = slotService.findEarliestAvailableSlots(topicId, from, to, limit);
+        return ResponseEntity.ok(res);
+    }
+
 }
@@ -14,6 +14,8 @@ import com.dupss.app.BE_Dupss.respository.SurveyRepo;
 import com.dupss.app.BE_Dupss.respository.UserRepository;
 import com.dupss.app.BE_Dupss.service.AdminService;
 import com.dupss.app.BE_Dupss.service.BlogService;
+import com.dupss.app.BE_Dupss.service.ContentSearchIndex;
+import com.dupss.app.BE_Dupss.service.CourseDetailCache;
 import com.dupss.app.BE_Dupss.service.CourseService;
 import com.dupss.app.BE_Dupss.service.SurveyService;
 import com.dupss.app.BE_Dupss.service.TopicService;
@@ -47,6 +49,8 @@ public class ManagerController {
     private final BlogRepository blogRepository;
     private final SurveyRepo surveyRepository;
     private final UserRepository userRepository;
+    private final ContentSearchIndex contentSearchIndex;
+    private final CourseDetailCache courseDetailCache;
 
     @GetMapping("/dashboard")
     @PreAuthorize("hasAnyAuthority('ROLE_MANAGER', 'ROLE_ADMIN')")
@@ -242,6 +246,8 @@ public class ManagerController {
         course.setStatus(ApprovalStatus.APPROVED);
 //        course.setCheckedBy(currentUser);
         courseRepository.save(course);
+        contentSearchIndex.courseChanged(course);
+        courseDetailCache.evict(course.getId());
         return ResponseEntity.ok(Map.of("message", "Khóa học đã được phê duyệt thành công"));
     }
 
@@ -264,6 +270,8 @@ public class ManagerController {
         course.setStatus(ApprovalStatus.REJECTED);
 //        course.setCheckedBy(currentUser);
         courseRepository.save(course);
+        contentSearchIndex.courseChanged(course);
+        courseDetailCache.evict(course.getId());
         return ResponseEntity.ok(Map.of("message", "Khóa học đã bị từ chối"));
     }
 
@@ -286,6 +294,7 @@ public class ManagerController {
         blog.setStatus(ApprovalStatus.APPROVED);
 //        blog.setCheckedBy(currentUser);
         blogRepository.save(blog);
+        contentSearchIndex.blogChanged(blog);
         return ResponseEntity.ok(Map.of("message", "Bài viết đã được phê duyệt thành công"));
     }
 
@@ -308,6 +317,7 @@ public class ManagerController {
         blog.setStatus(ApprovalStatus.REJECTED);
 //        blog.setCheckedBy(currentUser);
         blogRepository.save(blog);
+        contentSearchIndex.blogChanged(blog);
         return ResponseEntity.ok(Map.of("message", "Bài viết đã bị từ chối"));
     }
 
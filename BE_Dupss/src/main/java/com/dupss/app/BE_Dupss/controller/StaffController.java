@@ -16,6 +16,7 @@ import com.dupss.app.BE_Dupss.respository.BlogRepository;
 import com.dupss.app.BE_Dupss.respository.SurveyRepo;
 import com.dupss.app.BE_Dupss.respository.UserRepository;
 import com.dupss.app.BE_Dupss.service.BlogService;
+import com.dupss.app.BE_Dupss.service.ContentSearchIndex;
 import com.dupss.app.BE_Dupss.service.CourseService;
 import com.dupss.app.BE_Dupss.service.SurveyService;
 import jakarta.validation.Valid;
@@ -46,6 +47,7 @@ public class StaffController {
     private final UserRepository userRepository;
     private final BlogRepository blogRepository;
     private final SurveyRepo surveyRepository;
+    private final ContentSearchIndex contentSearchIndex;
 
     @GetMapping("/dashboard")
     @PreAuthorize("hasAnyAuthority('ROLE_STAFF', 'ROLE_ADMIN', 'ROLE_MANAGER')")
@@ -178,6 +180,7 @@ public class StaffController {
         }
         
         Blog updatedBlog = blogRepository.save(blog);
+        contentSearchIndex.blogChanged(updatedBlog);
         
         return ResponseEntity.ok(Map.of("message", "Cập nhật bài viết thành công", "id", updatedBlog.getId().toString()));
     }
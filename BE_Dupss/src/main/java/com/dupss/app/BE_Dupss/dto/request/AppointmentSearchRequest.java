@@ -0,0 +1,30 @@
+package com.dupss.app.BE_Dupss.dto.request;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * Bộ lọc tìm kiếm cuộc hẹn cho staff/manager. Các trường để trống thì không lọc theo trường đó.
+ */
+@Data
+@NoArgsConstructor
+public class AppointmentSearchRequest {
+
+    @DateTimeFormat(pattern = "dd/MM/yyyy")
+    private LocalDate fromDate;
+
+    @DateTimeFormat(pattern = "dd/MM/yyyy")
+    private LocalDate toDate;
+
+    private String status;
+    private Long consultantId;
+    private Long topicId;
+    private Boolean guest;
+
+    // nextCursor của trang trước, để trống khi lấy trang đầu
+    private String cursor;
+    private int size = 20;
+}
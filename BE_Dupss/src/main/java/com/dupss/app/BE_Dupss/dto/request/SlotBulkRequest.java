@@ -0,0 +1,34 @@
+package com.dupss.app.BE_Dupss.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tạo hàng loạt slot 1 giờ từ lịch mẫu theo tuần, ví dụ {"MONDAY": ["08:00", "09:00"], "FRIDAY": ["14:00"]}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotBulkRequest {
+
+    @NotNull(message = "Ngày bắt đầu không được để trống")
+    @JsonFormat(pattern = "dd/MM/yyyy")
+    private LocalDate fromDate;
+
+    @NotNull(message = "Ngày kết thúc không được để trống")
+    @JsonFormat(pattern = "dd/MM/yyyy")
+    private LocalDate toDate;
+
+    @NotEmpty(message = "Lịch mẫu theo tuần không được để trống")
+    private Map<DayOfWeek, List<LocalTime>> weeklyTemplate;
+}
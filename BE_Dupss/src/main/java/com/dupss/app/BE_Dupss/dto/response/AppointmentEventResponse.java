@@ -0,0 +1,44 @@
+package com.dupss.app.BE_Dupss.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Sự kiện thay đổi cuộc hẹn đẩy qua SSE cho dashboard tư vấn viên, đủ để cập nhật danh sách
+ * mà không phải gọi lại API danh sách.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentEventResponse {
+
+    public enum Type { CREATED, CLAIMED, ASSIGNED, STARTED, ENDED, CANCELLED, STATUS_CHANGED }
+
+    private Type type;
+    private Long appointmentId;
+    private String status;
+    private Long consultantId;
+    private String consultantName;
+    // Tư vấn viên trước khi đổi, để client bỏ cuộc hẹn khỏi danh sách chờ phân công hoặc của người cũ
+    private Long previousConsultantId;
+    private String customerName;
+    private String topicName;
+    private boolean isGuest;
+
+    @JsonFormat(pattern = "dd/MM/yyyy")
+    private LocalDate appointmentDate;
+
+    @JsonFormat(pattern = "HH:mm")
+    private LocalTime appointmentTime;
+
+    @JsonFormat(pattern = "dd/MM/yyyy HH:mm:ss")
+    private LocalDateTime occurredAt;
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 @AllArgsConstructor
@@ -15,4 +16,9 @@ public class ConsultantResponse {
     private String avatar;
     private String certificates;
     private String bio;
+    // Điểm trung bình, null nếu chưa có đánh giá
+    private Double averageRating;
+    private long reviewCount;
+    // Số lượt đánh giá theo mức điểm 1-5
+    private Map<Integer, Long> ratingDistribution;
 }
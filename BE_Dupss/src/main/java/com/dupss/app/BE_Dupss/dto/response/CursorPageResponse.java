@@ -0,0 +1,20 @@
+package com.dupss.app.BE_Dupss.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Một trang kết quả phân trang theo keyset: gửi lại nextCursor để lấy trang tiếp theo.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+}
@@ -0,0 +1,17 @@
+package com.dupss.app.BE_Dupss.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotBulkResponse {
+
+    // Số slot được tạo mới
+    private int created;
+
+    // Số slot bỏ qua vì đã tồn tại hoặc đã qua giờ
+    private int skipped;
+}
@@ -0,0 +1,33 @@
+package com.dupss.app.BE_Dupss.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Thông tin rút gọn của cuộc hẹn đang chờ phân công, được select trực tiếp từ DB (không load entity).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UnassignedAppointmentResponse {
+
+    private Long id;
+    private String customerName;
+    private String phoneNumber;
+    private String email;
+
+    @JsonFormat(pattern = "dd/MM/yyyy")
+    private LocalDate appointmentDate;
+
+    @JsonFormat(pattern = "HH:mm")
+    private LocalTime appointmentTime;
+
+    private String topicName;
+    private boolean isGuest;
+    private String status;
+}
@@ -10,7 +10,15 @@ import java.time.LocalTime;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "appointments")
+@Table(name = "appointments",
+        indexes = {
+                @Index(name = "idx_appointments_status_consultant", columnList = "status, consultant_id"),
+                @Index(name = "idx_appointments_date", columnList = "appointment_date, id"),
+                @Index(name = "idx_appointments_status_date", columnList = "status, appointment_date, id"),
+                @Index(name = "idx_appointments_consultant_date", columnList = "consultant_id, appointment_date, id"),
+                @Index(name = "idx_appointments_topic_date", columnList = "topic_id, appointment_date, id"),
+                @Index(name = "idx_appointments_reminder", columnList = "status, reminder_sent_at, appointment_date, appointment_time")
+        })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -74,4 +82,8 @@ public class Appointment {
     
     @Column(name = "dupss_meet_link", length = 500)
     private String linkMeet;
+
+    // Thời điểm đã gửi email nhắc lịch, null nếu chưa gửi
+    @Column(name = "reminder_sent_at")
+    private LocalDateTime reminderSentAt;
 } 
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.dupss.app.BE_Dupss.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Tổng hợp đánh giá của một tư vấn viên, cộng dồn trong cùng transaction với mỗi lượt đánh giá cuộc hẹn
+@Entity
+@Table(name = "consultant_rating_stats")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class ConsultantRatingStats {
+    @Id
+    @Column(name = "consultant_id")
+    private Long consultantId;
+
+    @Column(name = "review_count", nullable = false)
+    private long reviewCount;
+
+    @Column(name = "score_sum", nullable = false)
+    private long scoreSum;
+
+    // Số lượt đánh giá theo từng mức điểm 1-5
+    @Column(name = "score_1", nullable = false)
+    private long score1;
+
+    @Column(name = "score_2", nullable = false)
+    private long score2;
+
+    @Column(name = "score_3", nullable = false)
+    private long score3;
+
+    @Column(name = "score_4", nullable = false)
+    private long score4;
+
+    @Column(name = "score_5", nullable = false)
+    private long score5;
+
+    public Double getAverageScore() {
+        return reviewCount == 0 ? null : (double) scoreSum / reviewCount;
+    }
+}
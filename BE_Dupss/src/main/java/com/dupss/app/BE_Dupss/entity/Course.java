@@ -51,6 +51,11 @@ public class Course {
     private User creator;
 
     private Boolean active;
+
+    // Số lượt đăng ký, chỉ được cộng bằng câu UPDATE của CourseEnrollmentCounter nên JPA không ghi đè
+    @Column(name = "enrollment_count", insertable = false, updatable = false,
+            columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long enrollmentCount;
     
 //    @ManyToOne
 //    @JoinColumn(name = "checked_by_id")
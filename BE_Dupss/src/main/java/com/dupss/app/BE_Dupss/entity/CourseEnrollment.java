@@ -30,4 +30,8 @@ public class CourseEnrollment {
     private LocalDateTime completionDate;
     private LocalDateTime enrollmentDate;
 
+    // Đã được cộng vào course.enrollment_count chưa, chỉ được đặt bằng câu UPDATE của CourseEnrollmentCounter
+    @Column(insertable = false, updatable = false, columnDefinition = "BOOLEAN NOT NULL DEFAULT FALSE")
+    private Boolean counted;
+
 } 
\ No newline at end of file
@@ -3,13 +3,19 @@ package com.dupss.app.BE_Dupss.entity;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import lombok.*;
 
 import java.util.Date;
 
+// Chỉ lưu jti, thời điểm hết hạn và thời điểm thu hồi; bản ghi được xoá định kỳ khi token gốc đã hết hạn
 @Entity
-@Table(name = "invalid_tokens")
+@Table(name = "revoked_tokens",
+        indexes = {
+                @Index(name = "idx_revoked_tokens_expiration", columnList = "expiration_time"),
+                @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revoked_at")
+        })
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
@@ -19,8 +25,10 @@ public class InvalidatedToken {
     @Id
     private String id;
 
-    @Column(nullable = false, columnDefinition = "TEXT")
-    private String token;
-
+    @Column(name = "expiration_time", nullable = false)
     private Date expirationTime;
-}
\ No newline at end of file
+
+    // Các node khác đọc theo cột này để cập nhật chỉ mục in-memory; bản ghi cũ có thể null
+    @Column(name = "revoked_at")
+    private Date revokedAt;
+}
@@ -26,6 +26,10 @@ public class PasswordResetOtp {
     private LocalDateTime expiryTime;
     
     private boolean used;
+
+    // Số lần nhập OTP (dùng bởi JpaOtpStore)
+    @Builder.Default
+    private int attempts = 0;
     
     @PrePersist
     public void setExpiryTime() {
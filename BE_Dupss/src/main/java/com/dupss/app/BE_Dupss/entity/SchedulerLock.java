@@ -0,0 +1,33 @@
+package com.dupss.app.BE_Dupss.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Mỗi job định kỳ có một dòng; node nào cập nhật được locked_until thì được chạy job đến hết hạn lease
+@Entity
+@Table(name = "scheduler_locks")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+public class SchedulerLock {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "locked_by")
+    private String lockedBy;
+}
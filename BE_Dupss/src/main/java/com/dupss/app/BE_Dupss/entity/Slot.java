@@ -10,7 +10,8 @@ import java.time.LocalTime;
 import java.util.Date;
 
 @Entity
-@Table(name = "slots")
+@Table(name = "slots",
+        indexes = @Index(name = "idx_slots_date_start_available", columnList = "date, start_time, is_available"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
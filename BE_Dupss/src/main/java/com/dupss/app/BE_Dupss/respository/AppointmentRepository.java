@@ -1,37 +1,224 @@
 package com.dupss.app.BE_Dupss.respository;
 
+import com.dupss.app.BE_Dupss.dto.response.AppointmentResponseDto;
+import com.dupss.app.BE_Dupss.dto.response.UnassignedAppointmentResponse;
 import com.dupss.app.BE_Dupss.entity.Appointment;
-import com.dupss.app.BE_Dupss.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
 
-    List<Appointment> findByConsultant(User consultant);
+    /**
+     * Phần SELECT dùng chung cho các màn hình danh sách: chỉ lấy các cột AppointmentResponseDto cần
+     * trong một câu query, không load entity nên không kéo theo các quan hệ EAGER.
+     */
+    String RESPONSE_SELECT = """
+                SELECT new com.dupss.app.BE_Dupss.dto.response.AppointmentResponseDto(
+                    a.id, a.customerName, a.phoneNumber, a.email, a.appointmentDate, a.appointmentTime,
+                    t.name, c.fullname, c.id, a.isGuest, a.status, u.id,
+                    a.checkInTime, a.checkOutTime, a.consultantNote, a.reviewScore, a.customerReview,
+                    a.isReview, a.linkMeet)
+                FROM Appointment a
+                JOIN a.topic t
+                LEFT JOIN a.consultant c
+                LEFT JOIN a.user u
+            """;
+
+    @Query(RESPONSE_SELECT + "WHERE c.id = :consultantId")
+    List<AppointmentResponseDto> findResponsesByConsultantId(@Param("consultantId") Long consultantId);
 
-    List<Appointment> findByUser(User user);
+    @Query(RESPONSE_SELECT + "WHERE u.id = :userId")
+    List<AppointmentResponseDto> findResponsesByUserId(@Param("userId") Long userId);
 
-    List<Appointment> findByAppointmentDate(LocalDate date);
+    @Query(RESPONSE_SELECT + "WHERE a.isGuest = true AND a.email = :email ORDER BY a.appointmentDate DESC")
+    List<AppointmentResponseDto> findGuestResponsesByEmail(@Param("email") String email);
 
-    List<Appointment> findByIsGuestAndEmailOrderByAppointmentDateDesc(boolean isGuest, String email);
+    /**
+     * Tìm kiếm cuộc hẹn, mới nhất trước, phân trang keyset theo (ngày hẹn, id).
+     * Tham số null nghĩa là không lọc; MySQL rút gọn các điều kiện ":x IS NULL" khi bind giá trị
+     * nên vẫn dùng được các index (status|consultant_id|topic_id, appointment_date, id).
+     */
+    @Query(RESPONSE_SELECT + """
+                WHERE (:fromDate IS NULL OR a.appointmentDate >= :fromDate)
+                  AND (:toDate IS NULL OR a.appointmentDate <= :toDate)
+                  AND (:status IS NULL OR a.status = :status)
+                  AND (:consultantId IS NULL OR c.id = :consultantId)
+                  AND (:topicId IS NULL OR t.id = :topicId)
+                  AND (:guest IS NULL OR a.isGuest = :guest)
+                  AND (:lastDate IS NULL
+                       OR a.appointmentDate < :lastDate
+                       OR (a.appointmentDate = :lastDate AND a.id < :lastId))
+                ORDER BY a.appointmentDate DESC, a.id DESC
+            """)
+    List<AppointmentResponseDto> searchResponses(@Param("fromDate") LocalDate fromDate,
+                                                 @Param("toDate") LocalDate toDate,
+                                                 @Param("status") String status,
+                                                 @Param("consultantId") Long consultantId,
+                                                 @Param("topicId") Long topicId,
+                                                 @Param("guest") Boolean guest,
+                                                 @Param("lastDate") LocalDate lastDate,
+                                                 @Param("lastId") Long lastId,
+                                                 Limit limit);
 
     /**
      * Tìm các cuộc hẹn của một tư vấn viên với trạng thái đã hoàn thành hoặc đã hủy
      */
-    List<Appointment> findByConsultantAndStatusIn(User consultant, List<String> statuses);
+    @Query(RESPONSE_SELECT + "WHERE c.id = :consultantId AND a.status IN :statuses")
+    List<AppointmentResponseDto> findResponsesByConsultantIdAndStatusIn(@Param("consultantId") Long consultantId,
+                                                                        @Param("statuses") List<String> statuses);
 
     /**
      * Tìm các cuộc hẹn theo trạng thái
      */
     List<Appointment> findByStatus(String status);
 
+    /**
+     * Các cuộc hẹn theo trạng thái và tư vấn viên, phân trang keyset theo id (dùng index status, consultant_id)
+     */
+    @Query("""
+                SELECT new com.dupss.app.BE_Dupss.dto.response.UnassignedAppointmentResponse(
+                    a.id, a.customerName, a.phoneNumber, a.email, a.appointmentDate, a.appointmentTime,
+                    t.name, a.isGuest, a.status)
+                FROM Appointment a JOIN a.topic t
+                WHERE a.status = :status
+                  AND a.consultant.id = :consultantId
+                  AND a.id > :afterId
+                ORDER BY a.id
+            """)
+    List<UnassignedAppointmentResponse> findQueueByStatusAndConsultant(
+            @Param("status") String status,
+            @Param("consultantId") Long consultantId,
+            @Param("afterId") Long afterId,
+            Limit limit
+    );
+
+    /**
+     * Số cuộc hẹn theo trạng thái và tư vấn viên, đếm trên index (status, consultant_id) không cần join
+     */
+    @Query("SELECT COUNT(a) FROM Appointment a WHERE a.status = :status AND a.consultant.id = :consultantId")
+    long countByStatusAndConsultant(@Param("status") String status, @Param("consultantId") Long consultantId);
+
+    /**
+     * Cuộc hẹn đang chờ phân công từ ngày from trở đi, chỉ lấy các cột cần để chọn tư vấn viên,
+     * phân trang keyset theo id (dùng index status, consultant_id)
+     */
+    @Query("""
+                SELECT a.id AS id, a.appointmentDate AS appointmentDate, a.appointmentTime AS appointmentTime,
+                       a.topic.id AS topicId
+                FROM Appointment a
+                WHERE a.status = 'PENDING'
+                  AND a.consultant.id = :placeholderId
+                  AND a.appointmentDate >= :from
+                  AND a.id > :afterId
+                ORDER BY a.id
+            """)
+    List<PendingAssignment> findPendingForAssignment(@Param("placeholderId") Long placeholderId,
+                                                     @Param("from") LocalDate from,
+                                                     @Param("afterId") Long afterId,
+                                                     Limit limit);
+
+    /**
+     * Gán cuộc hẹn PENDING đang nằm ở tư vấn viên placeholder cho tư vấn viên khác và xác nhận luôn.
+     * Trả về 1 nếu gán thành công, 0 nếu cuộc hẹn đã được người khác nhận hoặc không còn PENDING.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE appointments SET consultant_id = :consultantId, status = 'CONFIRMED' " +
+            "WHERE id = :id AND status = 'PENDING' AND consultant_id = :placeholderId",
+            nativeQuery = true)
+    int assignIfPending(@Param("id") Long id, @Param("consultantId") Long consultantId,
+                        @Param("placeholderId") Long placeholderId);
+
+    /**
+     * Lưu đánh giá cho cuộc hẹn đã hoàn thành và chưa được đánh giá.
+     * Trả về 1 nếu lưu được, 0 nếu cuộc hẹn đã được đánh giá trước đó (kể cả do một request đồng thời).
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE appointments SET review_score = :score, customer_review = :review, is_review = true " +
+            "WHERE id = :id AND status = 'COMPLETED' AND is_review = false",
+            nativeQuery = true)
+    int submitReview(@Param("id") Long id, @Param("score") int score, @Param("review") String review);
+
+    /**
+     * Số cuộc hẹn đã xác nhận mà chưa kết thúc của từng tư vấn viên (dùng index status, consultant_id)
+     */
+    @Query("""
+                SELECT a.consultant.id AS consultantId, COUNT(a) AS load
+                FROM Appointment a
+                WHERE a.status = 'CONFIRMED'
+                GROUP BY a.consultant.id
+            """)
+    List<ConsultantLoad> countActiveByConsultant();
+
+    /**
+     * Các cặp (tư vấn viên, chủ đề) đã từng tư vấn thành công
+     */
+    @Query("""
+                SELECT DISTINCT a.consultant.id AS consultantId, a.topic.id AS topicId
+                FROM Appointment a
+                WHERE a.status = 'COMPLETED'
+            """)
+    List<ConsultantTopic> findCompletedTopics();
+
+    /**
+     * Cuộc hẹn đã xác nhận, chưa gửi nhắc lịch, có giờ hẹn trong khoảng [from, to]
+     * (dùng index status, reminder_sent_at, appointment_date, appointment_time), phân trang keyset theo id
+     */
+    @Query("""
+                SELECT a.id AS id, a.customerName AS customerName, a.email AS email,
+                       a.appointmentDate AS appointmentDate, a.appointmentTime AS appointmentTime,
+                       t.name AS topicName, c.fullname AS consultantName, a.linkMeet AS linkMeet
+                FROM Appointment a
+                JOIN a.topic t
+                LEFT JOIN a.consultant c
+                WHERE a.status = 'CONFIRMED'
+                  AND a.reminderSentAt IS NULL
+                  AND a.appointmentDate BETWEEN :fromDate AND :toDate
+                  AND (a.appointmentDate > :fromDate OR a.appointmentTime >= :fromTime)
+                  AND (a.appointmentDate < :toDate OR a.appointmentTime <= :toTime)
+                  AND a.id > :afterId
+                ORDER BY a.id
+            """)
+    List<ReminderCandidate> findReminderCandidates(@Param("fromDate") LocalDate fromDate,
+                                                   @Param("fromTime") LocalTime fromTime,
+                                                   @Param("toDate") LocalDate toDate,
+                                                   @Param("toTime") LocalTime toTime,
+                                                   @Param("afterId") Long afterId,
+                                                   Limit limit);
+
+    /**
+     * Đánh dấu đã gửi nhắc lịch, bỏ qua cuộc hẹn đã được đánh dấu trước đó. Trả về số dòng đã cập nhật.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Appointment a SET a.reminderSentAt = :sentAt WHERE a.id IN :ids AND a.reminderSentAt IS NULL")
+    int markReminderSent(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    /**
+     * Chuyển tối đa :limit cuộc hẹn PENDING/CONFIRMED chưa check-in mà đã quá giờ hẹn (trước mốc cutoff)
+     * sang CANCELLED, giữ nguyên ghi chú cũ nếu có. Trả về số dòng đã cập nhật.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE appointments SET status = 'CANCELLED', consultant_note = COALESCE(consultant_note, :note) " +
+            "WHERE status IN ('PENDING', 'CONFIRMED') AND check_in_time IS NULL " +
+            "AND (appointment_date < :cutoffDate OR (appointment_date = :cutoffDate AND appointment_time <= :cutoffTime)) " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    int cancelOverdueBatch(@Param("cutoffDate") LocalDate cutoffDate, @Param("cutoffTime") LocalTime cutoffTime,
+                           @Param("note") String note, @Param("limit") int limit);
+
     //    boolean existsByAppointmentDateAndAppointmentTime(LocalDate date, LocalTime time);
     @Query("""
                 SELECT COUNT(a) > 0
@@ -44,4 +231,32 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
             @Param("date") LocalDate date,
             @Param("time") LocalTime time
     );
-} 
\ No newline at end of file
+
+    interface PendingAssignment {
+        Long getId();
+        LocalDate getAppointmentDate();
+        LocalTime getAppointmentTime();
+        Long getTopicId();
+    }
+
+    interface ConsultantLoad {
+        Long getConsultantId();
+        long getLoad();
+    }
+
+    interface ConsultantTopic {
+        Long getConsultantId();
+        Long getTopicId();
+    }
+
+    interface ReminderCandidate {
+        Long getId();
+        String getCustomerName();
+        String getEmail();
+        LocalDate getAppointmentDate();
+        LocalTime getAppointmentTime();
+        String getTopicName();
+        String getConsultantName();
+        String getLinkMeet();
+    }
+}
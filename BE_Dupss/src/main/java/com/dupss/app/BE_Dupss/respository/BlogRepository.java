@@ -3,6 +3,7 @@ package com.dupss.app.BE_Dupss.respository;
 import com.dupss.app.BE_Dupss.entity.ApprovalStatus;
 import com.dupss.app.BE_Dupss.entity.Blog;
 import com.dupss.app.BE_Dupss.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -11,6 +12,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -24,4 +27,27 @@ public interface BlogRepository extends JpaRepository<Blog, Long> {
             "OR b.content LIKE CONCAT('%', :keyword, '%')) " +
             "AND (:topic IS NULL OR b.topic.id = :topic)")
     Page<Blog> search(@Param("keyword") String keyword, @Param("topic") Long topic, Pageable pageable);
+
+    // Bài viết cho trang kết quả của chỉ mục tìm kiếm; lọc lại trạng thái vì chỉ mục có thể trễ so với DB
+    @Query("SELECT b FROM Blog b WHERE b.id IN :ids " +
+            "AND b.status = com.dupss.app.BE_Dupss.entity.ApprovalStatus.APPROVED")
+    List<Blog> findSearchableByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT b.id FROM Blog b WHERE b.status = com.dupss.app.BE_Dupss.entity.ApprovalStatus.APPROVED")
+    List<Long> findSearchableIds();
+
+    @Query("SELECT b.id FROM Blog b WHERE b.status = com.dupss.app.BE_Dupss.entity.ApprovalStatus.APPROVED " +
+            "AND (b.createdAt >= :since OR b.updatedAt >= :since)")
+    List<Long> findSearchableIdsChangedSince(@Param("since") LocalDate since);
+
+    @Query("SELECT b.id AS id, b.title AS title, b.description AS description, b.content AS content, " +
+            "t.id AS topicId, t.name AS topicName FROM Blog b LEFT JOIN b.topic t " +
+            "WHERE b.status = com.dupss.app.BE_Dupss.entity.ApprovalStatus.APPROVED " +
+            "AND b.id > :afterId ORDER BY b.id")
+    List<SearchDocument> findSearchDocuments(@Param("afterId") long afterId, Limit limit);
+
+    @Query("SELECT b.id AS id, b.title AS title, b.description AS description, b.content AS content, " +
+            "t.id AS topicId, t.name AS topicName FROM Blog b LEFT JOIN b.topic t " +
+            "WHERE b.status = com.dupss.app.BE_Dupss.entity.ApprovalStatus.APPROVED AND b.id IN :ids")
+    List<SearchDocument> findSearchDocumentsByIdIn(@Param("ids") Collection<Long> ids);
 }
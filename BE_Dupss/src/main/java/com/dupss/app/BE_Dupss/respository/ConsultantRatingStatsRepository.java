@@ -0,0 +1,59 @@
+package com.dupss.app.BE_Dupss.respository;
+
+import com.dupss.app.BE_Dupss.entity.ConsultantRatingStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConsultantRatingStatsRepository extends JpaRepository<ConsultantRatingStats, Long> {
+
+    /**
+     * Cộng một lượt đánh giá vào tổng hợp của tư vấn viên, tạo dòng mới nếu chưa có.
+     * Một câu upsert nên các lượt đánh giá đồng thời không làm mất số đếm của nhau.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO consultant_rating_stats " +
+            "(consultant_id, review_count, score_sum, score_1, score_2, score_3, score_4, score_5) " +
+            "VALUES (:consultantId, 1, :score, " +
+            "CASE WHEN :score = 1 THEN 1 ELSE 0 END, CASE WHEN :score = 2 THEN 1 ELSE 0 END, " +
+            "CASE WHEN :score = 3 THEN 1 ELSE 0 END, CASE WHEN :score = 4 THEN 1 ELSE 0 END, " +
+            "CASE WHEN :score = 5 THEN 1 ELSE 0 END) " +
+            "ON DUPLICATE KEY UPDATE review_count = review_count + 1, score_sum = score_sum + :score, " +
+            "score_1 = score_1 + CASE WHEN :score = 1 THEN 1 ELSE 0 END, " +
+            "score_2 = score_2 + CASE WHEN :score = 2 THEN 1 ELSE 0 END, " +
+            "score_3 = score_3 + CASE WHEN :score = 3 THEN 1 ELSE 0 END, " +
+            "score_4 = score_4 + CASE WHEN :score = 4 THEN 1 ELSE 0 END, " +
+            "score_5 = score_5 + CASE WHEN :score = 5 THEN 1 ELSE 0 END",
+            nativeQuery = true)
+    int addReview(@Param("consultantId") Long consultantId, @Param("score") int score);
+
+    @Modifying
+    @Query(value = "DELETE FROM consultant_rating_stats", nativeQuery = true)
+    int deleteAllStats();
+
+    /**
+     * Tính lại toàn bộ tổng hợp từ các cuộc hẹn đã được đánh giá, chạy ngay sau deleteAllStats ở READ COMMITTED.
+     * Dòng nào vẫn trùng khoá lúc này là do một lượt đánh giá commit sau khi SELECT đọc bảng appointments,
+     * nên cộng thêm vào thay vì ghi đè. Trả về số dòng bị ảnh hưởng.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO consultant_rating_stats " +
+            "(consultant_id, review_count, score_sum, score_1, score_2, score_3, score_4, score_5) " +
+            "SELECT consultant_id, COUNT(*), SUM(review_score), " +
+            "SUM(CASE WHEN review_score = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN review_score = 2 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN review_score = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN review_score = 4 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN review_score = 5 THEN 1 ELSE 0 END) " +
+            "FROM appointments " +
+            "WHERE is_review = true AND consultant_id IS NOT NULL AND review_score BETWEEN 1 AND 5 " +
+            "GROUP BY consultant_id " +
+            "ON DUPLICATE KEY UPDATE review_count = review_count + VALUES(review_count), " +
+            "score_sum = score_sum + VALUES(score_sum), " +
+            "score_1 = score_1 + VALUES(score_1), score_2 = score_2 + VALUES(score_2), " +
+            "score_3 = score_3 + VALUES(score_3), score_4 = score_4 + VALUES(score_4), " +
+            "score_5 = score_5 + VALUES(score_5)",
+            nativeQuery = true)
+    int insertFromAppointments();
+}
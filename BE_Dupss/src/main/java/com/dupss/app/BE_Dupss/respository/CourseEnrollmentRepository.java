@@ -2,12 +2,20 @@ package com.dupss.app.BE_Dupss.respository;
 
 import com.dupss.app.BE_Dupss.entity.Course;
 import com.dupss.app.BE_Dupss.entity.CourseEnrollment;
+import com.dupss.app.BE_Dupss.entity.EnrollmentStatus;
 import com.dupss.app.BE_Dupss.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface CourseEnrollmentRepository extends JpaRepository<CourseEnrollment, Long> {
@@ -15,5 +23,30 @@ public interface CourseEnrollmentRepository extends JpaRepository<CourseEnrollme
     List<CourseEnrollment> findByCourse(Course course);
     Optional<CourseEnrollment> findByUserAndCourse(User user, Course course);
     boolean existsByUserAndCourse(User user, Course course);
+
+    // ID các khoá học trong danh sách mà người dùng đã đăng ký, một câu query cho cả trang danh sách
+    @Query("SELECT e.course.id FROM CourseEnrollment e WHERE e.user = :user AND e.course.id IN :courseIds")
+    Set<Long> findEnrolledCourseIds(@Param("user") User user, @Param("courseIds") Collection<Long> courseIds);
     long countByCourse(Course course);
+
+    @Query("SELECT e.status FROM CourseEnrollment e WHERE e.user = :user AND e.course.id = :courseId")
+    Optional<EnrollmentStatus> findStatusByUserAndCourseId(@Param("user") User user, @Param("courseId") Long courseId);
+
+    boolean existsByCountedTrue();
+    boolean existsByCountedFalse();
+
+    // Đánh dấu các lượt đăng ký vừa được CourseRepository.addEnrollments cộng vào số đếm, cùng transaction với câu cộng
+    @Modifying
+    @Query(value = "UPDATE course_enrollment SET counted = true WHERE id IN (:ids) AND counted = false", nativeQuery = true)
+    int markCounted(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Đánh dấu đã đếm các lượt đăng ký từ trước settledBefore mà vẫn chưa được đếm (node dừng trước khi flush),
+     * để lần đếm lại tính cả chúng. Lượt đăng ký mới hơn vẫn để flush của node đang giữ chúng cộng.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE course_enrollment SET counted = true WHERE counted = false " +
+            "AND (enrollment_date IS NULL OR enrollment_date < :settledBefore)", nativeQuery = true)
+    int markSettledCounted(@Param("settledBefore") LocalDateTime settledBefore);
 } 
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.dupss.app.BE_Dupss.respository;
 
 import com.dupss.app.BE_Dupss.entity.Course;
 import com.dupss.app.BE_Dupss.entity.CourseModule;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -10,4 +11,8 @@ import java.util.List;
 @Repository
 public interface CourseModuleRepository extends JpaRepository<CourseModule, Long> {
     List<CourseModule> findByCourseOrderByOrderIndexAsc(Course course);
+
+    // Lấy module kèm danh sách video trong một câu query (fetch join) cho trang chi tiết khoá học
+    @EntityGraph(attributePaths = "videos")
+    List<CourseModule> findWithVideosByCourseOrderByOrderIndexAsc(Course course);
 } 
\ No newline at end of file
@@ -3,18 +3,26 @@ package com.dupss.app.BE_Dupss.respository;
 import com.dupss.app.BE_Dupss.entity.ApprovalStatus;
 import com.dupss.app.BE_Dupss.entity.Course;
 import com.dupss.app.BE_Dupss.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CourseRepository extends JpaRepository<Course, Long> {
     List<Course> findByCreatorAndActiveTrue(User creator);
+    @EntityGraph(attributePaths = {"topic", "creator", "creator.consultantProfile"})
     List<Course> findTop3ByStatusAndActiveTrueOrderByCreatedAtDesc(ApprovalStatus status);
     List<Course> findByStatusAndActiveTrue(ApprovalStatus status);
     
@@ -30,6 +38,58 @@ public interface CourseRepository extends JpaRepository<Course, Long> {
         "LOWER(c.description) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
         "LOWER(c.topic.name) LIKE LOWER(CONCAT('%', :keyword, '%'))" +
         "))")
+    @EntityGraph(attributePaths = {"topic", "creator", "creator.consultantProfile"})
     Page<Course> searchCourses(@Param("keyword") String keyword,@Param("topic") Long topic, Pageable pageable);
 
+    // Khoá học cho trang kết quả của chỉ mục tìm kiếm; lọc lại trạng thái vì chỉ mục có thể trễ so với DB
+    @Query("SELECT c FROM Course c WHERE c.id IN :ids " +
+            "AND c.status = com.dupss.app.BE_Dupss.entity.ApprovalStatus.APPROVED AND c.active = true")
+    @EntityGraph(attributePaths = {"topic", "creator", "creator.consultantProfile"})
+    List<Course> findSearchableByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT c.id FROM Course c " +
+            "WHERE c.status = com.dupss.app.BE_Dupss.entity.ApprovalStatus.APPROVED AND c.active = true")
+    List<Long> findSearchableIds();
+
+    @Query("SELECT c.id FROM Course c " +
+            "WHERE c.status = com.dupss.app.BE_Dupss.entity.ApprovalStatus.APPROVED AND c.active = true " +
+            "AND (c.createdAt >= :since OR c.updatedAt >= :since)")
+    List<Long> findSearchableIdsChangedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT c.id AS id, c.title AS title, c.description AS description, c.content AS content, " +
+            "t.id AS topicId, t.name AS topicName FROM Course c LEFT JOIN c.topic t " +
+            "WHERE c.status = com.dupss.app.BE_Dupss.entity.ApprovalStatus.APPROVED AND c.active = true " +
+            "AND c.id > :afterId ORDER BY c.id")
+    List<SearchDocument> findSearchDocuments(@Param("afterId") long afterId, Limit limit);
+
+    @Query("SELECT c.id AS id, c.title AS title, c.description AS description, c.content AS content, " +
+            "t.id AS topicId, t.name AS topicName FROM Course c LEFT JOIN c.topic t " +
+            "WHERE c.status = com.dupss.app.BE_Dupss.entity.ApprovalStatus.APPROVED AND c.active = true " +
+            "AND c.id IN :ids")
+    List<SearchDocument> findSearchDocumentsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Chỉ đọc cột đếm, cho trang chi tiết khoá học lấy từ cache không có sẵn entity Course
+    @Query("SELECT c.enrollmentCount FROM Course c WHERE c.id = :id")
+    Optional<Long> findEnrollmentCountById(@Param("id") Long id);
+
+    /**
+     * Cộng vào enrollment_count các lượt đăng ký trong danh sách chưa được đếm. Chạy cùng transaction với
+     * CourseEnrollmentRepository.markCounted để mỗi lượt đăng ký chỉ được cộng một lần.
+     */
+    @Modifying
+    @Query(value = "UPDATE course c SET enrollment_count = enrollment_count + " +
+            "(SELECT COUNT(*) FROM course_enrollment e WHERE e.id IN (:enrollmentIds) AND e.course_id = c.id " +
+            "AND e.counted = false) WHERE c.id = :id", nativeQuery = true)
+    int addEnrollments(@Param("id") Long id, @Param("enrollmentIds") Collection<Long> enrollmentIds);
+
+    /**
+     * Đặt lại số lượt đăng ký của mọi khoá học bằng số lượt đăng ký đã được đánh dấu đếm.
+     * Trả về số khoá học được cập nhật.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE course c SET enrollment_count = " +
+            "(SELECT COUNT(*) FROM course_enrollment e WHERE e.course_id = c.id AND e.counted = true)", nativeQuery = true)
+    int recountEnrollments();
+
 } 
\ No newline at end of file
@@ -2,6 +2,24 @@ package com.dupss.app.BE_Dupss.respository;
 
 import com.dupss.app.BE_Dupss.entity.InvalidatedToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
 
 public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedToken, String> {
-}
\ No newline at end of file
+    List<InvalidatedToken> findByExpirationTimeAfter(Date time);
+
+    List<InvalidatedToken> findByRevokedAtGreaterThanEqualAndExpirationTimeAfter(Date revokedSince, Date time);
+
+    /**
+     * Xoá tối đa :limit bản ghi đã hết hạn, trả về số bản ghi đã xoá
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM revoked_tokens WHERE expiration_time < :now LIMIT :limit", nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") Date now, @Param("limit") int limit);
+}
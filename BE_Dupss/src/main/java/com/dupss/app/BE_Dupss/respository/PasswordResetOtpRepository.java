@@ -1,7 +1,9 @@
 package com.dupss.app.BE_Dupss.respository;
 
 import com.dupss.app.BE_Dupss.entity.PasswordResetOtp;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -13,5 +15,7 @@ public interface PasswordResetOtpRepository extends JpaRepository<PasswordResetO
     @Query("SELECT p FROM PasswordResetOtp p WHERE p.email = :email AND p.used = false ORDER BY p.id DESC")
     Optional<PasswordResetOtp> findLatestOtpByEmail(String email);
     
-    Optional<PasswordResetOtp> findByEmailAndOtpAndUsedFalse(String email, String otp);
+    // Khoá dòng OTP để các lượt nhập song song không ghi đè số lần nhập của nhau
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<PasswordResetOtp> findFirstByEmailAndUsedFalseOrderByIdDesc(String email);
 } 
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.dupss.app.BE_Dupss.respository;
+
+import com.dupss.app.BE_Dupss.entity.SchedulerLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface SchedulerLockRepository extends JpaRepository<SchedulerLock, String> {
+
+    /**
+     * Nhận lease nếu lease hiện tại đã hết hạn, trả về 1 nếu thành công
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :until, l.lockedBy = :owner " +
+            "WHERE l.name = :name AND l.lockedUntil <= :now")
+    int acquire(@Param("name") String name, @Param("owner") String owner,
+                @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /**
+     * Tạo dòng khoá cho job lần đầu chạy, lỗi khoá chính nếu node khác đã tạo trước
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO scheduler_locks (name, locked_until, locked_by) VALUES (:name, :until, :owner)",
+            nativeQuery = true)
+    int insert(@Param("name") String name, @Param("owner") String owner, @Param("until") LocalDateTime until);
+
+    /**
+     * Gia hạn lease khi node vẫn đang giữ và lease chưa hết hạn, trả về 1 nếu thành công
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :until " +
+            "WHERE l.name = :name AND l.lockedBy = :owner AND l.lockedUntil > :now")
+    int extend(@Param("name") String name, @Param("owner") String owner,
+               @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /**
+     * Trả lease sớm khi job chạy xong (chỉ node đang giữ lease mới trả được)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :now WHERE l.name = :name AND l.lockedBy = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
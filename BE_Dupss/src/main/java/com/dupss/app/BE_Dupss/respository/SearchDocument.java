@@ -0,0 +1,13 @@
+package com.dupss.app.BE_Dupss.respository;
+
+/**
+ * Các trường của khoá học/bài viết được đưa vào chỉ mục tìm kiếm.
+ */
+public interface SearchDocument {
+    Long getId();
+    String getTitle();
+    String getDescription();
+    String getContent();
+    Long getTopicId();
+    String getTopicName();
+}
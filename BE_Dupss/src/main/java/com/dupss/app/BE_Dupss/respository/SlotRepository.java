@@ -2,10 +2,13 @@ package com.dupss.app.BE_Dupss.respository;
 
 import com.dupss.app.BE_Dupss.entity.Slot;
 import com.dupss.app.BE_Dupss.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -20,6 +23,85 @@ public interface SlotRepository extends JpaRepository<Slot, Long> {
     List<Slot> findByConsultantAndAvailableTrue(User consultant);
     Optional<Slot> findByConsultantAndDateAndStartTime(User consultant, LocalDate date, LocalTime startTime);
     boolean existsByConsultantAndDateAndStartTime(User consultant, LocalDate date, LocalTime startTime);
+
+    /**
+     * Giữ slot nếu slot còn trống trong một câu UPDATE có điều kiện.
+     * Trả về 1 nếu giữ thành công, 0 nếu slot đã bị người khác đặt trước.
+     */
+    @Modifying
+    @Query("UPDATE Slot s SET s.available = false WHERE s.id = :id AND s.available = true")
+    int claimIfAvailable(@Param("id") Long id);
+
+    /**
+     * Các slot từ ngày from trở đi của một tư vấn viên, chỉ lấy cột của bảng slots (không join users).
+     */
+    @Query("SELECT s.id AS id, s.date AS date, s.startTime AS startTime, s.endTime AS endTime, s.available AS available " +
+            "FROM Slot s WHERE s.consultant.id = :consultantId AND s.date >= :from")
+    List<CalendarEntry> findCalendarEntries(@Param("consultantId") Long consultantId, @Param("from") LocalDate from);
+
+    @Query("SELECT s.id AS id, s.date AS date, s.startTime AS startTime, s.endTime AS endTime, s.available AS available " +
+            "FROM Slot s WHERE s.consultant.id = :consultantId AND s.date BETWEEN :from AND :to")
+    List<CalendarEntry> findCalendarEntriesBetween(@Param("consultantId") Long consultantId,
+                                                   @Param("from") LocalDate from,
+                                                   @Param("to") LocalDate to);
+
+    /**
+     * Đóng tối đa :limit slot đã qua giờ bắt đầu mà vẫn còn trống, trả về số dòng đã cập nhật
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE slots SET is_available = false " +
+            "WHERE is_available = true AND (date < :today OR (date = :today AND start_time <= :now)) LIMIT :limit",
+            nativeQuery = true)
+    int closePastSlotsBatch(@Param("today") LocalDate today, @Param("now") LocalTime now, @Param("limit") int limit);
+
+    /**
+     * Các slot còn trống của mọi tư vấn viên trong khoảng ngày, dùng để dựng chỉ mục phân công tự động
+     */
+    @Query("SELECT s.id AS id, s.consultant.id AS consultantId, s.date AS date, s.startTime AS startTime " +
+            "FROM Slot s WHERE s.available = true AND s.date BETWEEN :from AND :to")
+    List<FreeSlot> findFreeSlotsBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Các slot trống sớm nhất trong khoảng [from, toDate], sắp theo giờ bắt đầu.
+     * Chỉ đọc bảng slots và sắp đúng theo thứ tự index (date, start_time, is_available) nên DB quét index
+     * theo thứ tự và dừng khi đủ :limit dòng; lọc tư vấn viên đang hoạt động do nơi gọi làm.
+     * Slot của :excludedConsultantId (tư vấn viên placeholder) bị bỏ ngay trong câu truy vấn.
+     */
+    @Query("""
+                SELECT s.id AS id, s.consultant.id AS consultantId, s.date AS date,
+                       s.startTime AS startTime, s.endTime AS endTime
+                FROM Slot s
+                WHERE s.date BETWEEN :fromDate AND :toDate
+                  AND (s.date > :fromDate OR s.startTime >= :fromTime)
+                  AND s.available = true
+                  AND s.consultant.id <> :excludedConsultantId
+                ORDER BY s.date, s.startTime
+            """)
+    List<OpenSlot> findEarliestAvailable(@Param("fromDate") LocalDate fromDate,
+                                         @Param("fromTime") LocalTime fromTime,
+                                         @Param("toDate") LocalDate toDate,
+                                         @Param("excludedConsultantId") Long excludedConsultantId,
+                                         Limit limit);
+
+    interface CalendarEntry {
+        Long getId();
+        LocalDate getDate();
+        LocalTime getStartTime();
+        LocalTime getEndTime();
+        boolean isAvailable();
+    }
+
+    interface FreeSlot {
+        Long getId();
+        Long getConsultantId();
+        LocalDate getDate();
+        LocalTime getStartTime();
+    }
+
+    interface OpenSlot extends FreeSlot {
+        LocalTime getEndTime();
+    }
 //    List<Slot> findByConsultant(Consultant consultant);
 //    List<Slot> findByConsultantAndDate(Consultant consultant, LocalDate date);
 //    List<Slot> findByDateAndIsAvailable(LocalDate date, boolean isAvailable);
@@ -3,6 +3,8 @@ package com.dupss.app.BE_Dupss.respository;
 import com.dupss.app.BE_Dupss.entity.ERole;
 import com.dupss.app.BE_Dupss.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -15,9 +17,20 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     List<User> findByRoleAndEnabled(ERole role, boolean enabled);
 
+    @Query("SELECT u.id FROM User u WHERE u.role = :role AND u.enabled = true")
+    List<Long> findEnabledIdsByRole(@Param("role") ERole role);
+
+    @Query("SELECT u.id AS id, u.fullname AS fullname FROM User u WHERE u.role = :role AND u.enabled = true")
+    List<UserName> findEnabledNamesByRole(@Param("role") ERole role);
+
     Boolean existsByEmail(String email);
     Boolean existsByUsername(String username);
 
     List<User> findByEnabledTrue();
     User findByIdAndEnabledTrue(Long id);
+
+    interface UserName {
+        Long getId();
+        String getFullname();
+    }
 }
@@ -5,11 +5,19 @@ import com.dupss.app.BE_Dupss.entity.User;
 import com.dupss.app.BE_Dupss.entity.VideoCourse;
 import com.dupss.app.BE_Dupss.entity.WatchedVideo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
+import java.util.Set;
 
 public interface WatchedVideoRepo extends JpaRepository<WatchedVideo, Long> {
     boolean existsByUserAndVideoAndWatchedTrue(User user, VideoCourse video);
     Optional<WatchedVideo> findByUserAndVideo(User user, VideoCourse video);
     long countByUserAndVideo_CourseModule_Course_AndWatchedTrue(User user, Course course);
+
+    // ID các video của khoá học mà người dùng đã xem, để đánh dấu watched mà không query theo từng video
+    @Query("SELECT w.video.id FROM WatchedVideo w " +
+            "WHERE w.user = :user AND w.video.courseModule.course = :course AND w.watched = true")
+    Set<Long> findWatchedVideoIds(@Param("user") User user, @Param("course") Course course);
 }
@@ -30,6 +30,7 @@ public class AdminService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CurrentUserResolver currentUserResolver;
 
     public List<UserDetailResponse> getAllUsers() {
         List<User> users = userRepository.findAllByEnabled(true);
@@ -58,6 +59,7 @@ public class AdminService {
             ERole eRole = ERole.valueOf(roleName);
             user.setRole(eRole);
             userRepository.save(user);
+            currentUserResolver.evict(userId);
             log.info("Role {} assigned to user {}", roleName, userId);
         } catch (IllegalArgumentException e) {
             log.error("Invalid role name: {}", roleName);
@@ -156,6 +158,7 @@ public class AdminService {
         }
 
         User updatedUser = userRepository.save(user);
+        currentUserResolver.evict(userId);
         log.info("Admin updated user: {}", updatedUser.getUsername());
 
         return UpdateUserResponse.builder()
@@ -180,6 +183,7 @@ public class AdminService {
             user.setEnabled(false);
         }
         userRepository.save(user);
+        currentUserResolver.evict(userId);
         log.info("Admin deleted user: {} with ID: {}", user.getUsername(), userId);
     }
 
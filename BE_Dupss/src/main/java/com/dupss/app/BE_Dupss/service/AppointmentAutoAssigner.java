@@ -0,0 +1,433 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.dto.response.AppointmentEventResponse;
+import com.dupss.app.BE_Dupss.entity.Appointment;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.Slot;
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository;
+import com.dupss.app.BE_Dupss.respository.SlotRepository;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tự động phân công các cuộc hẹn PENDING đang nằm ở tư vấn viên placeholder (ID = 2).
+ * Giữ trong bộ nhớ chỉ mục các tư vấn viên còn slot trống theo từng giờ bắt đầu; mỗi tư vấn viên có một
+ * trạng thái duy nhất (tải hiện tại, chủ đề đã tư vấn xong, slot trống theo giờ) được các giờ tham chiếu tới.
+ * Tải là số cuộc hẹn đã xác nhận mà chưa kết thúc hoặc bị huỷ, nên bắt đầu cuộc hẹn không làm đổi tải.
+ * Đổi tải chỉ sửa trạng thái của chính tư vấn viên đó, O(1), không phải sắp xếp lại chỉ mục của từng slot;
+ * chọn tư vấn viên cho một cuộc hẹn là một lượt duyệt những người còn trống đúng giờ đó.
+ * Chỉ mục được dựng từ vài câu GROUP BY (không quét lại danh sách cuộc hẹn) rồi cập nhật dần khi cuộc hẹn
+ * được gán, kết thúc, bị huỷ và khi slot thay đổi; định kỳ dựng lại để bù các thay đổi ghi thẳng vào DB
+ * (sweeper, node khác). Việc gán vẫn do DB quyết định bằng UPDATE có điều kiện trên slot và cuộc hẹn,
+ * nên chỉ mục có lệch cũng không gây đặt trùng.
+ */
+@Service
+@Slf4j
+public class AppointmentAutoAssigner {
+
+    private static final String LOCK_NAME = "appointment-auto-assigner";
+    private static final long UNASSIGNED_CONSULTANT_ID = 2L;
+    private static final String CONFIRMED = "CONFIRMED";
+    private static final String COMPLETED = "COMPLETED";
+
+    private final AppointmentRepository appointmentRepository;
+    private final SlotRepository slotRepository;
+    private final UserRepository userRepository;
+    private final SchedulerLockService schedulerLockService;
+    private final SlotAvailabilityCalendar slotAvailabilityCalendar;
+    private final EmailService emailService;
+    private final AppointmentEventBroadcaster appointmentEventBroadcaster;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.auto-assign.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.auto-assign.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.auto-assign.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    @Value("${app.auto-assign.horizon-days:60}")
+    private int horizonDays;
+
+    @Value("${app.auto-assign.topic-load-tolerance:2}")
+    private int topicLoadTolerance;
+
+    @Value("${app.auto-assign.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.auto-assign.resync-minutes:30}")
+    private long resyncMinutes;
+
+    @Value("${app.auto-assign.lease-seconds:300}")
+    private long leaseSeconds;
+
+    private final Counter assignedCounter;
+    private final Counter unassignableCounter;
+    private final Timer runTimer;
+
+    // Toàn bộ trạng thái bên dưới được bảo vệ bởi khoá của this
+    private final Map<Long, ConsultantState> consultants = new HashMap<>();
+    private final Map<LocalDateTime, Set<ConsultantState>> freeByStart = new HashMap<>();
+    private LocalDateTime builtAt;
+    private boolean stale = true;
+    private long mutations;
+
+    public AppointmentAutoAssigner(AppointmentRepository appointmentRepository,
+                                   SlotRepository slotRepository,
+                                   UserRepository userRepository,
+                                   SchedulerLockService schedulerLockService,
+                                   SlotAvailabilityCalendar slotAvailabilityCalendar,
+                                   EmailService emailService,
+                                   AppointmentEventBroadcaster appointmentEventBroadcaster,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry) {
+        this.appointmentRepository = appointmentRepository;
+        this.slotRepository = slotRepository;
+        this.userRepository = userRepository;
+        this.schedulerLockService = schedulerLockService;
+        this.slotAvailabilityCalendar = slotAvailabilityCalendar;
+        this.emailService = emailService;
+        this.appointmentEventBroadcaster = appointmentEventBroadcaster;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.assignedCounter = Counter.builder("dupss.auto-assign.appointments")
+                .tag("outcome", "assigned")
+                .description("Pending appointments assigned to a consultant automatically")
+                .register(meterRegistry);
+        this.unassignableCounter = Counter.builder("dupss.auto-assign.appointments")
+                .tag("outcome", "no-candidate")
+                .description("Pending appointments left unassigned because no consultant was free")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("dupss.auto-assign.run")
+                .description("Duration of an auto-assignment run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.auto-assign.interval-ms:60000}",
+            initialDelayString = "${app.auto-assign.initial-delay-ms:30000}")
+    public void assignPending() {
+        if (!enabled) {
+            return;
+        }
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, Duration.ofSeconds(leaseSeconds))) {
+            log.debug("Auto-assign đang chạy trên node khác, bỏ qua lượt này");
+            return;
+        }
+        try {
+            runTimer.record(this::assignOnce);
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    /**
+     * Ghi nhận cuộc hẹn vừa đổi tư vấn viên hoặc trạng thái (tạo mới, nhận, kết thúc, huỷ...).
+     * previousConsultantId/previousStatus là giá trị trước khi đổi, null nếu cuộc hẹn vừa được tạo.
+     */
+    public void appointmentChanged(Long previousConsultantId, String previousStatus, Appointment appointment) {
+        Long consultantId = appointment.getConsultant() != null ? appointment.getConsultant().getId() : null;
+        String status = appointment.getStatus();
+        Long topicId = appointment.getTopic() != null ? appointment.getTopic().getId() : null;
+        afterCommit(() -> {
+            if (isActive(previousConsultantId, previousStatus)) {
+                adjustLoad(previousConsultantId, -1);
+            }
+            if (isActive(consultantId, status)) {
+                adjustLoad(consultantId, 1);
+            }
+            if (COMPLETED.equals(status) && consultantId != null && topicId != null) {
+                addTopic(consultantId, topicId);
+            }
+        });
+    }
+
+    /**
+     * Ghi nhận slot vừa được tạo hoặc đổi trạng thái trống/đã đặt.
+     */
+    public void slotChanged(Slot slot, boolean available) {
+        Long consultantId = slot.getConsultant().getId();
+        LocalDateTime start = LocalDateTime.of(slot.getDate(), slot.getStartTime());
+        Long slotId = slot.getId();
+        afterCommit(() -> {
+            if (available) {
+                addFreeSlot(consultantId, start, slotId);
+            } else {
+                removeFreeSlot(consultantId, start, slotId);
+            }
+        });
+    }
+
+    /**
+     * Ghi nhận slot vừa bị xoá.
+     */
+    public void slotRemoved(Slot slot) {
+        slotChanged(slot, false);
+    }
+
+    /**
+     * Đánh dấu chỉ mục cần dựng lại ở lượt chạy sau (ví dụ sau khi tạo slot hàng loạt bằng JDBC
+     * hoặc sweeper cập nhật nhiều dòng trực tiếp trong DB).
+     */
+    public synchronized void requestResync() {
+        stale = true;
+    }
+
+    private void assignOnce() {
+        if (needsRebuild()) {
+            rebuild();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long afterId = 0;
+        int assigned = 0;
+        int unassignable = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            List<AppointmentRepository.PendingAssignment> batch = appointmentRepository.findPendingForAssignment(
+                    UNASSIGNED_CONSULTANT_ID, now.toLocalDate(), afterId, Limit.of(batchSize));
+            for (AppointmentRepository.PendingAssignment pending : batch) {
+                afterId = pending.getId();
+                LocalDateTime start = LocalDateTime.of(pending.getAppointmentDate(), pending.getAppointmentTime());
+                // Cuộc hẹn đã qua giờ để sweeper xử lý
+                if (!start.isAfter(now)) {
+                    continue;
+                }
+                if (tryAssign(pending.getId(), start, pending.getTopicId())) {
+                    assigned++;
+                } else {
+                    unassignable++;
+                }
+            }
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+        assignedCounter.increment(assigned);
+        unassignableCounter.increment(unassignable);
+        if (assigned > 0) {
+            log.info("Auto-assign: assigned {} pending appointments, {} left without a free consultant",
+                    assigned, unassignable);
+        }
+    }
+
+    private boolean tryAssign(Long appointmentId, LocalDateTime start, Long topicId) {
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            Choice choice = pick(start, topicId);
+            if (choice == null) {
+                return false;
+            }
+            Outcome outcome = transactionTemplate.execute(status -> {
+                Slot slot = slotRepository.findById(choice.slotId()).orElse(null);
+                if (slot == null || slotRepository.claimIfAvailable(choice.slotId()) == 0) {
+                    return Outcome.SLOT_TAKEN;
+                }
+                if (appointmentRepository.assignIfPending(appointmentId, choice.consultantId(),
+                        UNASSIGNED_CONSULTANT_ID) == 0) {
+                    status.setRollbackOnly();
+                    return Outcome.APPOINTMENT_TAKEN;
+                }
+                slotAvailabilityCalendar.slotChanged(slot, false);
+                return Outcome.ASSIGNED;
+            });
+            switch (outcome) {
+                case ASSIGNED -> {
+                    removeFreeSlot(choice.consultantId(), start, choice.slotId());
+                    adjustLoad(choice.consultantId(), 1);
+                    notifyAssigned(appointmentId);
+                    return true;
+                }
+                // Slot vừa bị đặt hoặc xoá ở chỗ khác: bỏ khỏi chỉ mục rồi thử tư vấn viên kế tiếp
+                case SLOT_TAKEN -> removeFreeSlot(choice.consultantId(), start, choice.slotId());
+                // Đã có người nhận cuộc hẹn này, không cần gán nữa
+                case APPOINTMENT_TAKEN -> {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void notifyAssigned(Long appointmentId) {
+        try {
+            appointmentRepository.findById(appointmentId).ifPresent(appointment -> {
+                appointmentEventBroadcaster.publish(AppointmentEventResponse.Type.ASSIGNED,
+                        UNASSIGNED_CONSULTANT_ID, appointment);
+                emailService.sendAppointmentStatusUpdate(appointment, "PENDING");
+            });
+        } catch (Exception ex) {
+            // Không ảnh hưởng việc phân công nếu lỗi gửi mail, chỉ log
+            log.warn("Không thể gửi email phân công cuộc hẹn {}: {}", appointmentId, ex.getMessage());
+        }
+    }
+
+    private synchronized boolean needsRebuild() {
+        return stale || builtAt == null || builtAt.isBefore(LocalDateTime.now().minusMinutes(resyncMinutes));
+    }
+
+    private void rebuild() {
+        long mutationsBefore;
+        synchronized (this) {
+            mutationsBefore = mutations;
+        }
+        LocalDate today = LocalDate.now();
+        Map<Long, ConsultantState> states = new HashMap<>();
+        for (Long consultantId : userRepository.findEnabledIdsByRole(ERole.ROLE_CONSULTANT)) {
+            if (consultantId != UNASSIGNED_CONSULTANT_ID) {
+                states.put(consultantId, new ConsultantState(consultantId));
+            }
+        }
+        appointmentRepository.countActiveByConsultant().forEach(row -> {
+            ConsultantState state = states.get(row.getConsultantId());
+            if (state != null) {
+                state.load = (int) row.getLoad();
+            }
+        });
+        appointmentRepository.findCompletedTopics().forEach(row -> {
+            ConsultantState state = states.get(row.getConsultantId());
+            if (state != null) {
+                state.topics.add(row.getTopicId());
+            }
+        });
+        slotRepository.findFreeSlotsBetween(today, today.plusDays(horizonDays)).forEach(row -> {
+            ConsultantState state = states.get(row.getConsultantId());
+            if (state != null) {
+                state.freeSlots.putIfAbsent(LocalDateTime.of(row.getDate(), row.getStartTime()), row.getId());
+            }
+        });
+
+        synchronized (this) {
+            consultants.clear();
+            freeByStart.clear();
+            consultants.putAll(states);
+            states.values().forEach(state -> state.freeSlots.keySet().forEach(start -> indexStart(state, start)));
+            builtAt = LocalDateTime.now();
+            // Có cập nhật xen vào trong lúc đọc DB thì có thể đã bị ghi đè, dựng lại ở lượt sau
+            stale = mutations != mutationsBefore;
+        }
+        log.debug("Auto-assign: rebuilt index for {} consultants", states.size());
+    }
+
+    private synchronized Choice pick(LocalDateTime start, Long topicId) {
+        Set<ConsultantState> free = freeByStart.get(start);
+        if (free == null) {
+            return null;
+        }
+        // Người rảnh nhất, và người rảnh nhất trong số đã từng tư vấn chủ đề này (cùng tải thì id nhỏ hơn)
+        ConsultantState best = null;
+        ConsultantState topicBest = null;
+        for (ConsultantState state : free) {
+            if (best == null || state.isLessLoadedThan(best)) {
+                best = state;
+            }
+            if (topicId != null && state.topics.contains(topicId)
+                    && (topicBest == null || state.isLessLoadedThan(topicBest))) {
+                topicBest = state;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        // Ưu tiên người đã từng tư vấn chủ đề này nếu tải không cao hơn quá nhiều so với người rảnh nhất
+        if (topicBest != null && topicBest.load - best.load <= topicLoadTolerance) {
+            best = topicBest;
+        }
+        return new Choice(best.id, best.freeSlots.get(start));
+    }
+
+    private synchronized void adjustLoad(Long consultantId, int delta) {
+        mutations++;
+        ConsultantState state = consultants.get(consultantId);
+        if (state != null) {
+            state.load = Math.max(0, state.load + delta);
+        }
+    }
+
+    private synchronized void addTopic(Long consultantId, Long topicId) {
+        mutations++;
+        ConsultantState state = consultants.get(consultantId);
+        if (state != null) {
+            state.topics.add(topicId);
+        }
+    }
+
+    private synchronized void addFreeSlot(Long consultantId, LocalDateTime start, Long slotId) {
+        mutations++;
+        ConsultantState state = consultants.get(consultantId);
+        if (state == null || state.freeSlots.putIfAbsent(start, slotId) != null) {
+            return;
+        }
+        indexStart(state, start);
+    }
+
+    private synchronized void removeFreeSlot(Long consultantId, LocalDateTime start, Long slotId) {
+        mutations++;
+        ConsultantState state = consultants.get(consultantId);
+        if (state == null || !state.freeSlots.remove(start, slotId)) {
+            return;
+        }
+        Set<ConsultantState> free = freeByStart.get(start);
+        if (free != null && free.remove(state) && free.isEmpty()) {
+            freeByStart.remove(start);
+        }
+    }
+
+    private void indexStart(ConsultantState state, LocalDateTime start) {
+        freeByStart.computeIfAbsent(start, k -> new HashSet<>()).add(state);
+    }
+
+    private static boolean isActive(Long consultantId, String status) {
+        return consultantId != null && consultantId != UNASSIGNED_CONSULTANT_ID && CONFIRMED.equals(status);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private enum Outcome { ASSIGNED, SLOT_TAKEN, APPOINTMENT_TAKEN }
+
+    private record Choice(long consultantId, Long slotId) {
+    }
+
+    private static final class ConsultantState {
+        private final long id;
+        private int load;
+        private final Set<Long> topics = new HashSet<>();
+        private final Map<LocalDateTime, Long> freeSlots = new HashMap<>();
+
+        private ConsultantState(long id) {
+            this.id = id;
+        }
+
+        private boolean isLessLoadedThan(ConsultantState other) {
+            return load < other.load || load == other.load && id < other.id;
+        }
+    }
+}
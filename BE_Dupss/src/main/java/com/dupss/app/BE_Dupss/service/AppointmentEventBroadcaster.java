@@ -0,0 +1,320 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.dto.response.AppointmentEventResponse;
+import com.dupss.app.BE_Dupss.entity.Appointment;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Đẩy sự kiện cuộc hẹn (tạo, nhận, bắt đầu, kết thúc, huỷ...) tới dashboard tư vấn viên qua SSE để client
+ * không phải poll các API danh sách. Mỗi kết nối có một hàng đợi giới hạn và được gửi bởi pool riêng, nên client
+ * chậm không chặn thread phát sự kiện; hàng đợi đầy thì kết nối bị đóng và client kết nối lại với Last-Event-ID.
+ * Các sự kiện gần nhất được giữ lại để phát lại khi kết nối lại; nếu không phát lại được (quá cũ, server đã
+ * khởi động lại) thì gửi sự kiện "resync" để client tải lại danh sách qua REST.
+ * Sự kiện chỉ đến từ node hiện tại, chạy nhiều instance thì client cần bám một node (sticky session).
+ */
+@Service
+@Slf4j
+public class AppointmentEventBroadcaster {
+
+    private static final long UNASSIGNED_CONSULTANT_ID = 2L;
+    private static final String EVENT_NAME = "appointment";
+    private static final String RESYNC_EVENT_NAME = "resync";
+    private static final String ID_SEPARATOR = "-";
+
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor dispatcher;
+    private final long timeoutMs;
+    private final int historySize;
+    private final int bufferSize;
+    // Id sự kiện có dạng <bootId>-<seq>, bootId đổi sau mỗi lần khởi động để nhận ra Last-Event-ID của server cũ
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Counter publishedCounter;
+    private final Counter droppedCounter;
+
+    // history và lastSequence được bảo vệ bởi khoá của this
+    private final Deque<StoredEvent> history = new ArrayDeque<>();
+    private long lastSequence;
+
+    public AppointmentEventBroadcaster(ObjectMapper objectMapper,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${app.appointment-events.timeout-ms:1800000}") long timeoutMs,
+                                       @Value("${app.appointment-events.history-size:1000}") int historySize,
+                                       @Value("${app.appointment-events.buffer-size:256}") int bufferSize,
+                                       @Value("${app.appointment-events.dispatcher-threads:2}") int dispatcherThreads) {
+        this.objectMapper = objectMapper;
+        this.timeoutMs = timeoutMs;
+        this.historySize = historySize;
+        this.bufferSize = bufferSize;
+        // Mỗi kết nối có nhiều nhất một tác vụ gửi trong hàng đợi nên hàng đợi của pool không cần giới hạn
+        this.dispatcher = new ThreadPoolExecutor(dispatcherThreads, dispatcherThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("appointment-events-"));
+        this.publishedCounter = Counter.builder("dupss.appointment.events.published")
+                .description("Appointment events published to SSE subscribers")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("dupss.appointment.events.dropped")
+                .description("SSE connections closed because their buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("dupss.appointment.events.subscribers", subscribers, Set::size)
+                .description("Open appointment event SSE connections")
+                .register(meterRegistry);
+        ExecutorServiceMetrics.monitor(meterRegistry, dispatcher, "appointmentEvents");
+    }
+
+    /**
+     * Mở kết nối SSE. consultantId là tư vấn viên đang đăng nhập, chỉ nhận sự kiện của mình và của hàng chờ
+     * phân công; allAppointments = true (admin, manager) thì nhận mọi sự kiện.
+     */
+    public SseEmitter subscribe(Long consultantId, boolean allAppointments, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, consultantId, allAppointments, bufferSize);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        // Phát lại và đăng ký trong cùng một khoá để không sót hoặc trùng sự kiện với publish đang chạy
+        synchronized (this) {
+            if (lastEventId != null && !lastEventId.isBlank()) {
+                replay(subscriber, lastEventId.trim());
+            }
+            subscribers.add(subscriber);
+        }
+        schedule(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Phát sự kiện cho các kết nối đang mở, sau khi transaction hiện tại (nếu có) commit.
+     * previousConsultantId là tư vấn viên trước khi đổi (null nếu không đổi hoặc cuộc hẹn mới tạo).
+     */
+    public void publish(AppointmentEventResponse.Type type, Long previousConsultantId, Appointment appointment) {
+        User consultant = appointment.getConsultant();
+        AppointmentEventResponse event = AppointmentEventResponse.builder()
+                .type(type)
+                .appointmentId(appointment.getId())
+                .status(appointment.getStatus())
+                .consultantId(consultant != null ? consultant.getId() : null)
+                .consultantName(consultant != null ? consultant.getFullname() : null)
+                .previousConsultantId(previousConsultantId)
+                .customerName(appointment.getCustomerName())
+                .topicName(appointment.getTopic() != null ? appointment.getTopic().getName() : null)
+                .isGuest(appointment.isGuest())
+                .appointmentDate(appointment.getAppointmentDate())
+                .appointmentTime(appointment.getAppointmentTime())
+                .occurredAt(LocalDateTime.now())
+                .build();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatch(event);
+            }
+        });
+    }
+
+    /**
+     * Báo mọi client tải lại danh sách, dùng khi nhiều cuộc hẹn đổi trực tiếp trong DB (ví dụ sweeper).
+     */
+    public void publishResync() {
+        subscribers.forEach(subscriber -> offer(subscriber, AppointmentEventBroadcaster::resyncEvent));
+    }
+
+    @Scheduled(fixedDelayString = "${app.appointment-events.heartbeat-ms:15000}",
+            initialDelayString = "${app.appointment-events.heartbeat-ms:15000}")
+    public void sendHeartbeats() {
+        // Chỉ gửi heartbeat cho kết nối đang rảnh, kết nối đang có sự kiện chờ gửi thì không cần
+        subscribers.forEach(subscriber -> {
+            if (subscriber.queue.isEmpty()) {
+                offer(subscriber, AppointmentEventBroadcaster::heartbeatEvent);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        dispatcher.shutdown();
+    }
+
+    private void dispatch(AppointmentEventResponse event) {
+        String data;
+        try {
+            // Serialize một lần cho mọi kết nối
+            data = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            log.warn("Không thể serialize sự kiện cuộc hẹn {}: {}", event.getAppointmentId(), e.getMessage());
+            return;
+        }
+        List<Subscriber> targets = new ArrayList<>();
+        StoredEvent stored;
+        synchronized (this) {
+            stored = new StoredEvent(++lastSequence, data, event.getConsultantId(), event.getPreviousConsultantId());
+            history.addLast(stored);
+            if (history.size() > historySize) {
+                history.removeFirst();
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.accepts(stored)) {
+                    targets.add(subscriber);
+                }
+            }
+        }
+        publishedCounter.increment();
+        targets.forEach(subscriber -> offer(subscriber, () -> toSseEvent(stored)));
+    }
+
+    private void replay(Subscriber subscriber, String lastEventId) {
+        long after = parseSequence(lastEventId);
+        long firstRetained = history.isEmpty() ? lastSequence + 1 : history.peekFirst().sequence();
+        // Không rõ client đã bỏ lỡ những gì: id của lần khởi động khác, id lạ, hoặc sự kiện đã bị đẩy khỏi history
+        if (after < 0 || after > lastSequence || after < firstRetained - 1) {
+            subscriber.queue.offer(AppointmentEventBroadcaster::resyncEvent);
+            return;
+        }
+        List<StoredEvent> missed = history.stream()
+                .filter(event -> event.sequence() > after && subscriber.accepts(event))
+                .toList();
+        if (missed.size() >= bufferSize) {
+            subscriber.queue.offer(AppointmentEventBroadcaster::resyncEvent);
+            return;
+        }
+        missed.forEach(event -> subscriber.queue.offer(() -> toSseEvent(event)));
+    }
+
+    private long parseSequence(String lastEventId) {
+        int separator = lastEventId.lastIndexOf(ID_SEPARATOR);
+        if (separator < 0 || !lastEventId.substring(0, separator).equals(bootId)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void offer(Subscriber subscriber, Supplier<SseEmitter.SseEventBuilder> event) {
+        if (!subscriber.queue.offer(event)) {
+            // Client không đọc kịp: đóng kết nối để client kết nối lại và phát lại từ Last-Event-ID
+            droppedCounter.increment();
+            subscribers.remove(subscriber);
+            subscriber.emitter.complete();
+            return;
+        }
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.queue.isEmpty() && subscriber.draining.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Supplier<SseEmitter.SseEventBuilder> event;
+            while ((event = subscriber.queue.poll()) != null) {
+                // Builder của SseEmitter không dùng lại được nên tạo mới cho từng lần gửi, dữ liệu JSON thì dùng chung
+                subscriber.emitter.send(event.get());
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client đã ngắt kết nối hoặc emitter đã đóng
+            log.debug("Đóng kết nối SSE sự kiện cuộc hẹn: {}", e.getMessage());
+            subscribers.remove(subscriber);
+            subscriber.queue.clear();
+            subscriber.emitter.complete();
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // Sự kiện được thêm vào sau lần poll cuối nhưng trước khi bỏ cờ draining
+        if (subscribers.contains(subscriber)) {
+            schedule(subscriber);
+        }
+    }
+
+    private SseEmitter.SseEventBuilder toSseEvent(StoredEvent event) {
+        return SseEmitter.event()
+                .id(bootId + ID_SEPARATOR + event.sequence())
+                .name(EVENT_NAME)
+                .data(event.data(), MediaType.APPLICATION_JSON);
+    }
+
+    private static SseEmitter.SseEventBuilder resyncEvent() {
+        return SseEmitter.event().name(RESYNC_EVENT_NAME).data("{}", MediaType.APPLICATION_JSON);
+    }
+
+    private static SseEmitter.SseEventBuilder heartbeatEvent() {
+        return SseEmitter.event().comment("heartbeat");
+    }
+
+    private record StoredEvent(long sequence, String data, Long consultantId, Long previousConsultantId) {
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Long consultantId;
+        private final boolean allAppointments;
+        private final BlockingQueue<Supplier<SseEmitter.SseEventBuilder>> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter, Long consultantId, boolean allAppointments, int bufferSize) {
+            this.emitter = emitter;
+            this.consultantId = consultantId;
+            this.allAppointments = allAppointments;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        private boolean accepts(StoredEvent event) {
+            return allAppointments
+                    || isVisible(event.consultantId())
+                    || isVisible(event.previousConsultantId());
+        }
+
+        private boolean isVisible(Long eventConsultantId) {
+            return eventConsultantId != null
+                    && (eventConsultantId == UNASSIGNED_CONSULTANT_ID || Objects.equals(eventConsultantId, consultantId));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository;
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository.ReminderCandidate;
+import com.dupss.app.BE_Dupss.service.MailBatchDispatcher.OutgoingMail;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Job gửi email nhắc lịch cho các cuộc hẹn CONFIRMED sắp diễn ra (trong khoảng [now + min-lead, now + lead-hours]).
+ * Ứng viên được đọc theo lô bằng một câu query dùng index, template chỉ render một lần cho mỗi dạng email
+ * (có/không có link Meet) rồi thay giá trị của từng người nhận, email được gửi theo lô qua MailBatchDispatcher.
+ * Cuộc hẹn chỉ được đánh dấu reminder_sent_at khi gửi thành công, gửi lỗi sẽ được thử lại ở lượt sau
+ * nếu vẫn còn trong khoảng nhắc. Chỉ một node chạy tại một thời điểm nhờ lease trong bảng scheduler_locks;
+ * lease được gia hạn trước mỗi lô nên lượt chạy dài không để lease hết hạn giữa chừng, gia hạn không được
+ * (lease đã hết hạn hoặc node khác đã nhận) thì dừng lượt chạy để không gửi trùng.
+ */
+@Service
+@Slf4j
+public class AppointmentReminderScheduler {
+
+    private static final String LOCK_NAME = "appointment-reminder";
+    private static final String TEMPLATE = "email/appointment-reminder";
+    private static final String SUBJECT = "Nhắc lịch hẹn tư vấn - DUPSS";
+    private static final String UNASSIGNED_CONSULTANT = "Đang cập nhật";
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final AppointmentRepository appointmentRepository;
+    private final SchedulerLockService schedulerLockService;
+    private final MailBatchDispatcher mailBatchDispatcher;
+    private final TemplateEngine templateEngine;
+
+    @Value("${app.reminder.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.reminder.lead-hours:24}")
+    private long leadHours;
+
+    @Value("${app.reminder.min-lead-minutes:30}")
+    private long minLeadMinutes;
+
+    @Value("${app.reminder.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.reminder.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    // Lease được cấp lúc bắt đầu và sau mỗi lần gia hạn, phải đủ cho một lô
+    @Value("${app.reminder.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${app.mail-dispatch.max-per-second:10}")
+    private double maxMailsPerSecond;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Timer runTimer;
+    private final DistributionSummary throughput;
+
+    public AppointmentReminderScheduler(AppointmentRepository appointmentRepository,
+                                        SchedulerLockService schedulerLockService,
+                                        MailBatchDispatcher mailBatchDispatcher,
+                                        TemplateEngine templateEngine,
+                                        MeterRegistry meterRegistry) {
+        this.appointmentRepository = appointmentRepository;
+        this.schedulerLockService = schedulerLockService;
+        this.mailBatchDispatcher = mailBatchDispatcher;
+        this.templateEngine = templateEngine;
+        this.sentCounter = Counter.builder("dupss.reminder.emails")
+                .tag("outcome", "sent")
+                .description("Appointment reminder emails sent")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("dupss.reminder.emails")
+                .tag("outcome", "failed")
+                .description("Appointment reminder emails that failed and will be retried")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("dupss.reminder.run")
+                .description("Duration of an appointment reminder run")
+                .register(meterRegistry);
+        this.throughput = DistributionSummary.builder("dupss.reminder.throughput")
+                .baseUnit("emails/s")
+                .description("Reminder emails sent per second in a run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.reminder.interval-ms:300000}",
+            initialDelayString = "${app.reminder.initial-delay-ms:90000}")
+    public void sendReminders() {
+        if (!enabled) {
+            return;
+        }
+        Duration lease = batchLease();
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, lease)) {
+            log.debug("Job nhắc lịch đang chạy trên node khác, bỏ qua lượt này");
+            return;
+        }
+        try {
+            runTimer.record(() -> sendRemindersOnce(lease));
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    /**
+     * Lease cho một lô: lease-seconds nhưng không ít hơn hai lần thời gian gửi một lô ở tốc độ tối đa
+     * của MailBatchDispatcher, để lease không hết hạn trước lần gia hạn kế tiếp.
+     */
+    private Duration batchLease() {
+        long batchSeconds = maxMailsPerSecond > 0 ? (long) Math.ceil(batchSize / maxMailsPerSecond) : 0;
+        return Duration.ofSeconds(Math.max(leaseSeconds, 2 * batchSeconds));
+    }
+
+    private void sendRemindersOnce(Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime from = now.plusMinutes(minLeadMinutes);
+        LocalDateTime to = now.plusHours(leadHours);
+        // Template đã render sẵn theo dạng email: true = có link Meet
+        Map<Boolean, String> shapes = new HashMap<>();
+
+        long started = System.nanoTime();
+        long sent = 0;
+        long failed = 0;
+        long afterId = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            if (i > 0 && !schedulerLockService.extend(LOCK_NAME, lease)) {
+                log.warn("Lost appointment reminder lease after {} batches, stopping this run", i);
+                break;
+            }
+            List<ReminderCandidate> batch = appointmentRepository.findReminderCandidates(
+                    from.toLocalDate(), from.toLocalTime(), to.toLocalDate(), to.toLocalTime(),
+                    afterId, Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+
+            List<OutgoingMail<Long>> mails = new ArrayList<>(batch.size());
+            for (ReminderCandidate candidate : batch) {
+                String shape = shapes.computeIfAbsent(hasMeetLink(candidate), this::renderShape);
+                mails.add(new OutgoingMail<>(candidate.getId(), candidate.getEmail(), SUBJECT, fill(shape, candidate)));
+            }
+            Set<Long> delivered = mailBatchDispatcher.send(mails);
+            if (!delivered.isEmpty()) {
+                appointmentRepository.markReminderSent(delivered, LocalDateTime.now());
+            }
+            sent += delivered.size();
+            failed += batch.size() - delivered.size();
+
+            if (batch.size() < batchSize || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+
+        sentCounter.increment(sent);
+        failedCounter.increment(failed);
+        if (sent + failed > 0) {
+            double seconds = Math.max(System.nanoTime() - started, 1) / 1_000_000_000.0;
+            throughput.record(sent / seconds);
+            log.info("Appointment reminders: sent {}, failed {} in {}s", sent, failed, String.format("%.1f", seconds));
+        }
+    }
+
+    private static boolean hasMeetLink(ReminderCandidate candidate) {
+        return candidate.getLinkMeet() != null && !candidate.getLinkMeet().isBlank();
+    }
+
+    /**
+     * Render template với các token giữ chỗ thay cho dữ liệu của người nhận.
+     */
+    private String renderShape(boolean withMeetLink) {
+        Context context = new Context();
+        for (Field field : Field.values()) {
+            context.setVariable(field.variable, field.token);
+        }
+        context.setVariable("showMeetLink", withMeetLink);
+        return templateEngine.process(TEMPLATE, context);
+    }
+
+    private static String fill(String shape, ReminderCandidate candidate) {
+        String html = shape;
+        for (Field field : Field.values()) {
+            html = html.replace(field.token, HtmlUtils.htmlEscape(Objects.toString(field.value(candidate), "")));
+        }
+        return html;
+    }
+
+    private enum Field {
+        CUSTOMER_NAME("customerName"),
+        APPOINTMENT_ID("appointmentId"),
+        APPOINTMENT_DATE("appointmentDate"),
+        APPOINTMENT_TIME("appointmentTime"),
+        TOPIC_NAME("topicName"),
+        CONSULTANT_NAME("consultantName"),
+        MEET_LINK("dupssMeetLink");
+
+        private final String variable;
+        // Token chỉ gồm chữ và %, không bị Thymeleaf escape nên thay thế được nguyên văn
+        private final String token;
+
+        Field(String variable) {
+            this.variable = variable;
+            this.token = "%%REMINDER_" + name() + "%%";
+        }
+
+        private String value(ReminderCandidate candidate) {
+            return switch (this) {
+                case CUSTOMER_NAME -> candidate.getCustomerName();
+                case APPOINTMENT_ID -> String.valueOf(candidate.getId());
+                case APPOINTMENT_DATE -> candidate.getAppointmentDate().format(DATE_FORMAT);
+                case APPOINTMENT_TIME -> candidate.getAppointmentTime().format(TIME_FORMAT);
+                case TOPIC_NAME -> candidate.getTopicName();
+                case CONSULTANT_NAME -> candidate.getConsultantName() != null
+                        ? candidate.getConsultantName() : UNASSIGNED_CONSULTANT;
+                case MEET_LINK -> candidate.getLinkMeet() != null ? candidate.getLinkMeet() : "";
+            };
+        }
+    }
+}
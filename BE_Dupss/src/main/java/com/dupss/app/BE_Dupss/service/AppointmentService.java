@@ -2,7 +2,10 @@ package com.dupss.app.BE_Dupss.service;
 
 import com.dupss.app.BE_Dupss.dto.request.AppointmentRequestDto;
 import com.dupss.app.BE_Dupss.dto.request.AppointmentReviewRequest;
+import com.dupss.app.BE_Dupss.dto.request.AppointmentSearchRequest;
 import com.dupss.app.BE_Dupss.dto.response.AppointmentResponseDto;
+import com.dupss.app.BE_Dupss.dto.response.CursorPageResponse;
+import com.dupss.app.BE_Dupss.dto.response.UnassignedAppointmentResponse;
 
 import java.util.List;
 
@@ -14,9 +17,9 @@ public interface AppointmentService {
     AppointmentResponseDto createAppointment(AppointmentRequestDto requestDto);
     
     /**
-     * Lấy tất cả cuộc hẹn
+     * Tìm kiếm cuộc hẹn theo bộ lọc, mới nhất trước, phân trang keyset theo (ngày hẹn, id)
      */
-    List<AppointmentResponseDto> getAllAppointments();
+    CursorPageResponse<AppointmentResponseDto> searchAppointments(AppointmentSearchRequest searchRequest);
     
     /**
      * Lấy cuộc hẹn theo ID
@@ -66,12 +69,18 @@ public interface AppointmentService {
     List<AppointmentResponseDto> getCompletedOrCanceledAppointmentsByConsultantId(Long consultantId);
     
     /**
-     * Lấy danh sách cuộc hẹn chưa được phân công cho tư vấn viên
+     * Lấy danh sách cuộc hẹn chưa được phân công cho tư vấn viên, phân trang theo cursor (id cuộc hẹn cuối của trang trước)
      */
-    List<AppointmentResponseDto> getUnassignedAppointments();
+    CursorPageResponse<UnassignedAppointmentResponse> getUnassignedAppointments(String cursor, int size);
+
+    /**
+     * Số cuộc hẹn đang chờ phân công (thay cho việc tải hết các trang để đếm)
+     */
+    long countUnassignedAppointments();
     
     /**
-     * Tư vấn viên nhận cuộc hẹn chưa được phân công
+     * Tư vấn viên nhận cuộc hẹn chưa được phân công. Khi nhiều người nhận cùng lúc chỉ một người thành công,
+     * những người còn lại nhận IllegalStateException
      */
     AppointmentResponseDto claimAppointment(Long appointmentId, Long consultantId);
 
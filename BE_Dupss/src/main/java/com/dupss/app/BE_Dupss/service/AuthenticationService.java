@@ -7,16 +7,13 @@ import com.dupss.app.BE_Dupss.dto.request.RefreshTokenRequest;
 import com.dupss.app.BE_Dupss.dto.response.ChangePasswordResponse;
 import com.dupss.app.BE_Dupss.dto.response.LoginResponse;
 import com.dupss.app.BE_Dupss.dto.response.RefreshTokenResponse;
-import com.dupss.app.BE_Dupss.entity.InvalidatedToken;
 import com.dupss.app.BE_Dupss.entity.User;
-import com.dupss.app.BE_Dupss.respository.InvalidatedTokenRepository;
 import com.dupss.app.BE_Dupss.respository.UserRepository;
 import com.nimbusds.jwt.SignedJWT;
 import io.micrometer.common.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
@@ -25,7 +22,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import java.text.ParseException;
 import java.util.Date;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.time.LocalDateTime;
 
 @Service
@@ -35,13 +32,15 @@ public class AuthenticationService {
 
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
-    private final InvalidatedTokenRepository invalidatedTokenRepository;
+    private final TokenRevocationIndex tokenRevocationIndex;
     private final UserRepository userRepository;
     private final EmailService emailService;
     private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
-    public LoginResponse login(LoginRequest request) {
-        try{
+    public CompletableFuture<LoginResponse> login(LoginRequest request) {
+        // So khớp BCrypt chạy trên pool riêng, không giữ thread của Tomcat
+        return passwordHashingExecutor.submit(() -> {
             Authentication authentication = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword()));
             User user = (User) authentication.getPrincipal();
 
@@ -51,9 +50,7 @@ public class AuthenticationService {
                     .accessToken(accessToken)
                     .refreshToken(refreshToken)
                     .build();
-        }catch (BadCredentialsException e) {
-            throw e;
-        }
+        });
     }
 
     public void logout(LogoutRequest request) throws ParseException {
@@ -61,13 +58,9 @@ public class AuthenticationService {
         SignedJWT signedJWT = SignedJWT.parse(request.getAccessToken());
 
         // 2. Đánh dấu token đó hết hiệu lực, và không có quyền truy cập vào hệ thống nữa, dù cho thời gian token còn hiệu lực
-        InvalidatedToken invalidatedToken = InvalidatedToken.builder()
-                .id(signedJWT.getJWTClaimsSet().getJWTID())
-                .token(request.getAccessToken())
-                .expirationTime(signedJWT.getJWTClaimsSet().getExpirationTime())
-                .build();
-        // 3. Lưu token vào data, từ lần sau kiểm tra token người dùng gửi có trong database hay không
-        invalidatedTokenRepository.save(invalidatedToken);
+        // 3. Chỉ lưu jti và thời điểm hết hạn, bản ghi sẽ được dọn khi token gốc hết hạn
+        tokenRevocationIndex.revoke(signedJWT.getJWTClaimsSet().getJWTID(),
+                signedJWT.getJWTClaimsSet().getExpirationTime());
         log.info("Logout successfully");
     }
 
@@ -80,8 +73,7 @@ public class AuthenticationService {
         if(signedJWT.getJWTClaimsSet().getExpirationTime().before(new Date()))
             throw new RuntimeException("Token expired time");
 
-        Optional<InvalidatedToken> invalidatedToken = invalidatedTokenRepository.findById(signedJWT.getJWTClaimsSet().getJWTID());
-        if(invalidatedToken.isPresent())
+        if(tokenRevocationIndex.isRevoked(signedJWT.getJWTClaimsSet().getJWTID()))
             throw new RuntimeException("Token expired time");
 
         String username = signedJWT.getJWTClaimsSet().getSubject();
@@ -0,0 +1,125 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository;
+import com.dupss.app.BE_Dupss.respository.SlotRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Job dọn dữ liệu đặt lịch đã quá hạn:
+ * - đóng các slot đã qua giờ bắt đầu mà vẫn còn trống (is_available = false)
+ * - huỷ các cuộc hẹn PENDING/CONFIRMED chưa check-in sau giờ hẹn một khoảng grace
+ * Mỗi bước là các câu UPDATE ... LIMIT theo lô, mỗi lô một transaction ngắn, không load entity.
+ * Chỉ một node chạy tại một thời điểm nhờ lease trong bảng scheduler_locks.
+ */
+@Service
+@Slf4j
+public class BookingSweeper {
+
+    private static final String LOCK_NAME = "booking-sweeper";
+    private static final String NO_SHOW_NOTE = "Tự động huỷ: cuộc hẹn không được bắt đầu sau giờ hẹn";
+
+    private final SlotRepository slotRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final SchedulerLockService schedulerLockService;
+    private final AppointmentAutoAssigner appointmentAutoAssigner;
+    private final AppointmentEventBroadcaster appointmentEventBroadcaster;
+
+    @Value("${app.sweeper.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.sweeper.max-batches-per-run:200}")
+    private int maxBatchesPerRun;
+
+    @Value("${app.sweeper.no-show-grace-minutes:120}")
+    private long noShowGraceMinutes;
+
+    @Value("${app.sweeper.lease-seconds:600}")
+    private long leaseSeconds;
+
+    private final Counter slotsClosedCounter;
+    private final Counter appointmentsCancelledCounter;
+    private final Timer runTimer;
+
+    public BookingSweeper(SlotRepository slotRepository,
+                          AppointmentRepository appointmentRepository,
+                          SchedulerLockService schedulerLockService,
+                          AppointmentAutoAssigner appointmentAutoAssigner,
+                          AppointmentEventBroadcaster appointmentEventBroadcaster,
+                          MeterRegistry meterRegistry) {
+        this.slotRepository = slotRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.schedulerLockService = schedulerLockService;
+        this.appointmentAutoAssigner = appointmentAutoAssigner;
+        this.appointmentEventBroadcaster = appointmentEventBroadcaster;
+        this.slotsClosedCounter = Counter.builder("dupss.sweeper.rows")
+                .tag("job", "past-slots")
+                .description("Past slots closed by the booking sweeper")
+                .register(meterRegistry);
+        this.appointmentsCancelledCounter = Counter.builder("dupss.sweeper.rows")
+                .tag("job", "no-show-appointments")
+                .description("Overdue appointments cancelled by the booking sweeper")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("dupss.sweeper.run")
+                .description("Duration of a booking sweeper run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.sweeper.interval-ms:300000}",
+            initialDelayString = "${app.sweeper.initial-delay-ms:60000}")
+    public void sweep() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, Duration.ofSeconds(leaseSeconds))) {
+            log.debug("Booking sweeper đang chạy trên node khác, bỏ qua lượt này");
+            return;
+        }
+        try {
+            runTimer.record(this::sweepOnce);
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    private void sweepOnce() {
+        LocalDateTime now = LocalDateTime.now();
+        long slotsClosed = runInBatches(limit ->
+                slotRepository.closePastSlotsBatch(now.toLocalDate(), now.toLocalTime(), limit));
+        slotsClosedCounter.increment(slotsClosed);
+
+        LocalDateTime cutoff = now.minusMinutes(noShowGraceMinutes);
+        long appointmentsCancelled = runInBatches(limit ->
+                appointmentRepository.cancelOverdueBatch(cutoff.toLocalDate(), cutoff.toLocalTime(), NO_SHOW_NOTE, limit));
+        appointmentsCancelledCounter.increment(appointmentsCancelled);
+
+        if (appointmentsCancelled > 0) {
+            // Không có sự kiện cho từng cuộc hẹn bị huỷ theo lô, báo dashboard tải lại danh sách
+            appointmentEventBroadcaster.publishResync();
+        }
+        if (slotsClosed > 0 || appointmentsCancelled > 0) {
+            // Các dòng được cập nhật thẳng trong DB, chỉ mục phân công tự động cần dựng lại
+            appointmentAutoAssigner.requestResync();
+            log.info("Booking sweeper: closed {} past slots, cancelled {} overdue appointments",
+                    slotsClosed, appointmentsCancelled);
+        }
+    }
+
+    private long runInBatches(IntUnaryOperator batch) {
+        long total = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            int updated = batch.applyAsInt(batchSize);
+            total += updated;
+            if (updated < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+}
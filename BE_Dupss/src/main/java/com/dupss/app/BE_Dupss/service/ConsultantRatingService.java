@@ -0,0 +1,109 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.entity.ConsultantRatingStats;
+import com.dupss.app.BE_Dupss.respository.ConsultantRatingStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Tổng hợp đánh giá theo tư vấn viên (số lượt, tổng điểm, phân bố 1-5) trong bảng consultant_rating_stats,
+ * để danh sách tư vấn viên đọc điểm trung bình theo khoá chính thay vì gom toàn bộ lịch sử cuộc hẹn.
+ * Tổng hợp được cộng dồn trong transaction của lượt đánh giá; job tính lại định kỳ (hoặc admin gọi tay)
+ * dựng lại toàn bộ từ bảng appointments để sửa sai lệch nếu dữ liệu bị sửa trực tiếp trong DB.
+ * Job dựng lại chạy ở READ COMMITTED: phần SELECT trên appointments là đọc snapshot không khoá dòng,
+ * nên không tạo vòng chờ với lượt đánh giá (khoá dòng appointment rồi mới tới dòng tổng hợp).
+ */
+@Service
+@Slf4j
+public class ConsultantRatingService {
+
+    private static final String LOCK_NAME = "consultant-rating-rebuild";
+
+    private final ConsultantRatingStatsRepository ratingStatsRepository;
+    private final SchedulerLockService schedulerLockService;
+    private final TransactionTemplate rebuildTransaction;
+
+    @Value("${app.rating-rebuild.lease-seconds:600}")
+    private long leaseSeconds;
+
+    public ConsultantRatingService(ConsultantRatingStatsRepository ratingStatsRepository,
+                                   SchedulerLockService schedulerLockService,
+                                   PlatformTransactionManager transactionManager) {
+        this.ratingStatsRepository = ratingStatsRepository;
+        this.schedulerLockService = schedulerLockService;
+        this.rebuildTransaction = new TransactionTemplate(transactionManager);
+        // Ở REPEATABLE READ, INSERT ... SELECT khoá chia sẻ các dòng appointments đang đọc; lượt đánh giá giữ
+        // khoá dòng appointment và chờ dòng tổng hợp đã bị DELETE khoá, hai bên chờ nhau thành deadlock
+        this.rebuildTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    /**
+     * Cộng một lượt đánh giá, phải được gọi trong transaction đang lưu đánh giá của cuộc hẹn.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordReview(Long consultantId, int score) {
+        if (score < 1 || score > 5) {
+            throw new IllegalArgumentException("Điểm đánh giá phải từ 1 đến 5");
+        }
+        ratingStatsRepository.addReview(consultantId, score);
+    }
+
+    /**
+     * Tổng hợp đánh giá của các tư vấn viên, tư vấn viên chưa có đánh giá thì không có trong map.
+     */
+    public Map<Long, ConsultantRatingStats> findByConsultantIds(Collection<Long> consultantIds) {
+        return ratingStatsRepository.findAllById(consultantIds).stream()
+                .collect(Collectors.toMap(ConsultantRatingStats::getConsultantId, Function.identity()));
+    }
+
+    @Scheduled(cron = "${app.rating-rebuild.cron:0 30 3 * * *}")
+    public void scheduledRebuild() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, Duration.ofSeconds(leaseSeconds))) {
+            log.debug("Job tính lại đánh giá tư vấn viên đang chạy trên node khác, bỏ qua lượt này");
+            return;
+        }
+        try {
+            runRebuild();
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    /**
+     * Tính lại toàn bộ tổng hợp đánh giá. Trả về số tư vấn viên có đánh giá.
+     */
+    public int rebuild() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, Duration.ofSeconds(leaseSeconds))) {
+            throw new IllegalStateException("Đang tính lại đánh giá tư vấn viên, vui lòng thử lại sau");
+        }
+        try {
+            return runRebuild();
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    private int runRebuild() {
+        // Xoá và dựng lại trong một transaction để người đọc không thấy bảng rỗng giữa chừng
+        Integer consultants = rebuildTransaction.execute(status -> {
+            ratingStatsRepository.deleteAllStats();
+            ratingStatsRepository.insertFromAppointments();
+            return (int) ratingStatsRepository.count();
+        });
+        log.info("Rebuilt rating stats for {} consultants", consultants);
+        return consultants != null ? consultants : 0;
+    }
+}
@@ -2,6 +2,7 @@ package com.dupss.app.BE_Dupss.service;
 
 import com.dupss.app.BE_Dupss.dto.response.ConsultantResponse;
 import com.dupss.app.BE_Dupss.dto.response.SlotResponseDto;
+import com.dupss.app.BE_Dupss.entity.ConsultantRatingStats;
 import com.dupss.app.BE_Dupss.entity.ERole;
 import com.dupss.app.BE_Dupss.entity.User;
 import com.dupss.app.BE_Dupss.respository.UserRepository;
@@ -10,16 +11,21 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class ConsultantService {
     private final UserRepository userRepository;
+    private final ConsultantRatingService consultantRatingService;
 
     public List<ConsultantResponse> getAllConsultants() {
         List<User> consultants = userRepository.findByRoleAndEnabled(ERole.ROLE_CONSULTANT, true);
         List<ConsultantResponse> result = new ArrayList<>();
+        Map<Long, ConsultantRatingStats> ratings = consultantRatingService.findByConsultantIds(
+                consultants.stream().map(User::getId).toList());
 
         for (User consultant : consultants) {
             ConsultantResponse dto = new ConsultantResponse();
@@ -35,9 +41,26 @@ public class ConsultantService {
                 consultantName = consultant.getFullname();
             }
             dto.setConsultantName(consultantName);
+            ConsultantRatingStats rating = ratings.get(consultant.getId());
+            if (rating != null) {
+                dto.setAverageRating(rating.getAverageScore());
+                dto.setReviewCount(rating.getReviewCount());
+                dto.setRatingDistribution(ratingDistribution(rating.getScore1(), rating.getScore2(),
+                        rating.getScore3(), rating.getScore4(), rating.getScore5()));
+            } else {
+                dto.setRatingDistribution(ratingDistribution(0, 0, 0, 0, 0));
+            }
             result.add(dto);
         }
         return result;
     }
 
+    private static Map<Integer, Long> ratingDistribution(long... counts) {
+        Map<Integer, Long> distribution = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            distribution.put(i + 1, counts[i]);
+        }
+        return distribution;
+    }
+
 }
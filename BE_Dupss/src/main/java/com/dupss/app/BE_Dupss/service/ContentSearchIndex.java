@@ -0,0 +1,579 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.entity.ApprovalStatus;
+import com.dupss.app.BE_Dupss.entity.Blog;
+import com.dupss.app.BE_Dupss.entity.Course;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.respository.BlogRepository;
+import com.dupss.app.BE_Dupss.respository.CourseRepository;
+import com.dupss.app.BE_Dupss.respository.SearchDocument;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Chỉ mục tìm kiếm toàn văn in-memory cho khoá học và bài viết đã được duyệt, thay cho LIKE '%keyword%'
+ * trên title/description/content. Văn bản được bỏ dấu và tách từ bằng SearchTextAnalyzer, kết quả xếp hạng
+ * theo BM25 (title, mô tả và tên chủ đề được nhân trọng số), mọi từ trong truy vấn đều phải khớp và
+ * từ cuối được khớp theo tiền tố để gõ dở vẫn ra kết quả.
+ * Chỉ mục được cập nhật sau commit ở các chỗ duyệt/từ chối/sửa nội dung, ghi snapshot ra đĩa định kỳ để
+ * khởi động lại chỉ cần nạp snapshot rồi đối soát các thay đổi gần đây với DB thay vì dựng lại toàn bộ.
+ * Job đối soát định kỳ cũng sửa lệch khi nội dung được sửa trên node khác hoặc trực tiếp trong DB.
+ * Khi chỉ mục chưa sẵn sàng, search trả về Optional rỗng để nơi gọi truy vấn DB như cũ.
+ */
+@Service
+@Slf4j
+public class ContentSearchIndex {
+
+    public enum ContentType { COURSE, BLOG }
+
+    /**
+     * Id theo thứ tự liên quan của trang kết quả, cùng tổng số kết quả.
+     */
+    public record SearchPage(List<Long> ids, long total) {
+    }
+
+    private static final int SNAPSHOT_MAGIC = 0x44535849;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 2;
+    private static final int TOPIC_WEIGHT = 2;
+    private static final int CONTENT_WEIGHT = 1;
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+    // Đối soát lùi lại một khoảng để không sót thay đổi commit sát thời điểm đồng bộ lần trước
+    private static final Duration RECONCILE_MARGIN = Duration.ofHours(1);
+
+    private final Map<ContentType, Source> sources = new EnumMap<>(ContentType.class);
+    private final Map<ContentType, Partition> partitions = new EnumMap<>(ContentType.class);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Path snapshotPath;
+    private final int batchSize;
+    private final Timer queryTimer;
+
+    private volatile boolean ready;
+    private volatile boolean dirty;
+    // Mọi thay đổi commit trước thời điểm này đã có trong chỉ mục
+    private volatile LocalDateTime syncedAt;
+
+    public ContentSearchIndex(CourseRepository courseRepository,
+                              BlogRepository blogRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.search-index.path:data/search-index.bin}") String snapshotPath,
+                              @Value("${app.search-index.batch-size:200}") int batchSize) {
+        this.snapshotPath = Paths.get(snapshotPath);
+        this.batchSize = batchSize;
+        sources.put(ContentType.COURSE, new Source(
+                courseRepository::findSearchableIds,
+                courseRepository::findSearchableIdsChangedSince,
+                afterId -> courseRepository.findSearchDocuments(afterId, Limit.of(batchSize)),
+                courseRepository::findSearchDocumentsByIdIn));
+        sources.put(ContentType.BLOG, new Source(
+                blogRepository::findSearchableIds,
+                since -> blogRepository.findSearchableIdsChangedSince(since.toLocalDate()),
+                afterId -> blogRepository.findSearchDocuments(afterId, Limit.of(batchSize)),
+                blogRepository::findSearchDocumentsByIdIn));
+        for (ContentType type : ContentType.values()) {
+            partitions.put(type, new Partition());
+            Gauge.builder("dupss.search.documents", () -> partitions.get(type).docs.size())
+                    .tag("type", type.name().toLowerCase())
+                    .description("Documents in the in-memory search index")
+                    .register(meterRegistry);
+        }
+        this.queryTimer = Timer.builder("dupss.search.query")
+                .description("Duration of a search index query")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void initialize() {
+        try {
+            if (loadSnapshot()) {
+                reconcile(syncedAt.minus(RECONCILE_MARGIN));
+            } else {
+                rebuild();
+            }
+            ready = true;
+        } catch (RuntimeException e) {
+            // Không chặn khởi động vì chỉ mục, job đối soát sẽ thử lại; trong lúc đó tìm kiếm chạy trên DB
+            log.warn("Could not initialize search index, searches fall back to the database", e);
+        }
+    }
+
+    /**
+     * Tìm trong chỉ mục, kết quả sắp theo độ liên quan (không theo Sort của Pageable).
+     * Trả về Optional rỗng nếu chỉ mục chưa sẵn sàng.
+     */
+    public Optional<SearchPage> search(ContentType type, String query, Long topicId, long offset, int limit) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(SearchTextAnalyzer.tokenize(query)));
+        if (terms.isEmpty()) {
+            return Optional.of(new SearchPage(List.of(), 0));
+        }
+        return Optional.of(queryTimer.record(() -> {
+            lock.readLock().lock();
+            try {
+                return partitions.get(type).search(terms, topicId, offset, limit);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }));
+    }
+
+    /**
+     * Trang kết quả tìm kiếm cho màn hình danh sách: có từ khoá và chỉ mục sẵn sàng thì lấy id theo độ liên quan
+     * rồi nạp entity bằng idsLoader (giữ thứ tự chỉ mục, bỏ id không còn trong DB), ngược lại gọi dbFallback.
+     */
+    public <T> Page<T> searchPage(ContentType type, String keyword, Long topicId, Pageable pageable,
+                                  Function<List<Long>, List<T>> idsLoader, Function<T, Long> idOf,
+                                  Supplier<Page<T>> dbFallback) {
+        if (StringUtils.hasText(keyword)) {
+            Optional<SearchPage> hits = search(type, keyword, topicId, pageable.getOffset(), pageable.getPageSize());
+            if (hits.isPresent()) {
+                List<Long> ids = hits.get().ids();
+                Map<Long, T> loaded = ids.isEmpty() ? Map.of() : idsLoader.apply(ids).stream()
+                        .collect(Collectors.toMap(idOf, Function.identity()));
+                List<T> ordered = ids.stream().map(loaded::get).filter(Objects::nonNull).toList();
+                return new PageImpl<>(ordered, pageable, hits.get().total());
+            }
+        }
+        return dbFallback.get();
+    }
+
+    /**
+     * Ghi nhận khoá học vừa được lưu: đưa vào chỉ mục nếu đã duyệt và đang hoạt động, ngược lại xoá khỏi chỉ mục.
+     */
+    public void courseChanged(Course course) {
+        boolean searchable = course.getStatus() == ApprovalStatus.APPROVED && Boolean.TRUE.equals(course.getActive());
+        changed(ContentType.COURSE, course.getId(), searchable ? () -> analyze(course.getId(), course.getTitle(),
+                course.getDescription(), course.getContent(), course.getTopic()) : null);
+    }
+
+    /**
+     * Ghi nhận bài viết vừa được lưu: đưa vào chỉ mục nếu đã duyệt, ngược lại xoá khỏi chỉ mục.
+     */
+    public void blogChanged(Blog blog) {
+        boolean searchable = blog.getStatus() == ApprovalStatus.APPROVED;
+        changed(ContentType.BLOG, blog.getId(), searchable ? () -> analyze(blog.getId(), blog.getTitle(),
+                blog.getDescription(), blog.getContent(), blog.getTopic()) : null);
+    }
+
+    @Scheduled(fixedDelayString = "${app.search-index.reconcile-interval-ms:300000}",
+            initialDelayString = "${app.search-index.reconcile-interval-ms:300000}")
+    public void scheduledReconcile() {
+        if (!ready) {
+            initialize();
+            return;
+        }
+        reconcile(syncedAt.minus(RECONCILE_MARGIN));
+    }
+
+    @Scheduled(fixedDelayString = "${app.search-index.flush-interval-ms:60000}",
+            initialDelayString = "${app.search-index.flush-interval-ms:60000}")
+    public void flush() {
+        if (ready && dirty) {
+            writeSnapshot();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private void changed(ContentType type, Long id, Supplier<Doc> analyzer) {
+        // Tách từ ngay khi entity còn trong session, chỉ áp dụng vào chỉ mục sau khi commit
+        Doc doc = analyzer != null ? analyzer.get() : null;
+        afterCommit(() -> write(partition -> {
+            if (doc != null) {
+                partition.put(doc);
+            } else {
+                partition.remove(id);
+            }
+        }, type));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void write(Consumer<Partition> update, ContentType type) {
+        lock.writeLock().lock();
+        try {
+            update.accept(partitions.get(type));
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuild() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        Map<ContentType, Partition> rebuilt = new EnumMap<>(ContentType.class);
+        for (ContentType type : ContentType.values()) {
+            Partition partition = new Partition();
+            long afterId = 0;
+            List<SearchDocument> batch;
+            do {
+                batch = sources.get(type).page.apply(afterId);
+                for (SearchDocument document : batch) {
+                    partition.put(analyze(document));
+                    afterId = document.getId();
+                }
+            } while (batch.size() == batchSize);
+            rebuilt.put(type, partition);
+        }
+        lock.writeLock().lock();
+        try {
+            partitions.putAll(rebuilt);
+            syncedAt = startedAt;
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Rebuilt search index: {} courses, {} blogs",
+                rebuilt.get(ContentType.COURSE).docs.size(), rebuilt.get(ContentType.BLOG).docs.size());
+    }
+
+    /**
+     * Nạp lại nội dung thay đổi từ since, thêm nội dung đã duyệt còn thiếu và xoá nội dung không còn được duyệt.
+     */
+    private void reconcile(LocalDateTime since) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        int updated = 0;
+        int removed = 0;
+        for (ContentType type : ContentType.values()) {
+            Source source = sources.get(type);
+            Set<Long> searchable = new HashSet<>(source.searchableIds.get());
+            Set<Long> toLoad = new HashSet<>(source.changedSince.apply(since));
+            List<Long> toRemove = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                Map<Long, Doc> docs = partitions.get(type).docs;
+                for (Long id : searchable) {
+                    if (!docs.containsKey(id)) {
+                        toLoad.add(id);
+                    }
+                }
+                for (Long id : docs.keySet()) {
+                    if (!searchable.contains(id)) {
+                        toRemove.add(id);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            List<Long> ids = new ArrayList<>(toLoad);
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                List<Doc> docs = source.byIds.apply(ids.subList(from, Math.min(from + batchSize, ids.size())))
+                        .stream().map(ContentSearchIndex::analyze).toList();
+                write(partition -> docs.forEach(partition::put), type);
+                updated += docs.size();
+            }
+            if (!toRemove.isEmpty()) {
+                write(partition -> toRemove.forEach(partition::remove), type);
+                removed += toRemove.size();
+            }
+        }
+        syncedAt = startedAt;
+        if (updated + removed > 0) {
+            log.info("Reconciled search index: {} documents updated, {} removed", updated, removed);
+        }
+    }
+
+    private boolean loadSnapshot() {
+        if (!Files.isRegularFile(snapshotPath)) {
+            return false;
+        }
+        Map<ContentType, Partition> loaded = new EnumMap<>(ContentType.class);
+        LocalDateTime snapshotSyncedAt;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(snapshotPath))))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring search index snapshot {} with unknown format", snapshotPath);
+                return false;
+            }
+            snapshotSyncedAt = LocalDateTime.parse(in.readUTF());
+            for (int t = ContentType.values().length; t > 0; t--) {
+                ContentType type = ContentType.valueOf(in.readUTF());
+                Partition partition = new Partition();
+                for (int d = in.readInt(); d > 0; d--) {
+                    long id = in.readLong();
+                    long topicId = in.readLong();
+                    int length = in.readInt();
+                    String[] terms = new String[in.readInt()];
+                    int[] freqs = new int[terms.length];
+                    for (int i = 0; i < terms.length; i++) {
+                        terms[i] = in.readUTF();
+                        freqs[i] = in.readInt();
+                    }
+                    partition.put(new Doc(id, topicId, length, terms, freqs));
+                }
+                loaded.put(type, partition);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read search index snapshot {}, rebuilding from the database", snapshotPath, e);
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            partitions.putAll(loaded);
+            syncedAt = snapshotSyncedAt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Loaded search index snapshot: {} courses, {} blogs",
+                loaded.get(ContentType.COURSE).docs.size(), loaded.get(ContentType.BLOG).docs.size());
+        return true;
+    }
+
+    private synchronized void writeSnapshot() {
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try {
+            if (snapshotPath.getParent() != null) {
+                Files.createDirectories(snapshotPath.getParent());
+            }
+            // Ghi nhận trong lúc giữ read lock: thay đổi sau đó (cần write lock) sẽ đánh dấu lại
+            dirty = false;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeUTF(syncedAt.toString());
+                for (ContentType type : ContentType.values()) {
+                    out.writeUTF(type.name());
+                    Collection<Doc> docs = partitions.get(type).docs.values();
+                    out.writeInt(docs.size());
+                    for (Doc doc : docs) {
+                        out.writeLong(doc.id);
+                        out.writeLong(doc.topicId);
+                        out.writeInt(doc.length);
+                        out.writeInt(doc.terms.length);
+                        for (int i = 0; i < doc.terms.length; i++) {
+                            out.writeUTF(doc.terms[i]);
+                            out.writeInt(doc.freqs[i]);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("Could not write search index snapshot {}", temp, e);
+            return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("Could not replace search index snapshot {}", snapshotPath, e);
+        }
+    }
+
+    private static Doc analyze(SearchDocument document) {
+        return analyze(document.getId(), document.getTitle(), document.getDescription(), document.getContent(),
+                document.getTopicId(), document.getTopicName());
+    }
+
+    private static Doc analyze(Long id, String title, String description, String content, Topic topic) {
+        return analyze(id, title, description, content,
+                topic != null ? topic.getId() : null, topic != null ? topic.getName() : null);
+    }
+
+    private static Doc analyze(Long id, String title, String description, String content,
+                               Long topicId, String topicName) {
+        Map<String, Integer> freqs = new HashMap<>();
+        addField(freqs, title, TITLE_WEIGHT);
+        addField(freqs, description, DESCRIPTION_WEIGHT);
+        addField(freqs, topicName, TOPIC_WEIGHT);
+        addField(freqs, content, CONTENT_WEIGHT);
+        String[] terms = new String[freqs.size()];
+        int[] termFreqs = new int[freqs.size()];
+        int length = 0;
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : freqs.entrySet()) {
+            terms[i] = entry.getKey();
+            termFreqs[i] = entry.getValue();
+            length += entry.getValue();
+            i++;
+        }
+        return new Doc(id, topicId != null ? topicId : -1, length, terms, termFreqs);
+    }
+
+    private static void addField(Map<String, Integer> freqs, String text, int weight) {
+        for (String token : SearchTextAnalyzer.tokenize(text)) {
+            freqs.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private record Source(Supplier<List<Long>> searchableIds,
+                          Function<LocalDateTime, List<Long>> changedSince,
+                          LongFunction<List<SearchDocument>> page,
+                          Function<List<Long>, List<SearchDocument>> byIds) {
+    }
+
+    /**
+     * Một tài liệu đã tách từ; freqs là tần suất đã nhân trọng số trường, length là tổng các tần suất.
+     */
+    private record Doc(long id, long topicId, int length, String[] terms, int[] freqs) {
+    }
+
+    /**
+     * Chỉ mục ngược của một loại nội dung, chỉ truy cập khi giữ lock của ContentSearchIndex.
+     */
+    private static final class Partition {
+        private final Map<Long, Doc> docs = new HashMap<>();
+        // từ -> (id tài liệu -> tần suất), sắp theo từ để khớp tiền tố
+        private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+        private long totalLength;
+
+        void put(Doc doc) {
+            remove(doc.id);
+            docs.put(doc.id, doc);
+            for (int i = 0; i < doc.terms.length; i++) {
+                postings.computeIfAbsent(doc.terms[i], term -> new HashMap<>()).put(doc.id, doc.freqs[i]);
+            }
+            totalLength += doc.length;
+        }
+
+        void remove(long id) {
+            Doc doc = docs.remove(id);
+            if (doc == null) {
+                return;
+            }
+            for (String term : doc.terms) {
+                Map<Long, Integer> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(id);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            totalLength -= doc.length;
+        }
+
+        SearchPage search(List<String> terms, Long topicId, long offset, int limit) {
+            int documentCount = docs.size();
+            if (documentCount == 0) {
+                return new SearchPage(List.of(), 0);
+            }
+            double averageLength = (double) totalLength / documentCount;
+            Map<Long, Double> scores = null;
+            for (int i = 0; i < terms.size(); i++) {
+                String term = terms.get(i);
+                Collection<Map<Long, Integer>> matches = i == terms.size() - 1
+                        ? prefixMatches(term)
+                        : Optional.ofNullable(postings.get(term)).map(List::of).orElse(List.of());
+                Map<Long, Double> termScores = new HashMap<>();
+                for (Map<Long, Integer> posting : matches) {
+                    double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                    for (Map.Entry<Long, Integer> entry : posting.entrySet()) {
+                        Long id = entry.getKey();
+                        if (scores != null ? !scores.containsKey(id) : !matchesTopic(id, topicId)) {
+                            continue;
+                        }
+                        int freq = entry.getValue();
+                        double norm = K1 * (1 - B + B * docs.get(id).length / averageLength);
+                        // Một từ trong truy vấn khớp nhiều từ theo tiền tố thì chỉ tính từ khớp tốt nhất
+                        termScores.merge(id, idf * freq * (K1 + 1) / (freq + norm), Math::max);
+                    }
+                }
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return new SearchPage(List.of(), 0);
+                }
+            }
+            List<Long> page = scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                    .skip(offset)
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            return new SearchPage(page, scores.size());
+        }
+
+        private Collection<Map<Long, Integer>> prefixMatches(String prefix) {
+            List<Map<Long, Integer>> matches = new ArrayList<>();
+            for (Map<Long, Integer> posting : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                matches.add(posting);
+                if (matches.size() == MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+            }
+            return matches;
+        }
+
+        private boolean matchesTopic(Long id, Long topicId) {
+            return topicId == null || docs.get(id).topicId == topicId;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.dto.response.CourseDetailPublicResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Cache phần ít thay đổi và không phụ thuộc người dùng của trang chi tiết khoá học công khai (course, topic,
+ * người tạo, module, số video). Trạng thái đăng ký của người đang xem và số lượt đăng ký được CourseService
+ * gắn thêm ở mỗi request. Nhiều request cùng trượt cache của một khoá học chỉ nạp DB một lần, các request
+ * còn lại chờ kết quả đó. Entry bị xoá khi khoá học được sửa hoặc duyệt/từ chối; TTL giới hạn độ lệch
+ * khi thay đổi xảy ra trên node khác hoặc trực tiếp trong DB.
+ */
+@Service
+public class CourseDetailCache {
+
+    private final Cache<Long, CourseDetailPublicResponse> details;
+
+    public CourseDetailCache(MeterRegistry meterRegistry,
+                             @Value("${app.course-detail-cache.max-size:500}") long maxSize,
+                             @Value("${app.course-detail-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.details = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, details, "courseDetail");
+    }
+
+    /**
+     * Lấy chi tiết khoá học từ cache, nạp bằng loader nếu chưa có. Không được sửa object trả về.
+     */
+    public CourseDetailPublicResponse get(Long courseId, Function<Long, CourseDetailPublicResponse> loader) {
+        return details.get(courseId, loader);
+    }
+
+    /**
+     * Xoá chi tiết khoá học khỏi cache ngay và một lần nữa sau commit, để lượt đọc chen vào trước commit
+     * không giữ lại dữ liệu cũ.
+     */
+    public void evict(Long courseId) {
+        details.invalidate(courseId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    details.invalidate(courseId);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.entity.Course;
+import com.dupss.app.BE_Dupss.respository.CourseEnrollmentRepository;
+import com.dupss.app.BE_Dupss.respository.CourseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Số lượt đăng ký theo khoá học, lưu ở cột course.enrollment_count để trang khoá học đọc cùng bản ghi course
+ * thay vì COUNT(*) trên course_enrollment ở mỗi lượt xem.
+ * ID lượt đăng ký mới được đưa vào hàng chờ của khoá học sau khi commit và được flush định kỳ bằng một câu
+ * UPDATE cộng dồn cho mỗi khoá học, nên khoá học đông người đăng ký không tranh chấp khoá trên một dòng.
+ * Flush đánh dấu course_enrollment.counted cho các lượt nó cộng, đếm lại chỉ đếm các lượt đã đánh dấu, nên một
+ * lượt đăng ký không bị đếm hai lần dù đếm lại chạy xen giữa lúc node này hay node khác còn phần chưa flush.
+ * Số đọc ra gồm cả phần đang chờ flush trên node này. Job đếm lại hằng đêm (hoặc admin gọi tay) sửa sai lệch
+ * nếu node dừng đột ngột trước khi flush hoặc dữ liệu bị sửa trực tiếp trong DB.
+ */
+@Service
+@Slf4j
+public class CourseEnrollmentCounter {
+
+    private static final String LOCK_NAME = "course-enrollment-recount";
+
+    private final CourseRepository courseRepository;
+    private final CourseEnrollmentRepository enrollmentRepository;
+    private final SchedulerLockService schedulerLockService;
+    private final TransactionTemplate transactionTemplate;
+    // courseId -> id các lượt đăng ký chưa flush; entry được giữ lại sau flush để không mất lượt thêm đồng thời
+    private final Map<Long, BlockingQueue<Long>> pending = new ConcurrentHashMap<>();
+
+    @Value("${app.enrollment-counter.lease-seconds:600}")
+    private long leaseSeconds;
+
+    // Lượt đăng ký cũ hơn chừng này mà chưa được flush coi như đã mất phần chờ (node dừng), đếm lại sẽ tính chúng
+    @Value("${app.enrollment-counter.settle-seconds:300}")
+    private long settleSeconds;
+
+    public CourseEnrollmentCounter(CourseRepository courseRepository,
+                                   CourseEnrollmentRepository enrollmentRepository,
+                                   SchedulerLockService schedulerLockService,
+                                   PlatformTransactionManager transactionManager) {
+        this.courseRepository = courseRepository;
+        this.enrollmentRepository = enrollmentRepository;
+        this.schedulerLockService = schedulerLockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Cột đếm vừa được thêm vào DB (có lượt đăng ký nhưng chưa lượt nào được đánh dấu đếm) thì đếm lại ngay
+     * khi khởi động, để khoá học cũ không hiện 0 lượt đăng ký tới lượt job đêm.
+     */
+    @PostConstruct
+    void backfillIfNeeded() {
+        try {
+            if (enrollmentRepository.existsByCountedTrue() || !enrollmentRepository.existsByCountedFalse()) {
+                return;
+            }
+            if (!schedulerLockService.tryAcquire(LOCK_NAME, Duration.ofSeconds(leaseSeconds))) {
+                log.debug("Node khác đang đếm lại lượt đăng ký khoá học, bỏ qua backfill");
+                return;
+            }
+            try {
+                log.info("Enrollment counters have never been computed, backfilling from course_enrollment");
+                runRecount();
+            } finally {
+                schedulerLockService.release(LOCK_NAME);
+            }
+        } catch (RuntimeException e) {
+            // Không chặn khởi động, job đếm lại hằng đêm (hoặc admin gọi tay) sẽ đếm lại
+            log.warn("Could not backfill enrollment counters", e);
+        }
+    }
+
+    /**
+     * Ghi nhận một lượt đăng ký, chỉ được cộng khi transaction đang lưu lượt đăng ký commit.
+     */
+    public void enrollmentAdded(Long courseId, Long enrollmentId) {
+        Runnable increment = () -> pending.computeIfAbsent(courseId, id -> new LinkedBlockingQueue<>()).add(enrollmentId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            increment.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                increment.run();
+            }
+        });
+    }
+
+    public long getEnrollmentCount(Course course) {
+        long stored = course.getEnrollmentCount() != null ? course.getEnrollmentCount() : 0;
+        return stored + unflushedCount(course.getId());
+    }
+
+    /**
+     * Như getEnrollmentCount(Course) nhưng chỉ đọc cột đếm, dùng khi không có sẵn entity Course.
+     */
+    public long getEnrollmentCount(Long courseId) {
+        return courseRepository.findEnrollmentCountById(courseId).orElse(0L) + unflushedCount(courseId);
+    }
+
+    private long unflushedCount(Long courseId) {
+        BlockingQueue<Long> unflushed = pending.get(courseId);
+        return unflushed != null ? unflushed.size() : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.enrollment-counter.flush-interval-ms:10000}",
+            initialDelayString = "${app.enrollment-counter.flush-interval-ms:10000}")
+    public void flush() {
+        // Theo thứ tự id khoá học để flush và đếm lại khoá các dòng course theo cùng một thứ tự
+        Map<Long, List<Long>> batches = new TreeMap<>();
+        pending.forEach((courseId, queue) -> {
+            List<Long> enrollmentIds = new ArrayList<>();
+            queue.drainTo(enrollmentIds);
+            if (!enrollmentIds.isEmpty()) {
+                batches.put(courseId, enrollmentIds);
+            }
+        });
+        if (batches.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> batches.forEach((courseId, enrollmentIds) -> {
+                courseRepository.addEnrollments(courseId, enrollmentIds);
+                enrollmentRepository.markCounted(enrollmentIds);
+            }));
+        } catch (RuntimeException e) {
+            // Trả lại phần chưa ghi được để lượt flush sau thử lại
+            batches.forEach((courseId, enrollmentIds) ->
+                    pending.computeIfAbsent(courseId, id -> new LinkedBlockingQueue<>()).addAll(enrollmentIds));
+            log.warn("Could not flush enrollment counters for {} courses, will retry", batches.size(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    @Scheduled(cron = "${app.enrollment-counter.recount-cron:0 45 3 * * *}")
+    public void scheduledRecount() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, Duration.ofSeconds(leaseSeconds))) {
+            log.debug("Job đếm lại lượt đăng ký khoá học đang chạy trên node khác, bỏ qua lượt này");
+            return;
+        }
+        try {
+            runRecount();
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    /**
+     * Đếm lại số lượt đăng ký của mọi khoá học. Trả về số khoá học được cập nhật.
+     */
+    public int recount() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, Duration.ofSeconds(leaseSeconds))) {
+            throw new IllegalStateException("Đang đếm lại lượt đăng ký khoá học, vui lòng thử lại sau");
+        }
+        try {
+            return runRecount();
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    private int runRecount() {
+        // Không cần chặn flush: lượt đăng ký chưa được đánh dấu không nằm trong số đếm lại và sẽ được flush cộng sau
+        flush();
+        enrollmentRepository.markSettledCounted(LocalDateTime.now().minusSeconds(settleSeconds));
+        int courses = courseRepository.recountEnrollments();
+        log.info("Recounted enrollments for {} courses", courses);
+        return courses;
+    }
+}
@@ -9,8 +9,6 @@ import jakarta.mail.MessagingException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,7 +30,7 @@ public class CourseEnrollmentService {
     private final CourseRepository courseRepository;
     private final CourseModuleRepository moduleRepository;
     private final CourseEnrollmentRepository enrollmentRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final EmailService emailService;
     private final WatchedVideoRepo watchedVideoRepository;
     private final VideoCourseRepo videoCourseRepository;
@@ -40,13 +38,11 @@ public class CourseEnrollmentService {
     private final SurveyOptionRepo surveyOptionRepository;
     private final SurveyResultRepo surveyResultRepository;
     private final SurveyService surveyService;
+    private final CourseEnrollmentCounter enrollmentCounter;
 
     @Transactional
     public CourseEnrollmentResponse enrollCourse(Long courseId) throws MessagingException, UnsupportedEncodingException {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        
-        User currentUser = userRepository.findByUsernameAndEnabledTrue(username)
+        User currentUser = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
         // Check if user has MEMBER role
@@ -71,6 +67,7 @@ public class CourseEnrollmentService {
         enrollment.setProgress(0.0);
         
         CourseEnrollment savedEnrollment = enrollmentRepository.save(enrollment);
+        enrollmentCounter.enrollmentAdded(course.getId(), savedEnrollment.getId());
 
         emailService.sendEnrollmentSuccessEmail(
                 currentUser.getEmail(),
@@ -87,10 +84,7 @@ public class CourseEnrollmentService {
     }
     
     public List<CourseEnrollmentResponse> getEnrolledCourses() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        
-        User currentUser = userRepository.findByUsernameAndEnabledTrue(username)
+        User currentUser = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
         // Check if user has MEMBER role
@@ -107,10 +101,7 @@ public class CourseEnrollmentService {
     
     @Transactional
     public CourseEnrollmentResponse updateProgress(Long enrollmentId, Double progress) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        
-        User currentUser = userRepository.findByUsernameAndEnabledTrue(username)
+        User currentUser = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
         CourseEnrollment enrollment = enrollmentRepository.findById(enrollmentId)
@@ -136,9 +127,7 @@ public class CourseEnrollmentService {
 
     //check watched videos
     public void markVideoAsWatched(Long videoId, boolean watchedStatus) throws MessagingException, UnsupportedEncodingException {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = auth.getName();
-        User user = userRepository.findByUsernameAndEnabledTrue(username)
+        User user = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         VideoCourse video = videoCourseRepository.findById(videoId)
@@ -182,9 +171,7 @@ public class CourseEnrollmentService {
 
     @Transactional
     public QuizResultResponse submitCourseQuiz(Long courseId, SurveyResultRequest request) throws MessagingException, UnsupportedEncodingException {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = auth.getName();
-        User user = userRepository.findByUsernameAndEnabledTrue(username)
+        User user = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         Course course = courseRepository.findById(courseId)
@@ -308,11 +295,14 @@ public class CourseEnrollmentService {
     }
     
     private CourseResponse mapToCourseResponse(Course course, List<CourseModule> modules, User currentUser) {
+        Set<Long> watchedVideoIds = currentUser != null
+                ? watchedVideoRepository.findWatchedVideoIds(currentUser, course)
+                : Set.of();
         List<CourseModuleResponse> moduleResponses = modules.stream()
-                .map(m -> mapToModuleResponse(m, currentUser))
+                .map(m -> mapToModuleResponse(m, watchedVideoIds))
                 .collect(Collectors.toList());
                 
-        long enrollmentCount = enrollmentRepository.countByCourse(course);
+        long enrollmentCount = enrollmentCounter.getEnrollmentCount(course);
         EnrollmentStatus enrollmentStatus = EnrollmentStatus.NOT_ENROLLED;
 
         double progress = 0.0;
@@ -336,18 +326,15 @@ public class CourseEnrollmentService {
                 .build();
     }
     
-    private CourseModuleResponse mapToModuleResponse(CourseModule module, User currentUser) {
+    private CourseModuleResponse mapToModuleResponse(CourseModule module, Set<Long> watchedVideoIds) {
 
         List<VideoCourseResponse> videoDTOs = module.getVideos().stream()
-                .map(video -> {
-                    boolean watched = watchedVideoRepository.existsByUserAndVideoAndWatchedTrue(currentUser, video);
-                    return VideoCourseResponse.builder()
-                            .id(video.getId())
-                            .title(video.getTitle())
-                            .videoUrl(video.getVideoUrl())
-                            .watched(watched)
-                            .build();
-                })
+                .map(video -> VideoCourseResponse.builder()
+                        .id(video.getId())
+                        .title(video.getTitle())
+                        .videoUrl(video.getVideoUrl())
+                        .watched(watchedVideoIds.contains(video.getId()))
+                        .build())
                 .collect(Collectors.toList());
         return CourseModuleResponse.builder()
                 .id(module.getId())
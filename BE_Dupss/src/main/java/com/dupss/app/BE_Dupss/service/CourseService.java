@@ -7,6 +7,7 @@ import com.dupss.app.BE_Dupss.dto.request.SurveyCreateRequest;
 import com.dupss.app.BE_Dupss.dto.response.*;
 import com.dupss.app.BE_Dupss.entity.*;
 import com.dupss.app.BE_Dupss.respository.*;
+import com.dupss.app.BE_Dupss.service.ContentSearchIndex.ContentType;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -14,8 +15,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -25,6 +24,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -35,20 +35,20 @@ public class CourseService {
     private final CourseRepository courseRepository;
     private final CourseModuleRepository moduleRepository;
     private final CourseEnrollmentRepository enrollmentRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final TopicRepo topicRepository;
     private final CloudinaryService cloudinaryService;
     private final WatchedVideoRepo watchedVideoRepository;
     private final SurveyService surveyService;
     private final SurveyRepo surveyRepository;
     private final ObjectMapper objectMapper;
+    private final ContentSearchIndex contentSearchIndex;
+    private final CourseEnrollmentCounter enrollmentCounter;
+    private final CourseDetailCache courseDetailCache;
 
     @Transactional
     public CourseResponse createCourse(CourseCreateRequest request) throws IOException {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        
-        User currentUser = userRepository.findByUsernameAndEnabledTrue(username)
+        User currentUser = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
         // Check if user has STAFF or MANAGER role
@@ -154,62 +154,56 @@ public class CourseService {
 
     public List<CourseHomeResponse> getLastestCourses() {
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-
-        User currentUser = userRepository.findByUsername(username).orElse(null);
+        User currentUser = currentUserResolver.findCurrentUser().orElse(null);
 
         List<Course> courses = courseRepository.findTop3ByStatusAndActiveTrueOrderByCreatedAtDesc(ApprovalStatus.APPROVED);
-
+        Set<Long> enrolledCourseIds = findEnrolledCourseIds(currentUser, courses);
 
         return courses.stream()
-                .map(course -> {
-                    List<CourseModule> modules = moduleRepository.findByCourseOrderByOrderIndexAsc(course);
-                    boolean isEnrolled = false;
-                    if (currentUser != null) {
-                        isEnrolled = enrollmentRepository.existsByUserAndCourse(currentUser, course);
-                    }
-                    return CourseHomeResponse.builder()
-                            .id(course.getId())
-                            .title(course.getTitle())
-                            .coverImage(course.getCoverImage())
-                            .summary(course.getDescription())
-                            .createdAt(course.getCreatedAt())
-                            .topicName(course.getTopic() != null ? course.getTopic().getName() : null)
-                            .creatorName(course.getCreator().getFullname())
-                            .duration(course.getDuration())
-                            .isEnrolled(isEnrolled)
-                            .build();
-                })
+                .map(course -> CourseHomeResponse.builder()
+                        .id(course.getId())
+                        .title(course.getTitle())
+                        .coverImage(course.getCoverImage())
+                        .summary(course.getDescription())
+                        .createdAt(course.getCreatedAt())
+                        .topicName(course.getTopic() != null ? course.getTopic().getName() : null)
+                        .creatorName(course.getCreator().getFullname())
+                        .duration(course.getDuration())
+                        .isEnrolled(enrolledCourseIds.contains(course.getId()))
+                        .build())
                 .collect(Collectors.toList());
     }
 
     public Page<CourseHomeResponse> searchCoursesSummary(String keyword, Long topicId, Pageable pageable) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        User currentUser = userRepository.findByUsername(username).orElse(null);
-        Page<Course> courses = courseRepository.searchCourses(keyword, topicId, pageable);
-        return courses.map(course -> {
-            boolean isEnrolled = false;
-            if (currentUser != null) {
-                isEnrolled = enrollmentRepository.existsByUserAndCourse(currentUser, course);
-            }
-            return mapToCourseHomeResponse(course, isEnrolled);
-        });
+        User currentUser = currentUserResolver.findCurrentUser().orElse(null);
+        Page<Course> courses = findCoursePage(keyword, topicId, pageable);
+        Set<Long> enrolledCourseIds = findEnrolledCourseIds(currentUser, courses.getContent());
+        return courses.map(course -> mapToCourseHomeResponse(course, enrolledCourseIds.contains(course.getId())));
+    }
+
+    private Page<Course> findCoursePage(String keyword, Long topicId, Pageable pageable) {
+        return contentSearchIndex.searchPage(ContentType.COURSE, keyword, topicId, pageable,
+                courseRepository::findSearchableByIdIn, Course::getId,
+                () -> courseRepository.searchCourses(keyword, topicId, pageable));
+    }
+
+    // Các khoá học trong trang mà người dùng đã đăng ký, thay cho việc kiểm tra từng khoá học
+    private Set<Long> findEnrolledCourseIds(User currentUser, List<Course> courses) {
+        if (currentUser == null || courses.isEmpty()) {
+            return Set.of();
+        }
+        return enrollmentRepository.findEnrolledCourseIds(currentUser, courses.stream().map(Course::getId).toList());
     }
 
 
     
     public CourseResponse getCourseById(Long id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        
-        User currentUser = userRepository.findByUsername(username).orElse(null);
+        User currentUser = currentUserResolver.findCurrentUser().orElse(null);
         
         Course course = courseRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Course not found with id: " + id));
         
-        List<CourseModule> modules = moduleRepository.findByCourseOrderByOrderIndexAsc(course);
+        List<CourseModule> modules = moduleRepository.findWithVideosByCourseOrderByOrderIndexAsc(course);
         
 //        boolean isEnrolled = false;
 //        if (currentUser != null) {
@@ -227,25 +221,27 @@ public class CourseService {
     }
 
     public CourseDetailPublicResponse getCoursePublicDetail(Long id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
+        User currentUser = currentUserResolver.findCurrentUser().orElse(null);
 
-        User currentUser = userRepository.findByUsername(username).orElse(null);
+        CourseDetailPublicResponse detail = courseDetailCache.get(id, this::loadCoursePublicDetail);
 
-        Course course = courseRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Course not found with id: " + id));
-
-        Optional<CourseEnrollment> enrollmentOpt =
-                enrollmentRepository.findByUserAndCourse(currentUser, course);
+        EnrollmentStatus enrollmentStatus = currentUser == null ? EnrollmentStatus.NOT_ENROLLED
+                : enrollmentRepository.findStatusByUserAndCourseId(currentUser, id).orElse(EnrollmentStatus.NOT_ENROLLED);
 
-        EnrollmentStatus enrollmentStatus = EnrollmentStatus.NOT_ENROLLED;
+        // Bản sao cho từng request, object trong cache dùng chung nên không được sửa; số lượt đăng ký đọc
+        // từ bộ đếm ở mỗi request để không phải xoá cache mỗi khi có người đăng ký
+        return detail.toBuilder()
+                .status(enrollmentStatus)
+                .totalEnrolled(enrollmentCounter.getEnrollmentCount(id))
+                .build();
+    }
 
-        if (enrollmentOpt.isPresent()) {
-            enrollmentStatus = enrollmentOpt.get().getStatus();
-        }
+    // Phần chung cho mọi người xem của trang chi tiết khoá học, được giữ trong CourseDetailCache
+    private CourseDetailPublicResponse loadCoursePublicDetail(Long id) {
+        Course course = courseRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Course not found with id: " + id));
 
-        List<CourseModule> modules = moduleRepository.findByCourseOrderByOrderIndexAsc(course);
-        long enrollmentCount = enrollmentRepository.countByCourse(course);
+        List<CourseModule> modules = moduleRepository.findWithVideosByCourseOrderByOrderIndexAsc(course);
 
         return CourseDetailPublicResponse.builder()
                 .id(course.getId())
@@ -256,22 +252,18 @@ public class CourseService {
                 .duration(course.getDuration())
                 .createdBy(course.getCreator() != null ? course.getCreator().getFullname() : "Unknown")
                 .videoCount(modules.stream().mapToInt(m -> m.getVideos().size()).sum())
-                .totalEnrolled(enrollmentCount)
-                .status(enrollmentStatus)
+                .status(EnrollmentStatus.NOT_ENROLLED)
                 .modules(modules.stream()
                         .map(m -> CourseDetailPublicResponse.ModuleInfo.builder()
                                 .id(m.getId())
                                 .title(m.getTitle())
                                 .build())
-                        .collect(Collectors.toList()))
+                        .toList())
                 .build();
     }
     
     public List<CourseResponse> getCreatedCourses() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        
-        User currentUser = userRepository.findByUsername(username)
+        User currentUser = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
         // Check if user has STAFF or MANAGER role
@@ -283,7 +275,7 @@ public class CourseService {
         
         return courses.stream()
                 .map(course -> {
-                    List<CourseModule> modules = moduleRepository.findByCourseOrderByOrderIndexAsc(course);
+                    List<CourseModule> modules = moduleRepository.findWithVideosByCourseOrderByOrderIndexAsc(course);
                     return mapToCourseResponse(course, modules, currentUser);
                 })
                 .collect(Collectors.toList());
@@ -291,10 +283,7 @@ public class CourseService {
 
     @Transactional
     public CourseResponse updateCourse(Long courseId, CourseUpdateRequest request) throws IOException {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-
-        User currentUser = userRepository.findByUsernameAndEnabledTrue(username)
+        User currentUser = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Check if user has STAFF or MANAGER role
@@ -354,9 +343,11 @@ public class CourseService {
 
         Course savedCourse = courseRepository.save(course);
         log.info("Course updated: {}", savedCourse.getTitle());
+        contentSearchIndex.courseChanged(savedCourse);
+        courseDetailCache.evict(savedCourse.getId());
 
         // Update or create modules if provided
-        List<CourseModule> modules = moduleRepository.findByCourseOrderByOrderIndexAsc(course);
+        List<CourseModule> modules = moduleRepository.findWithVideosByCourseOrderByOrderIndexAsc(course);
 
         if (request.getModules() != null && !request.getModules().isEmpty()) {
             // Remove existing modules
@@ -398,11 +389,14 @@ public class CourseService {
     }
     
     private CourseResponse mapToCourseResponse(Course course, List<CourseModule> modules, User currentUser) {
+        Set<Long> watchedVideoIds = currentUser != null
+                ? watchedVideoRepository.findWatchedVideoIds(currentUser, course)
+                : Set.of();
         List<CourseModuleResponse> moduleResponses = modules.stream()
-                .map(m -> mapToModuleResponse(m, currentUser))
+                .map(m -> mapToModuleResponse(m, watchedVideoIds))
                 .collect(Collectors.toList());
                 
-        long enrollmentCount = enrollmentRepository.countByCourse(course);
+        long enrollmentCount = enrollmentCounter.getEnrollmentCount(course);
         EnrollmentStatus enrollmentStatus = EnrollmentStatus.NOT_ENROLLED;
         double progress = 0.0;
         if (currentUser != null) {
@@ -457,17 +451,14 @@ public class CourseService {
         return dto;
     }
 
-    private CourseModuleResponse mapToModuleResponse(CourseModule module, User currentUser) {
+    private CourseModuleResponse mapToModuleResponse(CourseModule module, Set<Long> watchedVideoIds) {
         List<VideoCourseResponse> videoDTOs = module.getVideos().stream()
-                .map(video -> {
-                    boolean watched = watchedVideoRepository.existsByUserAndVideoAndWatchedTrue(currentUser, video);
-                    return VideoCourseResponse.builder()
-                            .id(video.getId())
-                            .title(video.getTitle())
-                            .videoUrl(video.getVideoUrl())
-                            .watched(watched)
-                            .build();
-                })
+                .map(video -> VideoCourseResponse.builder()
+                        .id(video.getId())
+                        .title(video.getTitle())
+                        .videoUrl(video.getVideoUrl())
+                        .watched(watchedVideoIds.contains(video.getId()))
+                        .build())
                 .collect(Collectors.toList());
         return CourseModuleResponse.builder()
                 .id(module.getId())
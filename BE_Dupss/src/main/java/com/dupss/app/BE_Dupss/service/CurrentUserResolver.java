@@ -0,0 +1,75 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Lấy User của người dùng đang đăng nhập dựa trên claim userId trong access token,
+ * có cache TTL giới hạn kích thước để các service không phải truy vấn bảng users ở mỗi request.
+ * User trả về là bản snapshot dùng chung giữa các request, chỉ dùng để đọc hoặc làm tham chiếu khoá ngoại;
+ * các luồng cần sửa User phải tự load lại từ UserRepository và gọi {@link #evict(Long)}.
+ */
+@Service
+public class CurrentUserResolver {
+
+    private final UserRepository userRepository;
+    private final Cache<Long, User> users;
+
+    public CurrentUserResolver(UserRepository userRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.principal-cache.max-size:10000}") long maxSize,
+                               @Value("${app.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "principalCache");
+    }
+
+    public Optional<Long> getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!(authentication instanceof JwtAuthenticationToken jwtAuthentication)) {
+            return Optional.empty();
+        }
+        Object userId = jwtAuthentication.getToken().getClaim("userId");
+        return userId instanceof Number number ? Optional.of(number.longValue()) : Optional.empty();
+    }
+
+    public Optional<User> findCurrentUser() {
+        // Caffeine không cache kết quả null nên user bị vô hiệu hoá sẽ được kiểm tra lại ở lần sau
+        return getCurrentUserId()
+                .map(userId -> users.get(userId, userRepository::findByIdAndEnabledTrue));
+    }
+
+    public void evict(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        users.invalidate(userId);
+        // Xoá thêm lần nữa sau khi commit để request song song không cache lại dữ liệu cũ
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    users.invalidate(userId);
+                }
+            });
+        }
+    }
+}
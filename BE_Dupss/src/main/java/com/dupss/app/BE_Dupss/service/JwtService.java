@@ -1,9 +1,7 @@
 package com.dupss.app.BE_Dupss.service;
 
 
-import com.dupss.app.BE_Dupss.entity.InvalidatedToken;
 import com.dupss.app.BE_Dupss.entity.User;
-import com.dupss.app.BE_Dupss.respository.InvalidatedTokenRepository;
 import com.nimbusds.jose.*;
 import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jose.crypto.MACVerifier;
@@ -12,6 +10,7 @@ import com.nimbusds.jwt.SignedJWT;
 import com.nimbusds.oauth2.sdk.util.StringUtils;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 
 import net.minidev.json.JSONObject;
@@ -32,7 +31,18 @@ public class JwtService {
     @Value("${jwt.secret-key}")
     private String secretKey;
 
-    private final InvalidatedTokenRepository invalidatedTokenRepository;
+    private final TokenRevocationIndex tokenRevocationIndex;
+
+    // MACSigner/MACVerifier không giữ trạng thái nên có thể dùng chung giữa các thread
+    private JWSSigner signer;
+    private JWSVerifier verifier;
+
+    @PostConstruct
+    void initKeys() throws JOSEException {
+        byte[] secret = secretKey.getBytes(StandardCharsets.UTF_8);
+        signer = new MACSigner(secret);
+        verifier = new MACVerifier(secret);
+    }
 
     public String generateAccessToken(User user) {
         Collection<? extends GrantedAuthority> authorities = user.getAuthorities();
@@ -57,7 +67,7 @@ public class JwtService {
         // 3. Chữ kí
         JWSObject jwsObject = new JWSObject(header, payload);
         try {
-            jwsObject.sign(new MACSigner(secretKey));
+            jwsObject.sign(signer);
             return jwsObject.serialize();
         } catch (JOSEException e) {
             throw new RuntimeException(e);
@@ -80,29 +90,37 @@ public class JwtService {
         // 3. Chữ kí
         JWSObject jwsObject = new JWSObject(header, payload);
         try {
-            jwsObject.sign(new MACSigner(secretKey));
+            jwsObject.sign(signer);
             return jwsObject.serialize();
         } catch (JOSEException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public boolean verifyToken(String token) throws ParseException, JOSEException {
+    /**
+     * Parse và xác thực access token trong một lần: thuật toán HS384, hạn dùng,
+     * trạng thái thu hồi và chữ ký. Trả về null nếu token không hợp lệ.
+     */
+    public SignedJWT verifyAccessToken(String token) throws ParseException, JOSEException {
         if(StringUtils.isBlank(token)) {
-            return false;
+            return null;
         }
         SignedJWT signedJWT = SignedJWT.parse(token);
 
-        if(signedJWT.getJWTClaimsSet().getExpirationTime().before(new Date())) {
-            return false;
+        // Refresh token ký bằng HS512 không được dùng thay access token
+        if(!JWSAlgorithm.HS384.equals(signedJWT.getHeader().getAlgorithm())) {
+            return null;
         }
 
-        Optional<InvalidatedToken> invalidatedToken = invalidatedTokenRepository.findById(signedJWT.getJWTClaimsSet().getJWTID());
+        JWTClaimsSet claimsSet = signedJWT.getJWTClaimsSet();
+        if(claimsSet.getExpirationTime() == null || claimsSet.getExpirationTime().before(new Date())) {
+            return null;
+        }
 
-        if(invalidatedToken.isPresent()) {
-            return false;
+        if(tokenRevocationIndex.isRevoked(claimsSet.getJWTID())) {
+            return null;
         }
-        return signedJWT.verify(new MACVerifier(secretKey.getBytes(StandardCharsets.UTF_8)));
+        return signedJWT.verify(verifier) ? signedJWT : null;
     }
 
     public String getUsernameFromToken(String token) {
@@ -0,0 +1,127 @@
+package com.dupss.app.BE_Dupss.service;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+import java.io.UnsupportedEncodingException;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gửi email hàng loạt theo lô: mỗi lô đi qua một kết nối SMTP (JavaMailSender.send(MimeMessage...)) và tốc độ
+ * gửi bị giới hạn theo số email mỗi giây. Chạy trên thread của job gọi nó chứ không qua pool @Async dùng chung,
+ * để các job như nhắc lịch không làm đầy hàng đợi của email giao dịch (xác nhận đặt lịch, OTP...).
+ */
+@Service
+@Slf4j
+public class MailBatchDispatcher {
+
+    private final JavaMailSender mailSender;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${app.mail-dispatch.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.mail-dispatch.max-per-second:10}")
+    private double maxPerSecond;
+
+    public MailBatchDispatcher(JavaMailSender mailSender) {
+        this.mailSender = mailSender;
+    }
+
+    /**
+     * Gửi các email và trả về key của những email đã gửi thành công.
+     */
+    public <K> Set<K> send(List<OutgoingMail<K>> mails) {
+        Set<K> sent = new HashSet<>();
+        for (int from = 0; from < mails.size(); from += batchSize) {
+            List<OutgoingMail<K>> batch = mails.subList(from, Math.min(from + batchSize, mails.size()));
+            long started = System.nanoTime();
+            sendBatch(batch, sent);
+            if (!throttle(batch.size(), started)) {
+                break;
+            }
+        }
+        return sent;
+    }
+
+    private <K> void sendBatch(List<OutgoingMail<K>> batch, Set<K> sent) {
+        // MimeMessage không override equals nên map theo identity
+        Map<MimeMessage, K> keys = new IdentityHashMap<>();
+        for (OutgoingMail<K> mail : batch) {
+            try {
+                keys.put(toMimeMessage(mail), mail.key());
+            } catch (MessagingException | UnsupportedEncodingException e) {
+                log.warn("Không thể tạo email gửi tới {}: {}", mail.to(), e.getMessage());
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            mailSender.send(keys.keySet().toArray(new MimeMessage[0]));
+            sent.addAll(keys.values());
+        } catch (MailSendException e) {
+            // Chỉ những email nằm trong failedMessages là gửi lỗi, còn lại đã gửi được
+            Map<Object, Exception> failed = e.getFailedMessages();
+            if (!failed.isEmpty()) {
+                keys.forEach((message, key) -> {
+                    if (!failed.containsKey(message)) {
+                        sent.add(key);
+                    }
+                });
+            }
+            log.warn("Gửi lô email lỗi {}/{} email: {}", failed.isEmpty() ? keys.size() : failed.size(),
+                    keys.size(), e.getMessage());
+        } catch (MailException e) {
+            log.warn("Không thể gửi lô {} email: {}", keys.size(), e.getMessage());
+        }
+    }
+
+    private MimeMessage toMimeMessage(OutgoingMail<?> mail) throws MessagingException, UnsupportedEncodingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom(fromEmail, "DUPSS Support");
+        helper.setTo(mail.to());
+        helper.setSubject(mail.subject());
+        helper.setText(mail.html(), true);
+        return message;
+    }
+
+    /**
+     * Chờ đủ thời gian để không vượt quá maxPerSecond. Trả về false nếu thread bị interrupt (ứng dụng đang tắt).
+     */
+    private boolean throttle(int batchCount, long startedNanos) {
+        if (maxPerSecond <= 0) {
+            return true;
+        }
+        long minNanos = (long) (batchCount * TimeUnit.SECONDS.toNanos(1) / maxPerSecond);
+        long remaining = minNanos - (System.nanoTime() - startedNanos);
+        if (remaining <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public record OutgoingMail<K>(K key, String to, String subject, String html) {
+    }
+}
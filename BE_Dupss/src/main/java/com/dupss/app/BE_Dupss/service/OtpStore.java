@@ -0,0 +1,25 @@
+package com.dupss.app.BE_Dupss.service;
+
+/**
+ * Nơi lưu mã OTP đặt lại mật khẩu. Mặc định dùng bộ nhớ (app.otp.store=memory),
+ * có thể chuyển sang bảng password_reset_otp bằng app.otp.store=jpa.
+ */
+public interface OtpStore {
+
+    enum VerifyResult {
+        VALID,
+        INVALID,
+        EXPIRED,
+        TOO_MANY_ATTEMPTS
+    }
+
+    /**
+     * Lưu OTP mới cho email, thay thế OTP cũ nếu có
+     */
+    void save(String email, String otp);
+
+    /**
+     * Kiểm tra OTP; OTP hợp lệ sẽ bị xoá để không dùng lại được
+     */
+    VerifyResult verify(String email, String otp);
+}
@@ -0,0 +1,60 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Pool riêng, có giới hạn cho các tác vụ BCrypt (đăng nhập) để một đợt đăng nhập dồn dập
+ * không chiếm hết thread của Tomcat. Khi pool và hàng đợi đã đầy thì từ chối ngay với 429.
+ */
+@Service
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final Counter rejectedCounter;
+    private final long retryAfterSeconds;
+
+    public PasswordHashingExecutor(MeterRegistry meterRegistry,
+                                   @Value("${app.password-hashing.pool-size:0}") int poolSize,
+                                   @Value("${app.password-hashing.queue-capacity:64}") int queueCapacity,
+                                   @Value("${app.password-hashing.retry-after-seconds:2}") long retryAfterSeconds) {
+        // pool-size = 0 nghĩa là dùng số core của máy
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.rejectedCounter = Counter.builder("dupss.password.hashing.rejected")
+                .description("Password hashing tasks rejected because the pool was saturated")
+                .register(meterRegistry);
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "passwordHashing");
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new TooManyRequestsException("Hệ thống đang bận, vui lòng thử lại sau", retryAfterSeconds);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,66 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.respository.SchedulerLockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Khoá theo lease trên bảng scheduler_locks để một job @Scheduled chỉ chạy trên một node tại một thời điểm
+ * khi chạy nhiều instance. Node bị chết giữa chừng thì lease tự hết hạn và node khác chạy tiếp ở lượt sau.
+ */
+@Service
+@Slf4j
+public class SchedulerLockService {
+
+    private final SchedulerLockRepository schedulerLockRepository;
+    private final String owner;
+
+    public SchedulerLockService(SchedulerLockRepository schedulerLockRepository) {
+        this.schedulerLockRepository = schedulerLockRepository;
+        this.owner = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public boolean tryAcquire(String name, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        if (schedulerLockRepository.acquire(name, owner, now, now.plus(lease)) == 1) {
+            return true;
+        }
+        if (schedulerLockRepository.existsById(name)) {
+            return false;
+        }
+        // Lần đầu chạy job: tạo dòng khoá, node nào insert trước thì giữ lease
+        try {
+            return schedulerLockRepository.insert(name, owner, now.plus(lease)) == 1;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gia hạn lease đang giữ thêm một khoảng lease tính từ bây giờ, dùng cho job chạy qua nhiều lô.
+     * Trả về false nếu lease đã hết hạn hoặc đã thuộc node khác, khi đó job phải dừng.
+     */
+    public boolean extend(String name, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        return schedulerLockRepository.extend(name, owner, now, now.plus(lease)) == 1;
+    }
+
+    public void release(String name) {
+        schedulerLockRepository.release(name, owner, LocalDateTime.now());
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            log.debug("Không lấy được hostname: {}", e.getMessage());
+            return "node";
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.dupss.app.BE_Dupss.service;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Tách từ cho chỉ mục tìm kiếm: bỏ thẻ HTML, bỏ dấu tiếng Việt (kể cả đ -> d), chuyển về chữ thường
+ * và tách theo ký tự không phải chữ/số, để "Ma Tuý", "ma túy" và "ma tuy" đều ra cùng các từ.
+ */
+public final class SearchTextAnalyzer {
+
+    // Từ dài hơn mức này thường là URL hoặc chuỗi mã hoá, không có ích khi tìm kiếm
+    private static final int MAX_TOKEN_LENGTH = 40;
+    private static final Pattern HTML_TAG = Pattern.compile("<[^>]*>");
+
+    private SearchTextAnalyzer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        if (text.indexOf('<') >= 0 || text.indexOf('&') >= 0) {
+            text = HtmlUtils.htmlUnescape(HTML_TAG.matcher(text).replaceAll(" "));
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (c == 'đ' || c == 'Đ') {
+                c = 'd';
+            }
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else {
+                flush(token, tokens);
+            }
+        }
+        flush(token, tokens);
+        return tokens;
+    }
+
+    private static void flush(StringBuilder token, List<String> tokens) {
+        if (!token.isEmpty() && token.length() <= MAX_TOKEN_LENGTH) {
+            tokens.add(token.toString());
+        }
+        token.setLength(0);
+    }
+}
@@ -0,0 +1,222 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.dto.response.SlotResponseDto;
+import com.dupss.app.BE_Dupss.entity.Slot;
+import com.dupss.app.BE_Dupss.respository.SlotRepository;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Lịch trống in-memory theo từng tư vấn viên: mỗi ngày là một bitmap 24 bit của các slot 1 giờ,
+ * để trang đặt lịch không phải truy vấn bảng slots (kèm join users) ở mỗi lượt xem.
+ * Lịch của một tư vấn viên được nạp khi có người xem lần đầu (chỉ các ngày từ hôm nay trở đi)
+ * và được cập nhật sau khi commit ở mọi chỗ tạo, sửa, xoá, đặt hoặc trả slot.
+ * Ngày có slot không tròn giờ thì không trả lời từ bitmap mà để service truy vấn DB như cũ.
+ * Lịch là riêng của từng node và không có kênh báo thay đổi giữa các node: slot được đặt hoặc trả ở node khác
+ * (hoặc sửa thẳng trong DB) chỉ hiện ra sau khi lịch hết hạn, tối đa ttl-seconds (mặc định 15 giây).
+ * Trong khoảng đó trang đặt lịch có thể còn hiện slot đã bị đặt; lúc đặt, UPDATE có điều kiện trên slot
+ * vẫn từ chối nên không gây đặt trùng. Mỗi tư vấn viên được xem nhiều chỉ tốn một câu truy vấn mỗi TTL.
+ */
+@Service
+public class SlotAvailabilityCalendar {
+
+    private static final int HOURS_PER_DAY = 24;
+
+    private final SlotRepository slotRepository;
+    private final UserRepository userRepository;
+    private final Cache<Long, ConsultantCalendar> calendars;
+
+    public SlotAvailabilityCalendar(SlotRepository slotRepository,
+                                    UserRepository userRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.slot-calendar.max-consultants:1000}") long maxConsultants,
+                                    @Value("${app.slot-calendar.ttl-seconds:15}") long ttlSeconds) {
+        this.slotRepository = slotRepository;
+        this.userRepository = userRepository;
+        // TTL giới hạn độ lệch với thay đổi từ node khác, sửa trực tiếp trong DB hoặc đổi tên tư vấn viên
+        this.calendars = Caffeine.newBuilder()
+                .maximumSize(maxConsultants)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, calendars, "slotCalendar");
+    }
+
+    /**
+     * Các slot còn trống của tư vấn viên trong ngày, sắp theo giờ bắt đầu.
+     * Trả về Optional rỗng nếu lịch không trả lời được (ngày trong quá khứ, ngày có slot lẻ giờ,
+     * hoặc không tìm thấy tư vấn viên) để nơi gọi truy vấn DB.
+     */
+    public Optional<List<SlotResponseDto>> findAvailableSlots(Long consultantId, LocalDate date) {
+        LocalDate today = LocalDate.now();
+        if (consultantId == null || date == null || date.isBefore(today)) {
+            return Optional.empty();
+        }
+        ConsultantCalendar calendar = calendars.get(consultantId, this::load);
+        if (calendar == null || date.isBefore(calendar.from)) {
+            return Optional.empty();
+        }
+        return calendar.availableSlots(date, date.equals(today) ? LocalTime.now() : null);
+    }
+
+    /**
+     * Ghi nhận slot vừa được tạo hoặc đổi trạng thái trống/đã đặt.
+     */
+    public void slotChanged(Slot slot, boolean available) {
+        Long slotId = slot.getId();
+        LocalDate date = slot.getDate();
+        LocalTime startTime = slot.getStartTime();
+        LocalTime endTime = slot.getEndTime();
+        afterCommit(slot.getConsultant().getId(),
+                calendar -> calendar.put(slotId, date, startTime, endTime, available));
+    }
+
+    /**
+     * Ghi nhận slot vừa bị xoá.
+     */
+    public void slotRemoved(Slot slot) {
+        Long slotId = slot.getId();
+        LocalDate date = slot.getDate();
+        LocalTime startTime = slot.getStartTime();
+        afterCommit(slot.getConsultant().getId(), calendar -> calendar.remove(slotId, date, startTime));
+    }
+
+    /**
+     * Bỏ lịch đã nạp của tư vấn viên (ví dụ sau khi tạo slot hàng loạt), lần xem sau sẽ nạp lại từ DB.
+     */
+    public void invalidate(Long consultantId) {
+        calendars.invalidate(consultantId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    calendars.invalidate(consultantId);
+                }
+            });
+        }
+    }
+
+    private void afterCommit(Long consultantId, Consumer<ConsultantCalendar> update) {
+        // computeIfPresent chờ lượt nạp đang chạy (nếu có) rồi mới áp dụng, nên lịch vừa nạp từ dữ liệu cũ
+        // vẫn nhận được thay đổi; thay đổi là idempotent nên áp dụng lại trên dữ liệu mới cũng không sao
+        Runnable apply = () -> calendars.asMap().computeIfPresent(consultantId, (id, calendar) -> {
+            update.accept(calendar);
+            return calendar;
+        });
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply.run();
+            }
+        });
+    }
+
+    private ConsultantCalendar load(Long consultantId) {
+        return userRepository.findById(consultantId)
+                .map(consultant -> {
+                    ConsultantCalendar calendar = new ConsultantCalendar(consultant.getFullname(), LocalDate.now());
+                    slotRepository.findCalendarEntries(consultantId, calendar.from).forEach(entry ->
+                            calendar.put(entry.getId(), entry.getDate(), entry.getStartTime(), entry.getEndTime(),
+                                    entry.isAvailable()));
+                    return calendar;
+                })
+                .orElse(null);
+    }
+
+    private static final class ConsultantCalendar {
+        private final String consultantName;
+        private final LocalDate from;
+        private final Map<LocalDate, Day> days = new HashMap<>();
+
+        private ConsultantCalendar(String consultantName, LocalDate from) {
+            this.consultantName = consultantName;
+            this.from = from;
+        }
+
+        synchronized void put(Long slotId, LocalDate date, LocalTime startTime, LocalTime endTime, boolean available) {
+            if (date.isBefore(from)) {
+                return;
+            }
+            Day day = days.computeIfAbsent(date, d -> new Day());
+            if (day.irregular) {
+                return;
+            }
+            int hour = startTime.getHour();
+            boolean wholeHour = startTime.equals(LocalTime.of(hour, 0)) && startTime.plusHours(1).equals(endTime);
+            if (!wholeHour || (day.hasSlot(hour) && day.slotIds[hour] != slotId)) {
+                day.irregular = true;
+                return;
+            }
+            int bit = 1 << hour;
+            day.slotMask |= bit;
+            day.availableMask = available ? day.availableMask | bit : day.availableMask & ~bit;
+            day.slotIds[hour] = slotId;
+        }
+
+        synchronized void remove(Long slotId, LocalDate date, LocalTime startTime) {
+            Day day = days.get(date);
+            if (day == null || day.irregular) {
+                return;
+            }
+            int hour = startTime.getHour();
+            if (day.hasSlot(hour) && day.slotIds[hour] == slotId) {
+                int bit = 1 << hour;
+                day.slotMask &= ~bit;
+                day.availableMask &= ~bit;
+            }
+        }
+
+        synchronized Optional<List<SlotResponseDto>> availableSlots(LocalDate date, LocalTime after) {
+            Day day = days.get(date);
+            if (day == null) {
+                return Optional.of(List.of());
+            }
+            if (day.irregular) {
+                return Optional.empty();
+            }
+            List<SlotResponseDto> slots = new ArrayList<>(Integer.bitCount(day.availableMask));
+            for (int mask = day.availableMask; mask != 0; mask &= mask - 1) {
+                int hour = Integer.numberOfTrailingZeros(mask);
+                LocalTime startTime = LocalTime.of(hour, 0);
+                if (after != null && !startTime.isAfter(after)) {
+                    continue;
+                }
+                slots.add(new SlotResponseDto(day.slotIds[hour], date, startTime, startTime.plusHours(1), consultantName));
+            }
+            return Optional.of(slots);
+        }
+    }
+
+    private static final class Day {
+        // bit h = 1 nghĩa là có slot bắt đầu lúc h:00 / slot đó còn trống
+        private int slotMask;
+        private int availableMask;
+        private final long[] slotIds = new long[HOURS_PER_DAY];
+        private boolean irregular;
+
+        private boolean hasSlot(int hour) {
+            return (slotMask & (1 << hour)) != 0;
+        }
+    }
+}
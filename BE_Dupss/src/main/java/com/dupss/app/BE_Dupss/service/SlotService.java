@@ -1,6 +1,8 @@
 package com.dupss.app.BE_Dupss.service;
 
+import com.dupss.app.BE_Dupss.dto.request.SlotBulkRequest;
 import com.dupss.app.BE_Dupss.dto.request.SlotRequestDto;
+import com.dupss.app.BE_Dupss.dto.response.SlotBulkResponse;
 import com.dupss.app.BE_Dupss.dto.response.SlotResponseDto;
 import com.dupss.app.BE_Dupss.entity.Slot;
 
@@ -14,6 +16,11 @@ public interface SlotService {
      */
     SlotResponseDto createSlot(SlotRequestDto requestDto);
     
+    /**
+     * Tạo hàng loạt slot cho tư vấn viên đang đăng nhập từ lịch mẫu theo tuần trong một khoảng ngày
+     */
+    SlotBulkResponse createSlotsBulk(SlotBulkRequest requestDto);
+    
     /**
      * Lấy tất cả các slot của một tư vấn viên
      */
@@ -24,6 +31,11 @@ public interface SlotService {
      */
     List<SlotResponseDto> getAvailableSlotsByConsultantAndDate(Long consultantId, LocalDate date);
     
+    /**
+     * Tìm các slot trống sớm nhất của tất cả tư vấn viên cho một chủ đề trong khoảng ngày
+     */
+    List<SlotResponseDto> findEarliestAvailableSlots(Long topicId, LocalDate fromDate, LocalDate toDate, int limit);
+    
     /**
      * Cập nhật trạng thái khả dụng của slot
      */
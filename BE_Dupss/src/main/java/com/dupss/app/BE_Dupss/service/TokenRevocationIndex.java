@@ -0,0 +1,159 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.entity.InvalidatedToken;
+import com.dupss.app.BE_Dupss.respository.InvalidatedTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kho token đã bị thu hồi (logout). Bảng revoked_tokens là nguồn lưu bền,
+ * còn chỉ mục in-memory trả lời việc kiểm tra token mà không phải truy vấn DB ở mỗi request.
+ * Mỗi entry chỉ được giữ đến khi token gốc hết hạn, sau đó bị xoá khỏi cả bộ nhớ lẫn bảng.
+ * Khi chạy nhiều node, mỗi node định kỳ đọc các token mới bị thu hồi (theo revoked_at) từ bảng,
+ * nên token logout ở node khác bị từ chối chậm nhất sau refresh-interval-ms.
+ */
+@Service
+@Slf4j
+public class TokenRevocationIndex {
+
+    private final InvalidatedTokenRepository invalidatedTokenRepository;
+
+    @Value("${app.token-revocation.purge-batch-size:1000}")
+    private int purgeBatchSize;
+
+    // Đọc lùi thêm một khoảng để không bỏ sót bản ghi commit muộn hoặc do lệch đồng hồ giữa các node
+    @Value("${app.token-revocation.refresh-overlap-ms:60000}")
+    private long refreshOverlapMs;
+
+    // jti -> thời điểm hết hạn của token (epoch millis)
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final AtomicLong storeSize = new AtomicLong();
+    // Thời điểm bắt đầu lần đọc bảng gần nhất (epoch millis)
+    private volatile long refreshedAt;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter purgedCounter;
+    private final Timer purgeTimer;
+
+    public TokenRevocationIndex(InvalidatedTokenRepository invalidatedTokenRepository, MeterRegistry meterRegistry) {
+        this.invalidatedTokenRepository = invalidatedTokenRepository;
+        this.hitCounter = Counter.builder("dupss.token.revocation.lookups")
+                .tag("result", "hit")
+                .description("Token lookups that found a revoked jti")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("dupss.token.revocation.lookups")
+                .tag("result", "miss")
+                .description("Token lookups answered as not revoked")
+                .register(meterRegistry);
+        this.purgedCounter = Counter.builder("dupss.token.revocation.purged")
+                .description("Expired revoked-token rows deleted from the database")
+                .register(meterRegistry);
+        this.purgeTimer = Timer.builder("dupss.token.revocation.purge")
+                .description("Duration of a revoked-token purge run")
+                .register(meterRegistry);
+        Gauge.builder("dupss.token.revocation.size", revokedTokens, Map::size)
+                .description("Revoked tokens currently held in memory")
+                .register(meterRegistry);
+        Gauge.builder("dupss.token.revocation.store.size", storeSize, AtomicLong::get)
+                .description("Rows in the revoked_tokens table as of the last purge")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void loadFromDatabase() {
+        refreshedAt = System.currentTimeMillis();
+        List<InvalidatedToken> tokens = invalidatedTokenRepository.findByExpirationTimeAfter(new Date(refreshedAt));
+        tokens.forEach(token -> remember(token.getId(), token.getExpirationTime()));
+        storeSize.set(invalidatedTokenRepository.count());
+        log.info("Loaded {} revoked tokens into memory", revokedTokens.size());
+    }
+
+    /**
+     * Nạp các token bị thu hồi từ lần đọc trước (trừ đi overlap). Đọc lặp lại một token là vô hại.
+     */
+    @Scheduled(fixedDelayString = "${app.token-revocation.refresh-interval-ms:30000}",
+            initialDelayString = "${app.token-revocation.refresh-interval-ms:30000}")
+    public void refreshFromDatabase() {
+        long startedAt = System.currentTimeMillis();
+        Date since = new Date(refreshedAt - refreshOverlapMs);
+        List<InvalidatedToken> tokens = invalidatedTokenRepository
+                .findByRevokedAtGreaterThanEqualAndExpirationTimeAfter(since, new Date(startedAt));
+        tokens.forEach(token -> remember(token.getId(), token.getExpirationTime()));
+        refreshedAt = startedAt;
+        if (!tokens.isEmpty()) {
+            log.debug("Refreshed {} revoked tokens revoked since {}", tokens.size(), since);
+        }
+    }
+
+    public boolean isRevoked(String jti) {
+        Long expiresAt = jti == null ? null : revokedTokens.get(jti);
+        if (expiresAt == null) {
+            missCounter.increment();
+            return false;
+        }
+        if (expiresAt <= System.currentTimeMillis()) {
+            // Token đã hết hạn thì không cần giữ trong chỉ mục nữa
+            revokedTokens.remove(jti, expiresAt);
+            missCounter.increment();
+            return false;
+        }
+        hitCounter.increment();
+        return true;
+    }
+
+    public void revoke(String jti, Date expirationTime) {
+        if (jti == null || expirationTime == null || expirationTime.getTime() <= System.currentTimeMillis()) {
+            return;
+        }
+        invalidatedTokenRepository.save(InvalidatedToken.builder()
+                .id(jti)
+                .expirationTime(expirationTime)
+                .revokedAt(new Date())
+                .build());
+        storeSize.incrementAndGet();
+        remember(jti, expirationTime);
+    }
+
+    private void remember(String jti, Date expirationTime) {
+        if (expirationTime.getTime() > System.currentTimeMillis()) {
+            revokedTokens.put(jti, expirationTime.getTime());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.token-revocation.purge-interval-ms:300000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+
+        purgeTimer.record(() -> {
+            Date cutoff = new Date(now);
+            int deleted;
+            long total = 0;
+            // Xoá theo từng lô để không giữ lock lâu trên bảng
+            do {
+                deleted = invalidatedTokenRepository.deleteExpiredBatch(cutoff, purgeBatchSize);
+                total += deleted;
+            } while (deleted == purgeBatchSize);
+
+            purgedCounter.increment(total);
+            storeSize.set(invalidatedTokenRepository.count());
+            if (total > 0) {
+                log.info("Purged {} expired revoked tokens", total);
+            }
+        });
+    }
+}
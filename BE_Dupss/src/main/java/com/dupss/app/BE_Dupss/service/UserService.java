@@ -49,6 +49,7 @@ public class UserService implements CommandLineRunner {
     private final EmailService mailService;
     private final CloudinaryService cloudinaryService;
     private final JwtService jwtService;
+    private final CurrentUserResolver currentUserResolver;
 
 //    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
 //                       MailService mailService, CloudinaryService cloudinaryService) {
@@ -286,6 +287,7 @@ public class UserService implements CommandLineRunner {
         }
 
         User updatedUser = userRepository.save(user);
+        currentUserResolver.evict(updatedUser.getId());
         log.info("Admin updated user: {}", updatedUser.getUsername());
 
         return UpdateUserResponse.builder()
@@ -2,17 +2,29 @@ package com.dupss.app.BE_Dupss.service.impl;
 
 import com.dupss.app.BE_Dupss.dto.request.AppointmentRequestDto;
 import com.dupss.app.BE_Dupss.dto.request.AppointmentReviewRequest;
+import com.dupss.app.BE_Dupss.dto.request.AppointmentSearchRequest;
+import com.dupss.app.BE_Dupss.dto.response.AppointmentEventResponse;
 import com.dupss.app.BE_Dupss.dto.response.AppointmentResponseDto;
+import com.dupss.app.BE_Dupss.dto.response.CursorPageResponse;
+import com.dupss.app.BE_Dupss.dto.response.UnassignedAppointmentResponse;
 import com.dupss.app.BE_Dupss.entity.*;
 import com.dupss.app.BE_Dupss.exception.ResourceNotFoundException;
 import com.dupss.app.BE_Dupss.respository.*;
+import com.dupss.app.BE_Dupss.service.AppointmentAutoAssigner;
+import com.dupss.app.BE_Dupss.service.AppointmentEventBroadcaster;
 import com.dupss.app.BE_Dupss.service.AppointmentService;
+import com.dupss.app.BE_Dupss.service.ConsultantRatingService;
 import com.dupss.app.BE_Dupss.service.EmailService;
+import com.dupss.app.BE_Dupss.service.SlotAvailabilityCalendar;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -20,20 +32,29 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AppointmentServiceImpl implements AppointmentService {
 
+    // Tư vấn viên placeholder: cuộc hẹn gán cho ID này được xem là chưa phân công
+    private static final long UNASSIGNED_CONSULTANT_ID = 2L;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String CURSOR_SEPARATOR = "_";
+
     private final AppointmentRepository appointmentRepository;
     private final TopicRepo topicRepository;
     private final UserRepository userRepository;
     private final EmailService emailService;
     private final SlotRepository slotRepository;
+    private final SlotAvailabilityCalendar slotAvailabilityCalendar;
+    private final AppointmentAutoAssigner appointmentAutoAssigner;
+    private final AppointmentEventBroadcaster appointmentEventBroadcaster;
+    private final ConsultantRatingService consultantRatingService;
 
     @Override
+    @Transactional
     public AppointmentResponseDto createAppointment(AppointmentRequestDto requestDto) {
         // Lấy topic theo ID
         Topic topic = topicRepository.findByIdAndActive(requestDto.getTopicId(), true);
@@ -63,17 +84,20 @@ public class AppointmentServiceImpl implements AppointmentService {
             throw new IllegalArgumentException("Không được chọn ngày giờ trong quá khứ");
         }
 
-        // Kiểm tra slot đã được đặt chưa
-        if (!selectedSlot.isAvailable()) {
-            throw new IllegalStateException("Slot này đã được đặt. Vui lòng chọn slot khác.");
-        }
-
         // Lấy tư vấn viên từ slot
         User consultant = selectedSlot.getConsultant();
         if (consultant == null || !consultant.isEnabled()) {
             throw new ResourceNotFoundException("Không tìm thấy tư vấn viên hợp lệ cho slot này.");
         }
 
+        // Giữ slot bằng một câu UPDATE có điều kiện: khi nhiều người đặt cùng lúc chỉ một người thành công,
+        // nếu bước lưu cuộc hẹn bên dưới lỗi thì transaction rollback và slot được trả lại
+        if (slotRepository.claimIfAvailable(selectedSlot.getId()) == 0) {
+            throw new IllegalStateException("Slot này đã được đặt. Vui lòng chọn slot khác.");
+        }
+        slotAvailabilityCalendar.slotChanged(selectedSlot, false);
+        appointmentAutoAssigner.slotChanged(selectedSlot, false);
+
         // Khởi tạo đối tượng Appointment
         Appointment appointment = new Appointment();
         appointment.setCustomerName(requestDto.getCustomerName());
@@ -96,29 +120,59 @@ public class AppointmentServiceImpl implements AppointmentService {
             appointment.setGuest(true);
         }
         appointment.setStatus("CONFIRMED");
-        selectedSlot.setAvailable(false);
-        slotRepository.save(selectedSlot);
 
         appointment.setLinkMeet(requestDto.getMeetingUrl());
         // Lưu vào database
         Appointment savedAppointment = appointmentRepository.save(appointment);
-        try {
-            emailService.sendAppointmentConfirmation(savedAppointment);
-        } catch (Exception ex) {
-            // Không rollback nếu lỗi gửi mail, chỉ log
-            log.warn("Không thể gửi email xác nhận lịch hẹn: {}", ex.getMessage());
-        }
+        appointmentAutoAssigner.appointmentChanged(null, null, savedAppointment);
+        appointmentEventBroadcaster.publish(AppointmentEventResponse.Type.CREATED, null, savedAppointment);
+        // Chỉ gửi email khi lịch hẹn đã được commit, tránh báo đặt thành công cho một giao dịch bị rollback
+        afterCommit(() -> {
+            try {
+                emailService.sendAppointmentConfirmation(savedAppointment);
+            } catch (Exception ex) {
+                // Không rollback nếu lỗi gửi mail, chỉ log
+                log.warn("Không thể gửi email xác nhận lịch hẹn: {}", ex.getMessage());
+            }
+        });
 
         // Chuyển đổi thành AppointmentResponseDto và trả về
         return mapToResponseDto(savedAppointment);
     }
 
     @Override
-    public List<AppointmentResponseDto> getAllAppointments() {
-        List<Appointment> appointments = appointmentRepository.findAll();
-        return appointments.stream()
-                .map(this::mapToResponseDto)
-                .collect(Collectors.toList());
+    public CursorPageResponse<AppointmentResponseDto> searchAppointments(AppointmentSearchRequest searchRequest) {
+        int pageSize = Math.clamp(searchRequest.getSize(), 1, MAX_PAGE_SIZE);
+        if (searchRequest.getStatus() != null && !isValidStatus(searchRequest.getStatus())) {
+            throw new IllegalArgumentException("Trạng thái không hợp lệ: " + searchRequest.getStatus());
+        }
+
+        LocalDate lastDate = null;
+        Long lastId = null;
+        String cursor = searchRequest.getCursor();
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                int separator = cursor.indexOf(CURSOR_SEPARATOR);
+                lastDate = LocalDate.parse(cursor.substring(0, separator));
+                lastId = Long.parseLong(cursor.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor không hợp lệ: " + cursor);
+            }
+        }
+
+        List<AppointmentResponseDto> rows = appointmentRepository.searchResponses(
+                searchRequest.getFromDate(), searchRequest.getToDate(), searchRequest.getStatus(),
+                searchRequest.getConsultantId(), searchRequest.getTopicId(), searchRequest.getGuest(),
+                lastDate, lastId, Limit.of(pageSize + 1));
+
+        boolean hasNext = rows.size() > pageSize;
+        List<AppointmentResponseDto> page = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            AppointmentResponseDto last = page.get(page.size() - 1);
+            nextCursor = last.getAppointmentDate() + CURSOR_SEPARATOR + last.getId();
+        }
+        return new CursorPageResponse<>(page, nextCursor, hasNext);
     }
 
     @Override
@@ -130,20 +184,15 @@ public class AppointmentServiceImpl implements AppointmentService {
 
     @Override
     public List<AppointmentResponseDto> getAppointmentsByGuestEmail(String email) {
-        List<Appointment> appointments = appointmentRepository.findByIsGuestAndEmailOrderByAppointmentDateDesc(true, email);
-        return appointments.stream()
-                .map(this::mapToResponseDto)
-                .collect(Collectors.toList());
+        return appointmentRepository.findGuestResponsesByEmail(email);
     }
 
     @Override
     public List<AppointmentResponseDto> getAppointmentsByUserId(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy người dùng với ID: " + userId));
-        List<Appointment> appointments = appointmentRepository.findByUser(user);
-        return appointments.stream()
-                .map(this::mapToResponseDto)
-                .collect(Collectors.toList());
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("Không tìm thấy người dùng với ID: " + userId);
+        }
+        return appointmentRepository.findResponsesByUserId(userId);
     }
 
     @Override
@@ -152,25 +201,16 @@ public class AppointmentServiceImpl implements AppointmentService {
         if (authentication == null || !authentication.isAuthenticated()) {
             throw new IllegalArgumentException("Người dùng chưa đăng nhập");
         }
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy người dùng với ID: " + userId));
-        List<Appointment> appointments = appointmentRepository.findByUser(user);
-        return appointments.stream()
-                .map(this::mapToResponseDto)
-                .collect(Collectors.toList());
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("Không tìm thấy người dùng với ID: " + userId);
+        }
+        return appointmentRepository.findResponsesByUserId(userId);
     }
 
     @Override
     public List<AppointmentResponseDto> getAppointmentsByConsultantId(Long consultantId) {
-        Optional<User> consultantOptional = userRepository.findById(consultantId);
-        if (consultantOptional.isEmpty()) {
-            return List.of(); // Trả về mảng rỗng nếu không tìm thấy tư vấn viên
-        }
-        
-        List<Appointment> appointments = appointmentRepository.findByConsultant(consultantOptional.get());
-        return appointments.stream()
-                .map(this::mapToResponseDto)
-                .collect(Collectors.toList());
+        // Trả về mảng rỗng nếu không tìm thấy tư vấn viên
+        return appointmentRepository.findResponsesByConsultantId(consultantId);
     }
 
     @Override
@@ -181,6 +221,7 @@ public class AppointmentServiceImpl implements AppointmentService {
         // Get the consultant
         User consultant = userRepository.findById(consultantId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy tư vấn viên với ID: " + consultantId));
+        Long previousConsultantId = consultantIdOf(appointment);
         
         // If appointment doesn't have a consultant, assign this consultant
         if (appointment.getConsultant() == null) {
@@ -201,6 +242,8 @@ public class AppointmentServiceImpl implements AppointmentService {
 
         appointment.setStatus(status);
         Appointment updatedAppointment = appointmentRepository.save(appointment);
+        appointmentAutoAssigner.appointmentChanged(previousConsultantId, previousStatus, updatedAppointment);
+        appointmentEventBroadcaster.publish(eventTypeOf(status), previousConsultantId, updatedAppointment);
 
         // Gửi email cập nhật trạng thái
         emailService.sendAppointmentStatusUpdate(updatedAppointment, previousStatus);
@@ -237,6 +280,8 @@ public class AppointmentServiceImpl implements AppointmentService {
         // Cập nhật trạng thái thành CANCELED
         appointment.setStatus("CANCELLED");
         Appointment updatedAppointment = appointmentRepository.save(appointment);
+        appointmentAutoAssigner.appointmentChanged(consultantIdOf(updatedAppointment), previousStatus, updatedAppointment);
+        appointmentEventBroadcaster.publish(AppointmentEventResponse.Type.CANCELLED, null, updatedAppointment);
 
         Optional<Slot> selectedSlot = slotRepository.findByConsultantAndDateAndStartTime(
                 appointment.getConsultant(),
@@ -246,6 +291,8 @@ public class AppointmentServiceImpl implements AppointmentService {
         selectedSlot.ifPresent(slot -> {
             slot.setAvailable(true);
             slotRepository.save(slot);
+            slotAvailabilityCalendar.slotChanged(slot, true);
+            appointmentAutoAssigner.slotChanged(slot, true);
         });
 
         // Gửi email thông báo hủy cuộc hẹn
@@ -276,6 +323,8 @@ public class AppointmentServiceImpl implements AppointmentService {
         // Cập nhật trạng thái thành CANCELED
         appointment.setStatus("CANCELLED");
         Appointment updatedAppointment = appointmentRepository.save(appointment);
+        appointmentAutoAssigner.appointmentChanged(consultantIdOf(updatedAppointment), previousStatus, updatedAppointment);
+        appointmentEventBroadcaster.publish(AppointmentEventResponse.Type.CANCELLED, null, updatedAppointment);
 
         // Gửi email thông báo hủy cuộc hẹn
         emailService.sendAppointmentStatusUpdate(updatedAppointment, previousStatus);
@@ -285,72 +334,75 @@ public class AppointmentServiceImpl implements AppointmentService {
 
     @Override
     public List<AppointmentResponseDto> getCompletedOrCanceledAppointmentsByConsultantId(Long consultantId) {
-        Optional<User> consultantOptional = userRepository.findById(consultantId);
-        if (consultantOptional.isEmpty()) {
-            return List.of(); // Trả về mảng rỗng nếu không tìm thấy tư vấn viên
-        }
-        
         // Danh sách các trạng thái cần lấy: COMPLETED và CANCELED
         List<String> statuses = List.of("COMPLETED", "CANCELLED");
-        
-        // Lấy danh sách các cuộc hẹn có trạng thái là COMPLETED hoặc CANCELED
-        List<Appointment> appointments = appointmentRepository.findByConsultantAndStatusIn(consultantOptional.get(), statuses);
-        
-        return appointments.stream()
-                .map(this::mapToResponseDto)
-                .collect(Collectors.toList());
+
+        // Lấy danh sách các cuộc hẹn có trạng thái là COMPLETED hoặc CANCELED (mảng rỗng nếu không tìm thấy tư vấn viên)
+        return appointmentRepository.findResponsesByConsultantIdAndStatusIn(consultantId, statuses);
     }
 
     @Override
-    public List<AppointmentResponseDto> getUnassignedAppointments() {
-        // Lấy tất cả các cuộc hẹn có trạng thái PENDING và consultant là placeholder (ID = 2)
-        List<Appointment> appointments = appointmentRepository.findAll().stream()
-                .filter(a -> "PENDING".equals(a.getStatus()) && 
-                       a.getConsultant() != null && a.getConsultant().getId() == 2L)
-                .collect(Collectors.toList());
-        
-        return appointments.stream()
-                .map(this::mapToResponseDto)
-                .collect(Collectors.toList());
+    public CursorPageResponse<UnassignedAppointmentResponse> getUnassignedAppointments(String cursor, int size) {
+        int pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        long afterId = parseIdCursor(cursor);
+
+        // Lấy các cuộc hẹn PENDING của consultant placeholder (ID = 2), lấy dư một dòng để biết còn trang sau không
+        List<UnassignedAppointmentResponse> rows = appointmentRepository.findQueueByStatusAndConsultant(
+                "PENDING", UNASSIGNED_CONSULTANT_ID, afterId, Limit.of(pageSize + 1));
+
+        boolean hasNext = rows.size() > pageSize;
+        List<UnassignedAppointmentResponse> content = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasNext ? String.valueOf(content.get(content.size() - 1).getId()) : null;
+        return new CursorPageResponse<>(content, nextCursor, hasNext);
     }
 
     @Override
+    public long countUnassignedAppointments() {
+        return appointmentRepository.countByStatusAndConsultant("PENDING", UNASSIGNED_CONSULTANT_ID);
+    }
+
+    private long parseIdCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor không hợp lệ: " + cursor);
+        }
+    }
+
+    @Override
+    @Transactional
     public AppointmentResponseDto claimAppointment(Long appointmentId, Long consultantId) {
-        Appointment appointment = appointmentRepository.findById(appointmentId)
-                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy cuộc hẹn với ID: " + appointmentId));
-        
-        // Lấy thông tin tư vấn viên mới
-        User consultant = userRepository.findById(consultantId)
-                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy tư vấn viên với ID: " + consultantId));
-        
-        // Kiểm tra và cập nhật tư vấn viên
-        if (appointment.getConsultant() != null && 
-            !Objects.equals(appointment.getConsultant().getId(), consultantId) && 
-            appointment.getConsultant().getId() != 2L) {
-            // Nếu cuộc hẹn đã có tư vấn viên khác (không phải placeholder), cho phép thay đổi
-            appointment.setConsultant(consultant);
-        } else if (appointment.getConsultant() == null || appointment.getConsultant().getId() == 2L) {
-            // Nếu chưa có tư vấn viên hoặc đang là placeholder consultant (ID = 2), gán tư vấn viên mới
-            appointment.setConsultant(consultant);
+        if (consultantId == UNASSIGNED_CONSULTANT_ID || !userRepository.existsById(consultantId)) {
+            throw new ResourceNotFoundException("Không tìm thấy tư vấn viên với ID: " + consultantId);
         }
-        
-        // Cập nhật trạng thái nếu đang là PENDING
-        if ("PENDING".equals(appointment.getStatus())) {
-            String previousStatus = appointment.getStatus();
-            appointment.setStatus("CONFIRMED");
-            
-            // Lưu vào database
-            Appointment updatedAppointment = appointmentRepository.save(appointment);
-            
-            // Gửi email thông báo cập nhật trạng thái
-            emailService.sendAppointmentStatusUpdate(updatedAppointment, previousStatus);
-            
-            return mapToResponseDto(updatedAppointment);
-        } else {
-            // Nếu không phải PENDING, chỉ cập nhật consultant
-            Appointment updatedAppointment = appointmentRepository.save(appointment);
-            return mapToResponseDto(updatedAppointment);
+
+        // Nhận cuộc hẹn bằng một câu UPDATE có điều kiện (còn PENDING và đang ở placeholder):
+        // khi nhiều tư vấn viên nhận cùng lúc chỉ một người cập nhật được dòng này
+        if (appointmentRepository.assignIfPending(appointmentId, consultantId, UNASSIGNED_CONSULTANT_ID) == 0) {
+            if (!appointmentRepository.existsById(appointmentId)) {
+                throw new ResourceNotFoundException("Không tìm thấy cuộc hẹn với ID: " + appointmentId);
+            }
+            throw new IllegalStateException("Cuộc hẹn đã được tư vấn viên khác nhận hoặc không còn chờ phân công");
         }
+
+        Appointment claimedAppointment = appointmentRepository.findById(appointmentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy cuộc hẹn với ID: " + appointmentId));
+        appointmentAutoAssigner.appointmentChanged(UNASSIGNED_CONSULTANT_ID, "PENDING", claimedAppointment);
+        appointmentEventBroadcaster.publish(AppointmentEventResponse.Type.CLAIMED, UNASSIGNED_CONSULTANT_ID, claimedAppointment);
+
+        // Chỉ người nhận thành công mới gửi email, và chỉ sau khi commit
+        afterCommit(() -> {
+            try {
+                emailService.sendAppointmentStatusUpdate(claimedAppointment, "PENDING");
+            } catch (Exception ex) {
+                log.warn("Không thể gửi email cập nhật trạng thái lịch hẹn: {}", ex.getMessage());
+            }
+        });
+
+        return mapToResponseDto(claimedAppointment);
     }
 
 //    @Override
@@ -403,6 +455,7 @@ public class AppointmentServiceImpl implements AppointmentService {
         
         // Lưu vào database
         Appointment updatedAppointment = appointmentRepository.save(appointment);
+        appointmentEventBroadcaster.publish(AppointmentEventResponse.Type.STARTED, null, updatedAppointment);
         
         return mapToResponseDto(updatedAppointment);
     }
@@ -440,10 +493,13 @@ public class AppointmentServiceImpl implements AppointmentService {
         }
         
         // Cập nhật trạng thái
+        String previousStatus = appointment.getStatus();
         appointment.setStatus("COMPLETED");
         
         // Lưu vào database
         Appointment updatedAppointment = appointmentRepository.save(appointment);
+        appointmentAutoAssigner.appointmentChanged(consultantId, previousStatus, updatedAppointment);
+        appointmentEventBroadcaster.publish(AppointmentEventResponse.Type.ENDED, null, updatedAppointment);
         
         // Gửi email thông báo hoàn thành và yêu cầu đánh giá
         emailService.sendAppointmentStatusUpdate(updatedAppointment, "CONFIRMED");
@@ -476,6 +532,8 @@ public class AppointmentServiceImpl implements AppointmentService {
         
         // Lưu vào database
         Appointment updatedAppointment = appointmentRepository.save(appointment);
+        appointmentAutoAssigner.appointmentChanged(consultantId, previousStatus, updatedAppointment);
+        appointmentEventBroadcaster.publish(AppointmentEventResponse.Type.CANCELLED, null, updatedAppointment);
         
         // Gửi email thông báo hủy cuộc hẹn
         emailService.sendAppointmentStatusUpdate(updatedAppointment, previousStatus);
@@ -484,6 +542,7 @@ public class AppointmentServiceImpl implements AppointmentService {
     }
 
     @Override
+    @Transactional
     public AppointmentResponseDto reviewAppointment(Long appointmentId, AppointmentReviewRequest reviewRequest) {
 
         Appointment appointment = appointmentRepository.findById(appointmentId)
@@ -505,18 +564,11 @@ public class AppointmentServiceImpl implements AppointmentService {
             throw new IllegalArgumentException("Điểm đánh giá phải từ 1 đến 5");
         }
 
-        // Cập nhật thông tin
-        appointment.setReviewScore(reviewRequest.getReviewScore());
-        appointment.setCustomerReview(reviewRequest.getCustomerReview());
-        appointment.setReview(true);
-        
-        // Lưu vào database
-        Appointment updatedAppointment = appointmentRepository.save(appointment);
-        
-        return mapToResponseDto(updatedAppointment);
+        return mapToResponseDto(saveReview(appointment, reviewRequest.getReviewScore(), reviewRequest.getCustomerReview()));
     }
 
     @Override
+    @Transactional
     public AppointmentResponseDto reviewAppointmentByGuest(Long appointmentId, Integer reviewScore, String customerReview, String email) {
         Appointment appointment = appointmentRepository.findById(appointmentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy cuộc hẹn với ID: " + appointmentId));
@@ -541,15 +593,22 @@ public class AppointmentServiceImpl implements AppointmentService {
             throw new IllegalArgumentException("Điểm đánh giá phải từ 1 đến 5");
         }
 
-        // Cập nhật thông tin
-        appointment.setReviewScore(reviewScore);
-        appointment.setCustomerReview(customerReview);
-        appointment.setReview(true);
-        
-        // Lưu vào database
-        Appointment updatedAppointment = appointmentRepository.save(appointment);
-        
-        return mapToResponseDto(updatedAppointment);
+        return mapToResponseDto(saveReview(appointment, reviewScore, customerReview));
+    }
+
+    /**
+     * Lưu đánh giá bằng câu UPDATE có điều kiện (chưa đánh giá) và cộng vào tổng hợp đánh giá
+     * của tư vấn viên trong cùng transaction, nên hai lượt gửi đồng thời chỉ được tính một lần.
+     */
+    private Appointment saveReview(Appointment appointment, int reviewScore, String customerReview) {
+        if (appointmentRepository.submitReview(appointment.getId(), reviewScore, customerReview) == 0) {
+            throw new IllegalArgumentException("Cuộc hẹn này đã được đánh giá");
+        }
+        if (appointment.getConsultant() != null) {
+            consultantRatingService.recordReview(appointment.getConsultant().getId(), reviewScore);
+        }
+        return appointmentRepository.findById(appointment.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy cuộc hẹn với ID: " + appointment.getId()));
     }
 
     private boolean isValidStatus(String status) {
@@ -559,6 +618,31 @@ public class AppointmentServiceImpl implements AppointmentService {
                 status.equals("COMPLETED");
     }
 
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static AppointmentEventResponse.Type eventTypeOf(String status) {
+        return switch (status) {
+            case "CANCELLED" -> AppointmentEventResponse.Type.CANCELLED;
+            case "COMPLETED" -> AppointmentEventResponse.Type.ENDED;
+            default -> AppointmentEventResponse.Type.STATUS_CHANGED;
+        };
+    }
+
+    private static Long consultantIdOf(Appointment appointment) {
+        return appointment.getConsultant() != null ? appointment.getConsultant().getId() : null;
+    }
+
     private AppointmentResponseDto mapToResponseDto(Appointment appointment) {
         AppointmentResponseDto responseDto = new AppointmentResponseDto();
         responseDto.setId(appointment.getId());
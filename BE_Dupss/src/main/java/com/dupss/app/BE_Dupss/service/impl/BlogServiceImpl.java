@@ -10,9 +10,12 @@ import com.dupss.app.BE_Dupss.respository.BlogImageRepository;
 import com.dupss.app.BE_Dupss.respository.BlogRepository;
 import com.dupss.app.BE_Dupss.respository.TopicRepo;
 import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.service.CurrentUserResolver;
 import com.dupss.app.BE_Dupss.service.BlogService;
 
 import com.dupss.app.BE_Dupss.service.CloudinaryService;
+import com.dupss.app.BE_Dupss.service.ContentSearchIndex;
+import com.dupss.app.BE_Dupss.service.ContentSearchIndex.ContentType;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,8 +23,6 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -39,16 +40,15 @@ public class BlogServiceImpl implements BlogService {
     private final BlogRepository blogRepository;
     private final BlogImageRepository blogImageRepository;
     private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final CloudinaryService cloudinaryService;
     private final TopicRepo topicRepository;
+    private final ContentSearchIndex contentSearchIndex;
 
     @Override
     @Transactional
     public BlogResponse createBlog(BlogRequest blogRequest) throws IOException {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-
-        User author = userRepository.findByUsernameAndEnabledTrue(username)
+        User author = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Create new blog
@@ -128,10 +128,7 @@ public class BlogServiceImpl implements BlogService {
 
     @Override
     public List<BlogResponse> getCreatedBlogs() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-
-        User currentUser = userRepository.findByUsernameAndEnabledTrue(username)
+        User currentUser = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Check if user has STAFF or MANAGER role
@@ -177,7 +174,7 @@ public class BlogServiceImpl implements BlogService {
     public Page<BlogHomeResponse> searchBlogs(String keyword, Long topic, Pageable pageable) {
         log.info("Searching blogs with keyword: {}, tags: {}", keyword, topic);
 
-        Page<Blog> blogPage = blogRepository.search(keyword, topic, pageable);
+        Page<Blog> blogPage = findBlogPage(keyword, topic, pageable);
 
         List<BlogHomeResponse> blogResponses = blogPage.getContent().stream()
                 .map(blog -> {
@@ -198,6 +195,12 @@ public class BlogServiceImpl implements BlogService {
         return new PageImpl<>(blogResponses, pageable, blogPage.getTotalElements());
     }
 
+    private Page<Blog> findBlogPage(String keyword, Long topic, Pageable pageable) {
+        return contentSearchIndex.searchPage(ContentType.BLOG, keyword, topic, pageable,
+                blogRepository::findSearchableByIdIn, Blog::getId,
+                () -> blogRepository.search(keyword, topic, pageable));
+    }
+
     private BlogResponse mapToResponse(Blog blog, List<String> imageUrls, String authorName) {
         return BlogResponse.builder()
                 .id(blog.getId())
@@ -0,0 +1,78 @@
+package com.dupss.app.BE_Dupss.service.impl;
+
+import com.dupss.app.BE_Dupss.service.OtpStore;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+
+    private final int maxAttempts;
+    // email -> OTP đã băm; Caffeine tự xoá entry khi hết TTL nên bảng không phình ra
+    private final Cache<String, OtpEntry> otps;
+
+    public InMemoryOtpStore(@Value("${app.otp.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${app.otp.max-attempts:5}") int maxAttempts,
+                            @Value("${app.otp.max-entries:100000}") long maxEntries) {
+        this.maxAttempts = maxAttempts;
+        this.otps = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    @Override
+    public void save(String email, String otp) {
+        otps.put(normalize(email), new OtpEntry(hash(email, otp)));
+    }
+
+    @Override
+    public VerifyResult verify(String email, String otp) {
+        String key = normalize(email);
+        OtpEntry entry = otps.getIfPresent(key);
+        if (entry == null) {
+            return VerifyResult.EXPIRED;
+        }
+        if (entry.attempts.incrementAndGet() > maxAttempts) {
+            otps.invalidate(key);
+            return VerifyResult.TOO_MANY_ATTEMPTS;
+        }
+        if (!MessageDigest.isEqual(entry.hash, hash(email, otp))) {
+            return VerifyResult.INVALID;
+        }
+        // Chỉ một request được dùng OTP này
+        return otps.asMap().remove(key, entry) ? VerifyResult.VALID : VerifyResult.EXPIRED;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    private static byte[] hash(String email, String otp) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return digest.digest((normalize(email) + ":" + otp).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class OtpEntry {
+        private final byte[] hash;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        private OtpEntry(byte[] hash) {
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.dupss.app.BE_Dupss.service.impl;
+
+import com.dupss.app.BE_Dupss.entity.PasswordResetOtp;
+import com.dupss.app.BE_Dupss.respository.PasswordResetOtpRepository;
+import com.dupss.app.BE_Dupss.service.OtpStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Lưu OTP bền vững trong bảng password_reset_otp, dùng khi cần OTP sống sót qua restart
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "jpa")
+public class JpaOtpStore implements OtpStore {
+
+    private final PasswordResetOtpRepository otpRepository;
+
+    @Value("${app.otp.max-attempts:5}")
+    private int maxAttempts;
+
+    @Override
+    public void save(String email, String otp) {
+        otpRepository.save(PasswordResetOtp.builder()
+                .email(email)
+                .otp(otp)
+                .used(false)
+                .build());
+    }
+
+    /**
+     * Chạy trong transaction riêng để số lần nhập sai vẫn được lưu khi transaction của bên gọi
+     * bị rollback (resetPassword ném exception khi OTP sai).
+     */
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public VerifyResult verify(String email, String otp) {
+        Optional<PasswordResetOtp> latest = otpRepository.findFirstByEmailAndUsedFalseOrderByIdDesc(email);
+        if (latest.isEmpty() || latest.get().isExpired()) {
+            return VerifyResult.EXPIRED;
+        }
+
+        PasswordResetOtp passwordResetOtp = latest.get();
+        passwordResetOtp.setAttempts(passwordResetOtp.getAttempts() + 1);
+        if (passwordResetOtp.getAttempts() > maxAttempts) {
+            passwordResetOtp.setUsed(true);
+            otpRepository.save(passwordResetOtp);
+            return VerifyResult.TOO_MANY_ATTEMPTS;
+        }
+        if (!passwordResetOtp.getOtp().equals(otp)) {
+            otpRepository.save(passwordResetOtp);
+            return VerifyResult.INVALID;
+        }
+
+        // Đánh dấu OTP đã sử dụng
+        passwordResetOtp.setUsed(true);
+        otpRepository.save(passwordResetOtp);
+        return VerifyResult.VALID;
+    }
+}
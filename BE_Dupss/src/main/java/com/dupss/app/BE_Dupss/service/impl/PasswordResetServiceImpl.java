@@ -4,12 +4,11 @@ import com.dupss.app.BE_Dupss.dto.request.ForgotPasswordRequest;
 import com.dupss.app.BE_Dupss.dto.request.ResetPasswordRequest;
 import com.dupss.app.BE_Dupss.dto.response.ForgotPasswordResponse;
 import com.dupss.app.BE_Dupss.dto.response.ResetPasswordResponse;
-import com.dupss.app.BE_Dupss.entity.PasswordResetOtp;
 import com.dupss.app.BE_Dupss.entity.User;
 import com.dupss.app.BE_Dupss.exception.ResourceNotFoundException;
-import com.dupss.app.BE_Dupss.respository.PasswordResetOtpRepository;
 import com.dupss.app.BE_Dupss.respository.UserRepository;
 import com.dupss.app.BE_Dupss.service.EmailService;
+import com.dupss.app.BE_Dupss.service.OtpStore;
 import com.dupss.app.BE_Dupss.service.PasswordResetService;
 import jakarta.mail.MessagingException;
 import lombok.RequiredArgsConstructor;
@@ -29,7 +28,7 @@ import java.util.Random;
 public class PasswordResetServiceImpl implements PasswordResetService {
 
     private final UserRepository userRepository;
-    private final PasswordResetOtpRepository otpRepository;
+    private final OtpStore otpStore;
     private final EmailService mailService;
     private final TemplateEngine templateEngine;
     private final PasswordEncoder passwordEncoder;
@@ -46,17 +45,10 @@ public class PasswordResetServiceImpl implements PasswordResetService {
             
             // Tạo mã OTP ngẫu nhiên 4 chữ số
             String otp = generateOtp();
-            log.info("Đã tạo mã OTP {} cho email {}", otp, request.getEmail());
+            log.info("Đã tạo mã OTP cho email {}", request.getEmail());
             
-            // Lưu OTP vào database
-            PasswordResetOtp passwordResetOtp = PasswordResetOtp.builder()
-                    .email(request.getEmail())
-                    .otp(otp)
-                    .used(false)
-                    .build();
-            
-            PasswordResetOtp savedOtp = otpRepository.save(passwordResetOtp);
-            log.info("Đã lưu mã OTP vào database với ID: {}", savedOtp.getId());
+            // Lưu OTP (thay thế OTP cũ của email này nếu có)
+            otpStore.save(request.getEmail(), otp);
             
             // Gửi email chứa OTP
             try {
@@ -108,15 +100,17 @@ public class PasswordResetServiceImpl implements PasswordResetService {
         User user = userRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy người dùng với email: " + request.getEmail()));
         
-        // Kiểm tra OTP có hợp lệ không
-        PasswordResetOtp passwordResetOtp = otpRepository.findByEmailAndOtpAndUsedFalse(request.getEmail(), request.getOtp())
-                .orElseThrow(() -> new ResourceNotFoundException("Mã OTP không hợp lệ hoặc đã hết hạn"));
-        
-        // Kiểm tra OTP có hết hạn không
-        if (passwordResetOtp.isExpired()) {
+        // Kiểm tra OTP có hợp lệ không, OTP hợp lệ sẽ bị huỷ ngay sau khi kiểm tra
+        OtpStore.VerifyResult result = otpStore.verify(request.getEmail(), request.getOtp());
+        if (result == OtpStore.VerifyResult.INVALID) {
+            throw new ResourceNotFoundException("Mã OTP không hợp lệ hoặc đã hết hạn");
+        }
+        if (result != OtpStore.VerifyResult.VALID) {
             return ResetPasswordResponse.builder()
                     .success(false)
-                    .message("Mã OTP đã hết hạn, vui lòng yêu cầu mã mới")
+                    .message(result == OtpStore.VerifyResult.EXPIRED
+                            ? "Mã OTP đã hết hạn, vui lòng yêu cầu mã mới"
+                            : "Bạn đã nhập sai OTP quá nhiều lần, vui lòng yêu cầu mã mới")
                     .build();
         }
         
@@ -124,10 +118,6 @@ public class PasswordResetServiceImpl implements PasswordResetService {
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
         
-        // Đánh dấu OTP đã sử dụng
-        passwordResetOtp.setUsed(true);
-        otpRepository.save(passwordResetOtp);
-        
         return ResetPasswordResponse.builder()
                 .success(true)
                 .message("Đặt lại mật khẩu thành công")
@@ -158,7 +148,7 @@ public class PasswordResetServiceImpl implements PasswordResetService {
             // Gửi email - sửa thứ tự tham số cho đúng
             mailService.sendEmail(email, "Mã xác nhận đặt lại mật khẩu DUPSS", emailContent);
             
-            log.info("Đã gửi mã OTP {} đến email {}", otp, email);
+            log.info("Đã gửi mã OTP đến email {}", email);
         } catch (Exception e) {
             log.error("Lỗi khi gửi email OTP: {}", e.getMessage(), e);
             throw e;
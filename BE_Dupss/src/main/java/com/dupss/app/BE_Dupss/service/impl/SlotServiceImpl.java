@@ -1,40 +1,74 @@
 package com.dupss.app.BE_Dupss.service.impl;
 
+import com.dupss.app.BE_Dupss.dto.request.SlotBulkRequest;
 import com.dupss.app.BE_Dupss.dto.request.SlotRequestDto;
 import com.dupss.app.BE_Dupss.dto.response.ConsultantResponse;
+import com.dupss.app.BE_Dupss.dto.response.SlotBulkResponse;
 import com.dupss.app.BE_Dupss.dto.response.SlotResponseDto;
+import com.dupss.app.BE_Dupss.entity.ERole;
 import com.dupss.app.BE_Dupss.entity.Slot;
 import com.dupss.app.BE_Dupss.entity.User;
 import com.dupss.app.BE_Dupss.exception.ResourceNotFoundException;
 import com.dupss.app.BE_Dupss.respository.SlotRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
 import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.service.AppointmentAutoAssigner;
+import com.dupss.app.BE_Dupss.service.CurrentUserResolver;
+import com.dupss.app.BE_Dupss.service.SlotAvailabilityCalendar;
 import com.dupss.app.BE_Dupss.service.SlotService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class SlotServiceImpl implements SlotService {
 
+    private static final int MAX_BULK_DAYS = 92;
+    private static final int INSERT_BATCH_SIZE = 500;
+    private static final LocalTime LAST_START_TIME = LocalTime.of(23, 0);
+    private static final int MAX_EARLIEST_SLOTS = 50;
+    private static final int MAX_SEARCH_DAYS = 92;
+    // Số dòng tối đa đọc trong một lần tìm slot sớm nhất; quá mức này thì trả về những slot đã tìm được
+    private static final int MAX_EARLIEST_FETCH = 2000;
+    // Tư vấn viên placeholder: slot của ID này không phải lịch của người thật
+    private static final long UNASSIGNED_CONSULTANT_ID = 2L;
+    private static final String INSERT_SLOT_SQL =
+            "INSERT INTO slots (date, start_time, end_time, is_available, consultant_id) VALUES (?, ?, ?, ?, ?)";
+
     private final SlotRepository slotRepository;
     private final UserRepository consultantRepository;
+    private final CurrentUserResolver currentUserResolver;
+    private final SlotAvailabilityCalendar slotAvailabilityCalendar;
+    private final AppointmentAutoAssigner appointmentAutoAssigner;
+    private final JdbcTemplate jdbcTemplate;
+    private final TopicRepo topicRepository;
 
     @Override
     public SlotResponseDto createSlot(SlotRequestDto requestDto) {
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-
-        User consultant = consultantRepository.findByUsernameAndEnabledTrue(username)
-                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy tư vấn viên với Username: " + username));
+        User consultant = currentUserResolver.findCurrentUser()
+                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy tư vấn viên"));
 
         Duration duration = Duration.between(requestDto.getStartTime(), requestDto.getEndTime());
         if (!duration.equals(Duration.ofHours(1))) {
@@ -57,9 +91,74 @@ public class SlotServiceImpl implements SlotService {
         slot.setAvailable(true);
 
         Slot savedSlot = slotRepository.save(slot);
+        slotAvailabilityCalendar.slotChanged(savedSlot, true);
+        appointmentAutoAssigner.slotChanged(savedSlot, true);
         return mapToResponseDto(savedSlot);
     }
 
+    @Override
+    @Transactional
+    public SlotBulkResponse createSlotsBulk(SlotBulkRequest requestDto) {
+        User consultant = currentUserResolver.findCurrentUser()
+                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy tư vấn viên"));
+
+        LocalDate fromDate = requestDto.getFromDate();
+        LocalDate toDate = requestDto.getToDate();
+        if (toDate.isBefore(fromDate)) {
+            throw new IllegalArgumentException("Ngày kết thúc phải sau ngày bắt đầu.");
+        }
+        if (ChronoUnit.DAYS.between(fromDate, toDate) >= MAX_BULK_DAYS) {
+            throw new IllegalArgumentException("Chỉ được tạo lịch tối đa " + MAX_BULK_DAYS + " ngày mỗi lần.");
+        }
+
+        // Chuẩn hoá lịch mẫu: bỏ giờ trùng, sắp xếp, slot phải kết thúc trong ngày
+        Map<DayOfWeek, SortedSet<LocalTime>> template = new EnumMap<>(DayOfWeek.class);
+        requestDto.getWeeklyTemplate().forEach((dayOfWeek, startTimes) -> {
+            if (dayOfWeek == null || startTimes == null) {
+                return;
+            }
+            for (LocalTime startTime : startTimes) {
+                if (startTime == null || startTime.isAfter(LAST_START_TIME)) {
+                    throw new IllegalArgumentException("Giờ bắt đầu không hợp lệ: " + startTime);
+                }
+                template.computeIfAbsent(dayOfWeek, d -> new TreeSet<>()).add(startTime);
+            }
+        });
+
+        // Một câu query lấy toàn bộ slot đã có trong khoảng ngày để loại trùng
+        Set<LocalDateTime> existing = new HashSet<>();
+        slotRepository.findCalendarEntriesBetween(consultant.getId(), fromDate, toDate)
+                .forEach(entry -> existing.add(LocalDateTime.of(entry.getDate(), entry.getStartTime())));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<LocalDateTime> toCreate = new ArrayList<>();
+        int skipped = 0;
+        for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
+            for (LocalTime startTime : template.getOrDefault(date.getDayOfWeek(), Collections.emptySortedSet())) {
+                LocalDateTime startAt = LocalDateTime.of(date, startTime);
+                if (!startAt.isAfter(now) || existing.contains(startAt)) {
+                    skipped++;
+                } else {
+                    toCreate.add(startAt);
+                }
+            }
+        }
+
+        // Insert bằng JDBC batch: entity Slot dùng IDENTITY nên Hibernate không batch được
+        long consultantId = consultant.getId();
+        jdbcTemplate.batchUpdate(INSERT_SLOT_SQL, toCreate, INSERT_BATCH_SIZE, (ps, startAt) -> {
+            ps.setObject(1, startAt.toLocalDate());
+            ps.setObject(2, startAt.toLocalTime());
+            ps.setObject(3, startAt.toLocalTime().plusHours(1));
+            ps.setBoolean(4, true);
+            ps.setLong(5, consultantId);
+        });
+        slotAvailabilityCalendar.invalidate(consultantId);
+        appointmentAutoAssigner.requestResync();
+
+        return new SlotBulkResponse(toCreate.size(), skipped);
+    }
+
     @Override
     public List<SlotResponseDto> getSlotsByConsultantId(Long consultantId) {
         User consultant = consultantRepository.findById(consultantId)
@@ -72,6 +171,11 @@ public class SlotServiceImpl implements SlotService {
 
     @Override
     public List<SlotResponseDto> getAvailableSlotsByConsultantAndDate(Long consultantId, LocalDate date) {
+        Optional<List<SlotResponseDto>> cached = slotAvailabilityCalendar.findAvailableSlots(consultantId, date);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
         User consultant = consultantRepository.findById(consultantId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy tư vấn viên với ID: " + consultantId));
 
@@ -89,6 +193,58 @@ public class SlotServiceImpl implements SlotService {
                 .toList();
     }
 
+    @Override
+    public List<SlotResponseDto> findEarliestAvailableSlots(Long topicId, LocalDate fromDate, LocalDate toDate, int limit) {
+        // Tư vấn viên chưa được gắn với chủ đề nên mọi tư vấn viên đều nhận được chủ đề đang hoạt động
+        if (topicRepository.findByIdAndActive(topicId, true) == null) {
+            throw new ResourceNotFoundException("Không tìm thấy chủ đề với ID: " + topicId);
+        }
+        if (limit < 1 || limit > MAX_EARLIEST_SLOTS) {
+            throw new IllegalArgumentException("Số slot cần tìm phải từ 1 đến " + MAX_EARLIEST_SLOTS);
+        }
+        LocalDate today = LocalDate.now();
+        if (fromDate.isBefore(today)) {
+            fromDate = today;
+        }
+        if (toDate.isBefore(fromDate)) {
+            throw new IllegalArgumentException("Ngày kết thúc phải sau ngày bắt đầu");
+        }
+        if (ChronoUnit.DAYS.between(fromDate, toDate) >= MAX_SEARCH_DAYS) {
+            throw new IllegalArgumentException("Khoảng tìm kiếm tối đa " + MAX_SEARCH_DAYS + " ngày");
+        }
+
+        // Hôm nay chỉ lấy các slot chưa bắt đầu
+        LocalTime fromTime = fromDate.equals(today) ? LocalTime.now() : LocalTime.MIN;
+        Map<Long, String> consultantNames = consultantRepository.findEnabledNamesByRole(ERole.ROLE_CONSULTANT).stream()
+                .collect(Collectors.toMap(UserRepository.UserName::getId, UserRepository.UserName::getFullname));
+        if (consultantNames.isEmpty()) {
+            return List.of();
+        }
+
+        // Quét theo index rồi bỏ slot của tư vấn viên đã bị khoá; nếu bị bỏ nhiều thì đọc lại với giới hạn gấp bốn,
+        // tối đa MAX_EARLIEST_FETCH dòng
+        int fetchSize = limit * 2;
+        while (true) {
+            List<SlotRepository.OpenSlot> slots = slotRepository.findEarliestAvailable(
+                    fromDate, fromTime, toDate, UNASSIGNED_CONSULTANT_ID, Limit.of(fetchSize));
+            List<SlotResponseDto> result = new ArrayList<>(limit);
+            for (SlotRepository.OpenSlot slot : slots) {
+                String consultantName = consultantNames.get(slot.getConsultantId());
+                if (consultantName != null) {
+                    result.add(new SlotResponseDto(slot.getId(), slot.getDate(), slot.getStartTime(),
+                            slot.getEndTime(), consultantName));
+                    if (result.size() == limit) {
+                        return result;
+                    }
+                }
+            }
+            if (slots.size() < fetchSize || fetchSize >= MAX_EARLIEST_FETCH) {
+                return result;
+            }
+            fetchSize = Math.min(fetchSize * 4, MAX_EARLIEST_FETCH);
+        }
+    }
+
     @Override
     public Slot updateSlotAvailability(Long slotId, boolean isAvailable, Long consultantId) {
         Slot slot = slotRepository.findById(slotId)
@@ -100,7 +256,10 @@ public class SlotServiceImpl implements SlotService {
         }
 
         slot.setAvailable(isAvailable);
-        return slotRepository.save(slot);
+        Slot savedSlot = slotRepository.save(slot);
+        slotAvailabilityCalendar.slotChanged(savedSlot, isAvailable);
+        appointmentAutoAssigner.slotChanged(savedSlot, isAvailable);
+        return savedSlot;
     }
 
     @Override
@@ -114,6 +273,8 @@ public class SlotServiceImpl implements SlotService {
         }
 
         slotRepository.delete(slot);
+        slotAvailabilityCalendar.slotRemoved(slot);
+        appointmentAutoAssigner.slotRemoved(slot);
     }
 
     private SlotResponseDto mapToResponseDto(Slot slot) {
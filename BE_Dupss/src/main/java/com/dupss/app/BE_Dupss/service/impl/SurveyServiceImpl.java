@@ -7,6 +7,7 @@ import com.dupss.app.BE_Dupss.dto.response.SurveyResponse;
 import com.dupss.app.BE_Dupss.dto.response.SurveyResultResponse;
 import com.dupss.app.BE_Dupss.entity.*;
 import com.dupss.app.BE_Dupss.respository.*;
+import com.dupss.app.BE_Dupss.service.CurrentUserResolver;
 import com.dupss.app.BE_Dupss.service.CloudinaryService;
 import com.dupss.app.BE_Dupss.service.SurveyService;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -33,16 +34,13 @@ public class SurveyServiceImpl implements SurveyService {
     private final SurveyRepo surveyRepository;
     private final SurveyResultRepo surveyResultRepository;
     private final SurveyOptionRepo surveyOptionRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final CloudinaryService cloudinaryService;
 
 
     @Override
     public SurveyResponse createSurvey(SurveyCreateRequest request, MultipartFile coverImage) throws IOException {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-
-        User author = userRepository.findByUsernameAndEnabledTrue(username)
+        User author = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         Survey savedSurvey = createAndSaveSurveyEntity(request, coverImage, author);
@@ -152,10 +150,7 @@ public class SurveyServiceImpl implements SurveyService {
 
     @Override
     public SurveyResultResponse submitSurveyResult(SurveyResultRequest request) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = auth.getName();
-
-        User user = userRepository.findByUsernameAndEnabledTrue(username)
+        User user = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         Survey survey = surveyRepository.findById(request.getSurveyId())
@@ -204,9 +199,7 @@ public class SurveyServiceImpl implements SurveyService {
 
     @Override
     public List<SurveyResultResponse> getSubmittedSurveys() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-
-        User user = userRepository.findByUsernameAndEnabledTrue(username)
+        User user = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         return surveyResultRepository.findByUser(user).stream()
@@ -248,8 +241,7 @@ public class SurveyServiceImpl implements SurveyService {
         List<Survey> surveys;
         if (isAuthenticated) {
             // Lấy thông tin người dùng hiện tại
-            String username = authentication.getName();
-            User currentUser = userRepository.findByUsername(username).orElse(null);
+            User currentUser = currentUserResolver.findCurrentUser().orElse(null);
             
             // Nếu là STAFF, MANAGER hoặc ADMIN, hiển thị tất cả khảo sát
             if (currentUser != null && (currentUser.getRole() == ERole.ROLE_STAFF || 
@@ -293,8 +285,7 @@ public class SurveyServiceImpl implements SurveyService {
             }
         } else {
             // Nếu đã đăng nhập, kiểm tra vai trò
-            String username = authentication.getName();
-            User currentUser = userRepository.findByUsername(username).orElse(null);
+            User currentUser = currentUserResolver.findCurrentUser().orElse(null);
             
             if (currentUser != null) {
                 // Nếu không phải STAFF, MANAGER hoặc ADMIN và không phải người tạo khảo sát
@@ -355,9 +346,7 @@ public class SurveyServiceImpl implements SurveyService {
     @Override
     public SurveyResultResponse submitSurvey(Long surveyId, SurveyResultRequest request) {
         // Lấy thông tin người dùng hiện tại
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        User currentUser = userRepository.findByUsernameAndEnabledTrue(username)
+        User currentUser = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
         // Lấy thông tin khảo sát
@@ -6,7 +6,7 @@ import com.dupss.app.BE_Dupss.entity.Topic;
 import com.dupss.app.BE_Dupss.entity.User;
 import com.dupss.app.BE_Dupss.exception.ResourceNotFoundException;
 import com.dupss.app.BE_Dupss.respository.TopicRepo;
-import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.service.CurrentUserResolver;
 import com.dupss.app.BE_Dupss.service.TopicService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -23,7 +23,7 @@ import java.util.stream.Collectors;
 @Slf4j
 public class TopicServiceImpl implements TopicService {
     private final TopicRepo topicRepository;
-    private final UserRepository userRepository;
+    private final CurrentUserResolver currentUserResolver;
 
     @Override
     public List<Topic> getAll() {
@@ -42,10 +42,7 @@ public class TopicServiceImpl implements TopicService {
 
     @Override
     public TopicResponse create(TopicRequest request) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-
-        User creator = userRepository.findByUsernameAndEnabledTrue(username)
+        User creator = currentUserResolver.findCurrentUser()
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         if (topicRepository.existsByNameIgnoreCase(request.getName())) {
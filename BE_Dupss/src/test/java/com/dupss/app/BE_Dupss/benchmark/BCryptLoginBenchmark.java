@@ -0,0 +1,51 @@
+package com.dupss.app.BE_Dupss.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo số lần so khớp mật khẩu (tương đương một lần đăng nhập) mỗi giây trên một core
+ * với từng work factor, dùng để chọn app.password-hashing.bcrypt-strength
+ * và kích thước pool của PasswordHashingExecutor.
+ *
+ * Chạy: mvn test-compile exec:java -Dexec.classpathScope=test
+ *       -Dexec.mainClass=com.dupss.app.BE_Dupss.benchmark.BCryptLoginBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(1)
+@Fork(1)
+public class BCryptLoginBenchmark {
+
+    @Param({"10", "11", "12"})
+    private int strength;
+
+    private BCryptPasswordEncoder encoder;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        encoder = new BCryptPasswordEncoder(strength);
+        hash = encoder.encode("Benchmark@123");
+    }
+
+    @Benchmark
+    public boolean loginsPerSecondPerCore() {
+        return encoder.matches("Benchmark@123", hash);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(BCryptLoginBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
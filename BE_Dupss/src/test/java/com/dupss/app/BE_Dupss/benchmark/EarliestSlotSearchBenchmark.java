@@ -0,0 +1,162 @@
+package com.dupss.app.BE_Dupss.benchmark;
+
+import com.dupss.app.BE_Dupss.dto.response.SlotResponseDto;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.Slot;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.SlotRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.service.AppointmentAutoAssigner;
+import com.dupss.app.BE_Dupss.service.CurrentUserResolver;
+import com.dupss.app.BE_Dupss.service.SlotAvailabilityCalendar;
+import com.dupss.app.BE_Dupss.service.SlotService;
+import com.dupss.app.BE_Dupss.service.impl.SlotServiceImpl;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian một lần tìm slot trống sớm nhất (GET earliest slots) trên 10.000 slot, H2 chế độ MySQL.
+ * Mục tiêu: dưới 20 ms mỗi lần. Slot đầu tiên của placeholder (ID = 2) và tư vấn viên bị khoá
+ * để đo cả vòng đọc lại khi bị lọc nhiều.
+ *
+ * Chạy: mvn test-compile exec:java -Dexec.classpathScope=test
+ *       -Dexec.mainClass=com.dupss.app.BE_Dupss.benchmark.EarliestSlotSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EarliestSlotSearchBenchmark {
+
+    private static final int SLOT_COUNT = 10_000;
+    private static final int SLOTS_PER_DAY = 200;
+
+    @Param({"10", "50"})
+    private int limit;
+
+    private ConfigurableApplicationContext context;
+    private SlotService slotService;
+    private Long topicId;
+    private LocalDate firstDay;
+
+    @Setup
+    public void setUp() {
+        // Tham số dòng lệnh để ghi đè datasource MySQL trong application-*.yml
+        context = new SpringApplicationBuilder(BenchmarkConfig.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:slots;MODE=MySQL;NON_KEYWORDS=VALUE;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--logging.level.root=warn");
+        slotService = context.getBean(SlotService.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        User consultant = userRepository.save(consultant("consultant", true));
+        User placeholder = userRepository.save(consultant("placeholder", true));
+        User locked = userRepository.save(consultant("locked", false));
+
+        Topic topic = new Topic("Tư vấn", "Chủ đề benchmark");
+        topic.setActive(true);
+        topicId = context.getBean(TopicRepo.class).save(topic).getId();
+
+        firstDay = LocalDate.now().plusDays(1);
+        List<Object[]> rows = new ArrayList<>(SLOT_COUNT);
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            LocalTime start = LocalTime.MIN.plusMinutes((i % SLOTS_PER_DAY) * 7L);
+            User owner = i < SLOTS_PER_DAY ? placeholder : i < SLOTS_PER_DAY * 2 ? locked : consultant;
+            rows.add(new Object[]{Date.valueOf(firstDay.plusDays(i / SLOTS_PER_DAY)), Time.valueOf(start),
+                    Time.valueOf(start.plusHours(1)), true, owner.getId()});
+        }
+        context.getBean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO slots (date, start_time, end_time, is_available, consultant_id) VALUES (?, ?, ?, ?, ?)",
+                rows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<SlotResponseDto> earliestSlots() {
+        return slotService.findEarliestAvailableSlots(topicId, firstDay, firstDay.plusDays(60), limit);
+    }
+
+    private static User consultant(String username, boolean enabled) {
+        return User.builder()
+                .username(username)
+                .password("secret")
+                .fullname("Tư vấn viên " + username)
+                .email(username + "@dupss.com")
+                .role(ERole.ROLE_CONSULTANT)
+                .enabled(enabled)
+                .build();
+    }
+
+    @SpringBootConfiguration
+    @ImportAutoConfiguration({
+            DataSourceAutoConfiguration.class,
+            DataSourceTransactionManagerAutoConfiguration.class,
+            HibernateJpaAutoConfiguration.class,
+            JdbcTemplateAutoConfiguration.class,
+            TransactionAutoConfiguration.class
+    })
+    @EntityScan(basePackageClasses = Slot.class)
+    @EnableJpaRepositories(basePackageClasses = SlotRepository.class)
+    @Import(SlotServiceImpl.class)
+    static class BenchmarkConfig {
+
+        @Bean
+        CurrentUserResolver currentUserResolver() {
+            return Mockito.mock(CurrentUserResolver.class);
+        }
+
+        @Bean
+        SlotAvailabilityCalendar slotAvailabilityCalendar() {
+            return Mockito.mock(SlotAvailabilityCalendar.class);
+        }
+
+        @Bean
+        AppointmentAutoAssigner appointmentAutoAssigner() {
+            return Mockito.mock(AppointmentAutoAssigner.class);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(EarliestSlotSearchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
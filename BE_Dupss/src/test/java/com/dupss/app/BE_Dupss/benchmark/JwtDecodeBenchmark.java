@@ -0,0 +1,93 @@
+package com.dupss.app.BE_Dupss.benchmark;
+
+import com.dupss.app.BE_Dupss.config.JwtDecoderCustomizer;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.InvalidatedTokenRepository;
+import com.dupss.app.BE_Dupss.service.JwtService;
+import com.dupss.app.BE_Dupss.service.TokenRevocationIndex;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh đường decode access token cũ (parse + verify trong JwtService, sau đó
+ * NimbusJwtDecoder parse + verify lại) với đường decode một lần hiện tại.
+ *
+ * Chạy: mvn test-compile exec:java -Dexec.classpathScope=test
+ *       -Dexec.mainClass=com.dupss.app.BE_Dupss.benchmark.JwtDecodeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtDecodeBenchmark {
+
+    private static final String SECRET = "dupssSecretKey123456789012345678901234567890123456789012345678901234567890";
+
+    private String token;
+    private TokenRevocationIndex revocationIndex;
+    private JwtDecoderCustomizer decoder;
+    private NimbusJwtDecoder nimbusJwtDecoder;
+
+    @Setup
+    public void setUp() {
+        revocationIndex = new TokenRevocationIndex(Mockito.mock(InvalidatedTokenRepository.class), new SimpleMeterRegistry());
+        JwtService jwtService = new JwtService(revocationIndex);
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET);
+        ReflectionTestUtils.invokeMethod(jwtService, "initKeys");
+        decoder = new JwtDecoderCustomizer(jwtService);
+
+        nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HS384"))
+                .macAlgorithm(MacAlgorithm.HS384)
+                .build();
+
+        User user = User.builder()
+                .id(1L)
+                .username("benchmark")
+                .email("benchmark@dupss.com")
+                .role(ERole.ROLE_MEMBER)
+                .build();
+        token = jwtService.generateAccessToken(user);
+    }
+
+    @Benchmark
+    public Jwt legacyDoubleDecode() throws Exception {
+        SignedJWT signedJWT = SignedJWT.parse(token);
+        if (signedJWT.getJWTClaimsSet().getExpirationTime().before(new Date())
+                || revocationIndex.isRevoked(signedJWT.getJWTClaimsSet().getJWTID())
+                || !signedJWT.verify(new MACVerifier(SECRET.getBytes(StandardCharsets.UTF_8)))) {
+            throw new JwtException("Invalid token");
+        }
+        return nimbusJwtDecoder.decode(token);
+    }
+
+    @Benchmark
+    public Jwt singlePassDecode() {
+        return decoder.decode(token);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(JwtDecodeBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
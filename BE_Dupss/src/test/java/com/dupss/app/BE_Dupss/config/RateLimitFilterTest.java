@@ -0,0 +1,139 @@
+package com.dupss.app.BE_Dupss.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Đăng nhập/OTP bị giới hạn theo cả username/email trong body: đổi IP không vượt qua được,
+ * nhiều tài khoản sau một IP NAT không chia nhau ngân sách của một tài khoản,
+ * body chunked/quá lớn/không đọc được không lọt qua, và body vẫn đến được controller nguyên vẹn.
+ */
+class RateLimitFilterTest {
+
+    private final RateLimitFilter filter = new RateLimitFilter(new ObjectMapper(), new SimpleMeterRegistry(),
+            1000, 256,
+            new RateLimitFilter.Budget(3, 30, 60),
+            new RateLimitFilter.Budget(2, 20, 600),
+            new RateLimitFilter.Budget(2, 20, 600),
+            new RateLimitFilter.Budget(20, 60, 60));
+
+    @Test
+    void loginIsLimitedPerUsernameAcrossIps() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(post("/api/auth/login", "10.0.0." + i, "{\"username\":\"victim\",\"password\":\"x\"}").getStatus())
+                    .isEqualTo(200);
+        }
+        assertThat(post("/api/auth/login", "10.0.0.9", "{\"username\":\" Victim \",\"password\":\"x\"}").getStatus())
+                .isEqualTo(429);
+        assertThat(post("/api/auth/login", "10.0.0.9", "{\"username\":\"other\",\"password\":\"x\"}").getStatus())
+                .isEqualTo(200);
+    }
+
+    @Test
+    void otpIsLimitedPerEmailAcrossIps() throws Exception {
+        String body = "{\"email\":\"member@dupss.com\",\"otp\":\"1234\",\"newPassword\":\"secret123\"}";
+        assertThat(post("/api/auth/password/reset", "10.0.1.1", body).getStatus()).isEqualTo(200);
+        assertThat(post("/api/auth/password/reset", "10.0.1.2", body).getStatus()).isEqualTo(200);
+        assertThat(post("/api/auth/password/reset", "10.0.1.3", body).getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    void forgotAndResetHaveSeparateBudgets() throws Exception {
+        String email = "{\"email\":\"member@dupss.com\"}";
+        assertThat(post("/api/auth/password/forgot", "10.0.3.1", email).getStatus()).isEqualTo(200);
+        assertThat(post("/api/auth/password/forgot", "10.0.3.1", email).getStatus()).isEqualTo(200);
+        assertThat(post("/api/auth/password/forgot", "10.0.3.1", email).getStatus()).isEqualTo(429);
+
+        String reset = "{\"email\":\"member@dupss.com\",\"otp\":\"1234\",\"newPassword\":\"secret123\"}";
+        assertThat(post("/api/auth/password/reset", "10.0.3.1", reset).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void accountsBehindOneIpDoNotShareAccountBudget() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            String body = "{\"email\":\"member" + i + "@dupss.com\"}";
+            assertThat(post("/api/auth/password/forgot", "10.0.4.1", body).getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void chunkedBodyIsStillLimitedPerUsername() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(chunked("10.0.5." + i, "{\"username\":\"chunked\",\"password\":\"x\"}").getStatus())
+                    .isEqualTo(200);
+        }
+        assertThat(chunked("10.0.5.9", "{\"username\":\"chunked\",\"password\":\"x\"}").getStatus())
+                .isEqualTo(429);
+    }
+
+    @Test
+    void oversizedOrUnreadableBodyIsRejected() throws Exception {
+        String large = "{\"username\":\"member\",\"password\":\"" + "x".repeat(300) + "\"}";
+        assertThat(chunked("10.0.6.1", large).getStatus()).isEqualTo(413);
+        assertThat(post("/api/auth/login", "10.0.6.1", "{\"username\":").getStatus()).isEqualTo(400);
+        assertThat(post("/api/auth/login", "10.0.6.1", "").getStatus()).isEqualTo(400);
+
+        MockHttpServletRequest form = request("/api/auth/login", "10.0.6.1", "username=member&password=x");
+        form.setContentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(form, response, new MockFilterChain());
+        assertThat(response.getStatus()).isEqualTo(415);
+    }
+
+    @Test
+    void bodyIsReplayedToController() throws Exception {
+        String body = "{\"username\":\"member\",\"password\":\"x\"}";
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request("/api/auth/login", "10.0.2.1", body), new MockHttpServletResponse(), chain);
+
+        ServletRequest forwarded = chain.getRequest();
+        assertThat(new String(forwarded.getInputStream().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(body);
+    }
+
+    private MockHttpServletResponse post(String uri, String ip, String body) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(uri, ip, body), response, new MockFilterChain());
+        return response;
+    }
+
+    /**
+     * Body gửi kiểu chunked: không có Content-Length.
+     */
+    private MockHttpServletResponse chunked(String ip, String body) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+
+            @Override
+            public int getContentLength() {
+                return -1;
+            }
+        };
+        request.setRemoteAddr(ip);
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private MockHttpServletRequest request(String uri, String ip, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setRemoteAddr(ip);
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
@@ -0,0 +1,237 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.entity.Appointment;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.Slot;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository;
+import com.dupss.app.BE_Dupss.respository.SlotRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.support.JpaServiceTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Phân công tự động trên H2: chọn người rảnh nhất hoặc người đã tư vấn chủ đề trong ngưỡng tải,
+ * thử người kế tiếp khi slot vừa bị đặt ở chỗ khác, và dựng lại chỉ mục nếu có cập nhật xen vào lúc đang dựng.
+ */
+@JpaServiceTest
+class AppointmentAutoAssignerTest {
+
+    private static final long PLACEHOLDER_CONSULTANT_ID = 2L;
+    private static final LocalTime START = LocalTime.of(9, 0);
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+    @Autowired
+    private SlotRepository slotRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User placeholder;
+    private User idle;
+    private User experienced;
+    private User busyExperienced;
+    private Topic topic;
+    private LocalDate day;
+
+    @BeforeEach
+    void setUp() {
+        // Tư vấn viên placeholder phải có đúng ID = 2, các user khác lấy ID từ 1000 để không trùng
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH 1000");
+        jdbcTemplate.update("INSERT INTO users (id, username, password, fullname, email, role, enabled) " +
+                "VALUES (?, 'placeholder', 'secret', 'Chưa phân công', 'placeholder@dupss.com', 'ROLE_CONSULTANT', true)",
+                PLACEHOLDER_CONSULTANT_ID);
+        placeholder = userRepository.findById(PLACEHOLDER_CONSULTANT_ID).orElseThrow();
+        idle = userRepository.save(user("idle", ERole.ROLE_CONSULTANT));
+        experienced = userRepository.save(user("experienced", ERole.ROLE_CONSULTANT));
+        busyExperienced = userRepository.save(user("busy", ERole.ROLE_CONSULTANT));
+        topic = topicRepository.save(topic("Phòng chống ma tuý"));
+        day = LocalDate.now().plusDays(1);
+
+        // Tải: idle 0, experienced 2, busy 3; hai người sau đã từng tư vấn xong chủ đề này
+        for (int i = 0; i < 2; i++) {
+            saveAppointment(experienced, "CONFIRMED", day.plusDays(2), LocalTime.of(10 + i, 0));
+        }
+        for (int i = 0; i < 3; i++) {
+            saveAppointment(busyExperienced, "CONFIRMED", day.plusDays(2), LocalTime.of(10 + i, 0));
+        }
+        saveAppointment(experienced, "COMPLETED", day.minusDays(3), START);
+        saveAppointment(busyExperienced, "COMPLETED", day.minusDays(3), START);
+
+        for (User consultant : new User[]{idle, experienced, busyExperienced}) {
+            saveSlot(consultant);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        appointmentRepository.deleteAll();
+        slotRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void prefersConsultantWhoKnowsTopicWithinTolerance() {
+        AppointmentAutoAssigner assigner = assigner(slotRepository, 2);
+        Appointment pending = saveAppointment(placeholder, "PENDING", day, START);
+
+        assigner.assignPending();
+
+        assertAssignedTo(pending, experienced);
+        assertThat(slotAvailable(experienced)).isFalse();
+        assertThat(slotAvailable(idle)).isTrue();
+    }
+
+    @Test
+    void picksLeastLoadedWhenTopicExperienceIsTooBusy() {
+        AppointmentAutoAssigner assigner = assigner(slotRepository, 1);
+        Appointment pending = saveAppointment(placeholder, "PENDING", day, START);
+
+        assigner.assignPending();
+
+        assertAssignedTo(pending, idle);
+    }
+
+    @Test
+    void assignmentRaisesLoadForNextPick() {
+        // Thêm một slot cùng giờ ngày hôm sau cho mỗi người, idle lên tải 2 bằng experienced
+        for (User consultant : new User[]{idle, experienced, busyExperienced}) {
+            saveSlot(consultant, day.plusDays(1));
+        }
+        saveAppointment(idle, "CONFIRMED", day.plusDays(5), START);
+        saveAppointment(idle, "CONFIRMED", day.plusDays(5), START.plusHours(1));
+        AppointmentAutoAssigner assigner = assigner(slotRepository, 0);
+        Appointment first = saveAppointment(placeholder, "PENDING", day, START);
+        Appointment second = saveAppointment(placeholder, "PENDING", day.plusDays(1), START);
+
+        assigner.assignPending();
+
+        // idle và experienced cùng tải 2 lúc đầu: experienced (đã tư vấn chủ đề) được chọn trước,
+        // sau đó tải 3 > 2 nên cuộc hẹn thứ hai về idle
+        assertAssignedTo(first, experienced);
+        assertAssignedTo(second, idle);
+    }
+
+    @Test
+    void retriesNextConsultantWhenSlotWasTakenElsewhere() {
+        AppointmentAutoAssigner assigner = assigner(slotRepository, 2);
+        // Dựng chỉ mục trước, sau đó slot của experienced bị đặt mà chỉ mục không biết
+        assigner.assignPending();
+        jdbcTemplate.update("UPDATE slots SET is_available = false WHERE consultant_id = ?", experienced.getId());
+        Appointment pending = saveAppointment(placeholder, "PENDING", day, START);
+
+        assigner.assignPending();
+
+        // busy đã tư vấn chủ đề nhưng tải 3 vượt ngưỡng so với idle (0)
+        assertAssignedTo(pending, idle);
+        assertThat(slotAvailable(busyExperienced)).isTrue();
+    }
+
+    @Test
+    void rebuildsAgainWhenUpdatedWhileRebuilding() {
+        SlotRepository slots = mock(SlotRepository.class, delegatesTo(slotRepository));
+        AppointmentAutoAssigner assigner = assigner(slots, 2);
+        Slot idleSlot = slotRepository.findAll().stream()
+                .filter(slot -> slot.getConsultant().getId() == idle.getId())
+                .findFirst().orElseThrow();
+        AtomicBoolean interleaved = new AtomicBoolean();
+        doAnswer(invocation -> {
+            // Một request đặt slot giữa lúc đang đọc DB để dựng chỉ mục
+            if (interleaved.compareAndSet(false, true)) {
+                assigner.slotChanged(idleSlot, false);
+            }
+            return slotRepository.findFreeSlotsBetween(invocation.getArgument(0), invocation.getArgument(1));
+        }).when(slots).findFreeSlotsBetween(any(), any());
+
+        assigner.assignPending();
+        assigner.assignPending();
+        assigner.assignPending();
+
+        // Lượt 1 dựng nhưng bị xen nên đánh dấu stale, lượt 2 dựng lại, lượt 3 dùng chỉ mục đã có
+        verify(slots, times(2)).findFreeSlotsBetween(any(), any());
+    }
+
+    private AppointmentAutoAssigner assigner(SlotRepository slots, int topicLoadTolerance) {
+        SchedulerLockService lockService = mock(SchedulerLockService.class);
+        when(lockService.tryAcquire(anyString(), any())).thenReturn(true);
+        AppointmentAutoAssigner assigner = new AppointmentAutoAssigner(appointmentRepository, slots, userRepository,
+                lockService, mock(SlotAvailabilityCalendar.class), mock(EmailService.class),
+                mock(AppointmentEventBroadcaster.class), transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(assigner, "enabled", true);
+        ReflectionTestUtils.setField(assigner, "batchSize", 200);
+        ReflectionTestUtils.setField(assigner, "maxBatchesPerRun", 50);
+        ReflectionTestUtils.setField(assigner, "horizonDays", 60);
+        ReflectionTestUtils.setField(assigner, "topicLoadTolerance", topicLoadTolerance);
+        ReflectionTestUtils.setField(assigner, "maxAttempts", 5);
+        ReflectionTestUtils.setField(assigner, "resyncMinutes", 30L);
+        ReflectionTestUtils.setField(assigner, "leaseSeconds", 300L);
+        return assigner;
+    }
+
+    private void assertAssignedTo(Appointment pending, User consultant) {
+        Appointment stored = appointmentRepository.findById(pending.getId()).orElseThrow();
+        assertThat(stored.getStatus()).isEqualTo("CONFIRMED");
+        assertThat(stored.getConsultant().getId()).isEqualTo(consultant.getId());
+    }
+
+    private boolean slotAvailable(User consultant) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT is_available FROM slots WHERE consultant_id = ? AND date = ?", Boolean.class,
+                consultant.getId(), day));
+    }
+
+    private void saveSlot(User consultant) {
+        saveSlot(consultant, day);
+    }
+
+    private void saveSlot(User consultant, LocalDate date) {
+        jdbcTemplate.update("INSERT INTO slots (date, start_time, end_time, is_available, consultant_id) " +
+                "VALUES (?, ?, ?, true, ?)", date, START, START.plusHours(1), consultant.getId());
+    }
+
+    private Appointment saveAppointment(User consultant, String status, LocalDate date, LocalTime time) {
+        Appointment appointment = new Appointment();
+        appointment.setCustomerName("Khách");
+        appointment.setPhoneNumber("0900000000");
+        appointment.setEmail("guest@dupss.com");
+        appointment.setAppointmentDate(date);
+        appointment.setAppointmentTime(time);
+        appointment.setTopic(topic);
+        appointment.setConsultant(consultant);
+        appointment.setGuest(true);
+        appointment.setStatus(status);
+        return appointmentRepository.save(appointment);
+    }
+}
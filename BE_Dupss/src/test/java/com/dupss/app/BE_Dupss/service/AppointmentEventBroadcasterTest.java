@@ -0,0 +1,237 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.dto.response.AppointmentEventResponse;
+import com.dupss.app.BE_Dupss.entity.Appointment;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Phát lại theo Last-Event-ID (trong history, id của lần khởi động khác, id đã bị đẩy khỏi history)
+ * và đóng kết nối khi hàng đợi của client đầy. Client đọc stream qua MockMvc như một EventSource.
+ */
+class AppointmentEventBroadcasterTest {
+
+    private static final long CONSULTANT_ID = 10L;
+    private static final long OTHER_CONSULTANT_ID = 20L;
+    private static final long UNASSIGNED_CONSULTANT_ID = 2L;
+    private static final String RESYNC = "resync";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AppointmentEventBroadcaster broadcaster;
+    private MockMvc mockMvc;
+    private long nextAppointmentId = 1;
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void replaysMissedEventsWithinHistory() throws Exception {
+        start(10, 16, 2);
+        MvcResult first = stream(CONSULTANT_ID, false, null);
+        for (int i = 0; i < 3; i++) {
+            publish(CONSULTANT_ID);
+        }
+        List<String> seen = awaitEvents(first, events -> events.size() == 3);
+        String bootId = bootId(seen.get(0));
+        assertThat(seen).containsExactly(bootId + "-1", bootId + "-2", bootId + "-3");
+
+        // Trong lúc mất kết nối: một sự kiện của người khác (không được phát lại) và một của hàng chờ
+        publish(OTHER_CONSULTANT_ID);
+        publish(UNASSIGNED_CONSULTANT_ID);
+        MvcResult reconnected = stream(CONSULTANT_ID, false, bootId + "-2");
+        publish(CONSULTANT_ID);
+
+        assertThat(awaitEvents(reconnected, events -> events.size() >= 3))
+                .containsExactly(bootId + "-3", bootId + "-5", bootId + "-6");
+    }
+
+    @Test
+    void unknownLastEventIdAsksClientToResync() throws Exception {
+        start(10, 16, 2);
+        MvcResult first = stream(CONSULTANT_ID, false, null);
+        publish(CONSULTANT_ID);
+        String bootId = bootId(awaitEvents(first, events -> events.size() == 1).get(0));
+
+        // Id của lần khởi động khác, id chưa từng phát, id sai định dạng
+        for (String lastEventId : List.of("0-1", bootId + "-99", bootId + "-x", "garbage")) {
+            MvcResult reconnected = stream(CONSULTANT_ID, false, lastEventId);
+            publish(CONSULTANT_ID);
+            List<String> events = awaitEvents(reconnected, received -> received.size() == 2);
+            assertThat(events.get(0)).as(lastEventId).isEqualTo(RESYNC);
+        }
+    }
+
+    @Test
+    void evictedLastEventIdAsksClientToResync() throws Exception {
+        start(3, 16, 2);
+        MvcResult first = stream(CONSULTANT_ID, false, null);
+        for (int i = 0; i < 5; i++) {
+            publish(CONSULTANT_ID);
+        }
+        String bootId = bootId(awaitEvents(first, events -> events.size() == 5).get(0));
+
+        // History chỉ còn 3, 4, 5: từ sau 2 vẫn phát lại đủ, từ sau 1 thì sự kiện 2 đã mất
+        assertThat(awaitEvents(stream(CONSULTANT_ID, false, bootId + "-2"), events -> events.size() == 3))
+                .containsExactly(bootId + "-3", bootId + "-4", bootId + "-5");
+        assertThat(awaitEvents(stream(CONSULTANT_ID, false, bootId + "-1"), events -> !events.isEmpty()))
+                .containsExactly(RESYNC);
+    }
+
+    @Test
+    void replayLargerThanBufferAsksClientToResync() throws Exception {
+        start(10, 2, 2);
+        MvcResult first = stream(CONSULTANT_ID, false, null);
+        // Chờ từng sự kiện tới client trước khi phát tiếp, nếu không chính kết nối này cũng bị đầy hàng đợi
+        for (int i = 1; i <= 3; i++) {
+            publish(CONSULTANT_ID);
+            int received = i;
+            awaitEvents(first, events -> events.size() == received);
+        }
+        String bootId = bootId(parse(first).get(0));
+
+        assertThat(awaitEvents(stream(CONSULTANT_ID, false, bootId + "-0"), events -> !events.isEmpty()))
+                .containsExactly(RESYNC);
+    }
+
+    @Test
+    void fullBufferClosesConnection() throws Exception {
+        start(10, 2, 1);
+        MvcResult slow = stream(null, true, null);
+        // Giữ thread gửi duy nhất để sự kiện dồn lại trong hàng đợi của kết nối
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor dispatcher = (ThreadPoolExecutor) ReflectionTestUtils.getField(broadcaster, "dispatcher");
+        dispatcher.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        publish(CONSULTANT_ID);
+        publish(CONSULTANT_ID);
+        assertThat(subscriberCount()).isEqualTo(1);
+        publish(CONSULTANT_ID);
+
+        assertThat(meterRegistry.get("dupss.appointment.events.dropped").counter().count()).isEqualTo(1);
+        assertThat(subscriberCount()).isZero();
+        release.countDown();
+        // Emitter đã complete nên request async kết thúc, client sẽ kết nối lại với Last-Event-ID
+        slow.getAsyncResult(5000);
+        publish(CONSULTANT_ID);
+        assertThat(meterRegistry.get("dupss.appointment.events.dropped").counter().count()).isEqualTo(1);
+    }
+
+    private void start(int historySize, int bufferSize, int dispatcherThreads) {
+        broadcaster = new AppointmentEventBroadcaster(new ObjectMapper().findAndRegisterModules(), meterRegistry,
+                60_000, historySize, bufferSize, dispatcherThreads);
+        mockMvc = MockMvcBuilders.standaloneSetup(new EventsController(broadcaster)).build();
+    }
+
+    private MvcResult stream(Long consultantId, boolean allAppointments, String lastEventId) throws Exception {
+        var request = get("/events")
+                .param("allAppointments", String.valueOf(allAppointments))
+                .accept(MediaType.TEXT_EVENT_STREAM);
+        if (consultantId != null) {
+            request.param("consultantId", consultantId.toString());
+        }
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(request).andReturn();
+    }
+
+    private void publish(long consultantId) {
+        User consultant = User.builder().id(consultantId).fullname("Tư vấn viên " + consultantId).build();
+        Appointment appointment = new Appointment();
+        appointment.setId(nextAppointmentId++);
+        appointment.setConsultant(consultant);
+        appointment.setStatus("CONFIRMED");
+        appointment.setCustomerName("Khách");
+        appointment.setAppointmentDate(LocalDate.now().plusDays(1));
+        appointment.setAppointmentTime(LocalTime.of(9, 0));
+        broadcaster.publish(AppointmentEventResponse.Type.CREATED, null, appointment);
+    }
+
+    private double subscriberCount() {
+        return meterRegistry.get("dupss.appointment.events.subscribers").gauge().value();
+    }
+
+    /**
+     * Chờ tới khi các sự kiện client nhận được thoả điều kiện. Mỗi phần tử là id của sự kiện,
+     * hoặc "resync" với sự kiện yêu cầu tải lại.
+     */
+    private static List<String> awaitEvents(MvcResult result, Predicate<List<String>> done) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        List<String> events = parse(result);
+        while (!done.test(events) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            events = parse(result);
+        }
+        assertThat(done.test(events)).as("events received: %s", events).isTrue();
+        return events;
+    }
+
+    private static List<String> parse(MvcResult result) throws Exception {
+        List<String> events = new ArrayList<>();
+        for (String block : result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n\n")) {
+            for (String line : block.split("\n")) {
+                if (line.startsWith("id:")) {
+                    events.add(line.substring("id:".length()));
+                } else if (line.equals("event:" + RESYNC)) {
+                    events.add(RESYNC);
+                }
+            }
+        }
+        return events;
+    }
+
+    private static String bootId(String eventId) {
+        return eventId.substring(0, eventId.lastIndexOf('-'));
+    }
+
+    @RestController
+    static class EventsController {
+
+        private final AppointmentEventBroadcaster broadcaster;
+
+        EventsController(AppointmentEventBroadcaster broadcaster) {
+            this.broadcaster = broadcaster;
+        }
+
+        @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        SseEmitter events(@RequestParam(required = false) Long consultantId,
+                          @RequestParam boolean allAppointments,
+                          @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+            return broadcaster.subscribe(consultantId, allAppointments, lastEventId);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.entity.Appointment;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository;
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository.ReminderCandidate;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.support.JpaServiceTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Message;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.util.HtmlUtils;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Job nhắc lịch trên H2: khoảng nhắc cắt qua nửa đêm (ngày và giờ lưu ở hai cột), giá trị của người nhận
+ * được escape khi thay vào template, và chỉ cuộc hẹn đã gửi được mới bị đánh dấu reminder_sent_at.
+ */
+@JpaServiceTest
+class AppointmentReminderSchedulerTest {
+
+    private static final String FAILING_EMAIL = "bounce@dupss.com";
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+
+    private User consultant;
+    private Topic topic;
+    // Email đã gửi qua JavaMailSender: người nhận -> nội dung HTML
+    private final Map<String, String> delivered = new HashMap<>();
+    private final Set<String> rejected = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        consultant = userRepository.save(user("consultant", ERole.ROLE_CONSULTANT));
+        topic = topicRepository.save(topic("Phòng chống ma tuý"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        appointmentRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void windowAcrossMidnightUsesDateAndTimeTogether() {
+        LocalDate day = LocalDate.now().plusDays(3);
+        LocalDate next = day.plusDays(1);
+        LocalTime from = LocalTime.of(23, 30);
+        LocalTime to = LocalTime.of(0, 30);
+
+        saveConfirmed(day, LocalTime.of(23, 29), null);
+        Long atFrom = saveConfirmed(day, from, null).getId();
+        Long beforeMidnight = saveConfirmed(day, LocalTime.of(23, 59), null).getId();
+        Long atMidnight = saveConfirmed(next, LocalTime.MIDNIGHT, null).getId();
+        Long atTo = saveConfirmed(next, to, null).getId();
+        saveConfirmed(next, LocalTime.of(0, 31), null);
+        // Giờ nằm trong [from, to] nếu chỉ so riêng cột giờ nhưng sai ngày
+        saveConfirmed(day, LocalTime.of(0, 10), null);
+        saveConfirmed(next, LocalTime.of(23, 45), null);
+        // Đúng giờ nhưng chưa xác nhận hoặc đã nhắc rồi
+        Appointment pending = appointment(day, LocalTime.of(23, 45), null);
+        pending.setStatus("PENDING");
+        appointmentRepository.save(pending);
+        Appointment reminded = appointment(next, LocalTime.of(0, 15), null);
+        reminded.setReminderSentAt(LocalDateTime.now());
+        appointmentRepository.save(reminded);
+
+        List<ReminderCandidate> candidates = appointmentRepository.findReminderCandidates(
+                day, from, next, to, 0L, Limit.of(100));
+
+        assertThat(candidates).extracting(ReminderCandidate::getId)
+                .containsExactly(atFrom, beforeMidnight, atMidnight, atTo);
+
+        // Phân trang keyset theo id
+        List<ReminderCandidate> firstPage = appointmentRepository.findReminderCandidates(
+                day, from, next, to, 0L, Limit.of(3));
+        List<ReminderCandidate> secondPage = appointmentRepository.findReminderCandidates(
+                day, from, next, to, firstPage.get(2).getId(), Limit.of(3));
+        assertThat(firstPage).extracting(ReminderCandidate::getId).containsExactly(atFrom, beforeMidnight, atMidnight);
+        assertThat(secondPage).extracting(ReminderCandidate::getId).containsExactly(atTo);
+    }
+
+    @Test
+    void fillsEscapedValuesAndMarksOnlyDelivered() throws Exception {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime withLinkAt = now.plusHours(2);
+        Appointment withLink = appointment(withLinkAt.toLocalDate(), withLinkAt.toLocalTime(),
+                "https://meet.google.com/abc?x=1&y=2");
+        withLink.setCustomerName("<b>Tom & \"Jerry\"</b>");
+        withLink.setEmail("tom@dupss.com");
+        appointmentRepository.save(withLink);
+
+        LocalDateTime unassignedAt = now.plusHours(3);
+        Appointment unassigned = appointment(unassignedAt.toLocalDate(), unassignedAt.toLocalTime(), null);
+        unassigned.setConsultant(null);
+        unassigned.setEmail("guest@dupss.com");
+        appointmentRepository.save(unassigned);
+
+        LocalDateTime bouncingAt = now.plusHours(4);
+        Appointment bouncing = appointment(bouncingAt.toLocalDate(), bouncingAt.toLocalTime(), null);
+        bouncing.setEmail(FAILING_EMAIL);
+        appointmentRepository.save(bouncing);
+
+        // Quá gần (dưới min-lead) và quá xa (ngoài lead-hours)
+        LocalDateTime tooSoon = now.plusMinutes(10);
+        Long tooSoonId = saveConfirmed(tooSoon.toLocalDate(), tooSoon.toLocalTime(), null).getId();
+        LocalDateTime tooLate = now.plusHours(25);
+        Long tooLateId = saveConfirmed(tooLate.toLocalDate(), tooLate.toLocalTime(), null).getId();
+
+        SchedulerLockService lockService = mock(SchedulerLockService.class);
+        when(lockService.tryAcquire(anyString(), any())).thenReturn(true);
+        when(lockService.extend(anyString(), any())).thenReturn(true);
+        rejected.add(FAILING_EMAIL);
+        AppointmentReminderScheduler scheduler = scheduler(lockService);
+
+        scheduler.sendReminders();
+
+        assertThat(delivered).containsOnlyKeys("tom@dupss.com", "guest@dupss.com");
+        assertThat(reminderSent(withLink.getId())).isTrue();
+        assertThat(reminderSent(unassigned.getId())).isTrue();
+        assertThat(reminderSent(bouncing.getId())).isFalse();
+        assertThat(reminderSent(tooSoonId)).isFalse();
+        assertThat(reminderSent(tooLateId)).isFalse();
+        // batch-size 2 nên có lô thứ hai, lease được gia hạn trước lô đó
+        verify(lockService, atLeastOnce()).extend(anyString(), any());
+
+        String tomHtml = delivered.get("tom@dupss.com");
+        assertThat(tomHtml)
+                .contains("&lt;b&gt;Tom &amp; &quot;Jerry&quot;&lt;/b&gt;")
+                .doesNotContain("<b>Tom")
+                .contains(">" + withLink.getId() + "<")
+                .contains(withLinkAt.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")))
+                .contains(withLinkAt.format(DateTimeFormatter.ofPattern("HH:mm")))
+                // Tiếng Việt có dấu Latin-1 được escape thành entity, trình duyệt hiển thị như cũ
+                .contains(HtmlUtils.htmlEscape("Phòng chống ma tuý"))
+                .contains(HtmlUtils.htmlEscape(consultant.getFullname()))
+                .contains("https://meet.google.com/abc?x=1&amp;y=2")
+                .doesNotContain("%%REMINDER_");
+        assertThat(delivered.get("guest@dupss.com"))
+                .contains(HtmlUtils.htmlEscape("Đang cập nhật"))
+                .doesNotContain("meet.google.com")
+                .doesNotContain("%%REMINDER_");
+
+        // Lượt sau chỉ gửi lại email đã lỗi
+        delivered.clear();
+        rejected.clear();
+        scheduler.sendReminders();
+
+        assertThat(delivered).containsOnlyKeys(FAILING_EMAIL);
+        assertThat(reminderSent(bouncing.getId())).isTrue();
+    }
+
+    private AppointmentReminderScheduler scheduler(SchedulerLockService lockService) {
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        Session session = Session.getInstance(new Properties());
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(session));
+        doAnswer(invocation -> {
+            Map<Object, Exception> failed = new HashMap<>();
+            for (Object argument : invocation.getArguments()) {
+                MimeMessage message = (MimeMessage) argument;
+                String to = ((InternetAddress) message.getRecipients(Message.RecipientType.TO)[0]).getAddress();
+                if (rejected.contains(to)) {
+                    failed.put(message, new IllegalStateException("550 mailbox unavailable"));
+                } else {
+                    delivered.put(to, html(message));
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new MailSendException(failed);
+            }
+            return null;
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        MailBatchDispatcher dispatcher = new MailBatchDispatcher(mailSender);
+        ReflectionTestUtils.setField(dispatcher, "fromEmail", "support@dupss.com");
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 50);
+        ReflectionTestUtils.setField(dispatcher, "maxPerSecond", 0.0);
+
+        AppointmentReminderScheduler scheduler = new AppointmentReminderScheduler(appointmentRepository,
+                lockService, dispatcher, templateEngine(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "enabled", true);
+        ReflectionTestUtils.setField(scheduler, "leadHours", 24L);
+        ReflectionTestUtils.setField(scheduler, "minLeadMinutes", 30L);
+        ReflectionTestUtils.setField(scheduler, "batchSize", 2);
+        ReflectionTestUtils.setField(scheduler, "maxBatchesPerRun", 50);
+        ReflectionTestUtils.setField(scheduler, "leaseSeconds", 120L);
+        ReflectionTestUtils.setField(scheduler, "maxMailsPerSecond", 0.0);
+        return scheduler;
+    }
+
+    /**
+     * Template engine đọc template thật trong classpath, để kiểm tra token đi qua Thymeleaf nguyên văn.
+     */
+    private static SpringTemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+
+    private static String html(Part part) throws Exception {
+        Object content = part.getContent();
+        if (content instanceof String text) {
+            return text;
+        }
+        if (content instanceof Multipart multipart) {
+            for (int i = 0; i < multipart.getCount(); i++) {
+                String text = html(multipart.getBodyPart(i));
+                if (text != null) {
+                    return text;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean reminderSent(Long id) {
+        return appointmentRepository.findById(id).orElseThrow().getReminderSentAt() != null;
+    }
+
+    private Appointment saveConfirmed(LocalDate date, LocalTime time, String linkMeet) {
+        return appointmentRepository.save(appointment(date, time, linkMeet));
+    }
+
+    private Appointment appointment(LocalDate date, LocalTime time, String linkMeet) {
+        Appointment appointment = new Appointment();
+        appointment.setCustomerName("Khách");
+        appointment.setPhoneNumber("0900000000");
+        appointment.setEmail("guest@dupss.com");
+        appointment.setAppointmentDate(date);
+        appointment.setAppointmentTime(time);
+        appointment.setTopic(topic);
+        appointment.setConsultant(consultant);
+        appointment.setGuest(true);
+        appointment.setStatus("CONFIRMED");
+        appointment.setLinkMeet(linkMeet);
+        return appointment;
+    }
+}
@@ -0,0 +1,195 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.entity.Appointment;
+import com.dupss.app.BE_Dupss.entity.ConsultantRatingStats;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository;
+import com.dupss.app.BE_Dupss.respository.ConsultantRatingStatsRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.service.impl.AppointmentServiceImpl;
+import com.dupss.app.BE_Dupss.support.JpaServiceTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.runConcurrently;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tổng hợp đánh giá tư vấn viên: gửi đánh giá hai lần chỉ được tính một lần, và dựng lại (kể cả khi đang có
+ * lượt đánh giá chạy song song) cho đúng kết quả tính từ bảng appointments.
+ */
+@JpaServiceTest
+@Import({AppointmentServiceImpl.class, ConsultantRatingService.class})
+@MockitoBean(types = {
+        EmailService.class,
+        SlotAvailabilityCalendar.class,
+        AppointmentAutoAssigner.class,
+        AppointmentEventBroadcaster.class,
+        SchedulerLockService.class
+})
+class ConsultantRatingServiceTest {
+
+    private static final String GUEST_EMAIL = "guest@dupss.com";
+    private static final int THREADS = 8;
+
+    @Autowired
+    private AppointmentServiceImpl appointmentService;
+    @Autowired
+    private ConsultantRatingService consultantRatingService;
+    @Autowired
+    private SchedulerLockService schedulerLockService;
+    @Autowired
+    private ConsultantRatingStatsRepository ratingStatsRepository;
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<User> consultants;
+    private Topic topic;
+
+    @BeforeEach
+    void setUp() {
+        when(schedulerLockService.tryAcquire(anyString(), any())).thenReturn(true);
+        consultants = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            consultants.add(userRepository.save(user("consultant" + i, ERole.ROLE_CONSULTANT)));
+        }
+        topic = topicRepository.save(topic("Tư vấn"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ratingStatsRepository.deleteAll();
+        appointmentRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void doubleSubmitIsCountedOnce() throws Exception {
+        Appointment appointment = completedAppointments(1).get(0);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(THREADS, THREADS, i -> {
+            try {
+                appointmentService.reviewAppointmentByGuest(appointment.getId(), 4, "Tốt", GUEST_EMAIL);
+                accepted.incrementAndGet();
+            } catch (IllegalArgumentException e) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertThat(accepted.get()).isEqualTo(1);
+        assertThat(rejected.get()).isEqualTo(THREADS - 1);
+        ConsultantRatingStats stats = ratingStatsRepository.findById(consultants.get(0).getId()).orElseThrow();
+        assertThat(stats.getReviewCount()).isEqualTo(1);
+        assertThat(stats.getScoreSum()).isEqualTo(4);
+        assertThat(stats.getScore4()).isEqualTo(1);
+    }
+
+    @Test
+    void rebuildRepairsDriftedStats() {
+        List<Appointment> appointments = completedAppointments(9);
+        for (int i = 0; i < appointments.size(); i++) {
+            appointmentService.reviewAppointmentByGuest(appointments.get(i).getId(), 1 + i % 5, null, GUEST_EMAIL);
+        }
+        Map<Long, List<Long>> expected = expectedStats();
+        // Sai lệch do sửa tay trong DB: dòng thừa của một tư vấn viên, dòng thiếu của tư vấn viên khác
+        jdbcTemplate.update("UPDATE consultant_rating_stats SET review_count = 99, score_sum = 0 WHERE consultant_id = ?",
+                consultants.get(0).getId());
+        jdbcTemplate.update("DELETE FROM consultant_rating_stats WHERE consultant_id = ?", consultants.get(1).getId());
+
+        assertThat(consultantRatingService.rebuild()).isEqualTo(3);
+
+        assertThat(actualStats()).containsExactlyInAnyOrderEntriesOf(expected);
+    }
+
+    @Test
+    void rebuildWhileReviewingStaysConsistent() throws Exception {
+        int reviews = 60;
+        List<Appointment> appointments = completedAppointments(reviews);
+
+        runConcurrently(THREADS, reviews + 10, i -> {
+            if (i % 7 == 0) {
+                consultantRatingService.rebuild();
+            }
+            if (i < reviews) {
+                appointmentService.reviewAppointmentByGuest(appointments.get(i).getId(), 1 + i % 5, null, GUEST_EMAIL);
+            }
+        });
+
+        Map<Long, List<Long>> incremental = actualStats();
+        assertThat(incremental).containsExactlyInAnyOrderEntriesOf(expectedStats());
+        consultantRatingService.rebuild();
+        assertThat(actualStats()).containsExactlyInAnyOrderEntriesOf(incremental);
+    }
+
+    private List<Appointment> completedAppointments(int count) {
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setCustomerName("Khách " + i);
+            appointment.setPhoneNumber("0900000000");
+            appointment.setEmail(GUEST_EMAIL);
+            appointment.setAppointmentDate(LocalDate.now().minusDays(1 + i / 24));
+            appointment.setAppointmentTime(LocalTime.of(i % 24, 0));
+            appointment.setTopic(topic);
+            appointment.setConsultant(consultants.get(i % consultants.size()));
+            appointment.setGuest(true);
+            appointment.setStatus("COMPLETED");
+            appointments.add(appointment);
+        }
+        return appointmentRepository.saveAll(appointments);
+    }
+
+    /**
+     * Tổng hợp tính thẳng từ bảng appointments: consultant_id -> [số lượt, tổng điểm, số lượt 1..5 điểm].
+     */
+    private Map<Long, List<Long>> expectedStats() {
+        Map<Long, List<Long>> stats = new HashMap<>();
+        jdbcTemplate.query("SELECT consultant_id, review_score FROM appointments WHERE is_review = true", rs -> {
+            List<Long> row = stats.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>(Collections.nCopies(7, 0L)));
+            int score = rs.getInt(2);
+            row.set(0, row.get(0) + 1);
+            row.set(1, row.get(1) + score);
+            row.set(1 + score, row.get(1 + score) + 1);
+        });
+        return stats;
+    }
+
+    private Map<Long, List<Long>> actualStats() {
+        Map<Long, List<Long>> stats = new HashMap<>();
+        ratingStatsRepository.findAll().forEach(row -> stats.put(row.getConsultantId(), List.of(
+                row.getReviewCount(), row.getScoreSum(),
+                row.getScore1(), row.getScore2(), row.getScore3(), row.getScore4(), row.getScore5())));
+        return stats;
+    }
+}
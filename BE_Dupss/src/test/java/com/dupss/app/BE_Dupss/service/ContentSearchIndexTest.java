@@ -0,0 +1,189 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.entity.ApprovalStatus;
+import com.dupss.app.BE_Dupss.entity.Blog;
+import com.dupss.app.BE_Dupss.entity.Course;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.BlogRepository;
+import com.dupss.app.BE_Dupss.respository.CourseRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.service.ContentSearchIndex.ContentType;
+import com.dupss.app.BE_Dupss.service.ContentSearchIndex.SearchPage;
+import com.dupss.app.BE_Dupss.support.JpaServiceTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chỉ mục tìm kiếm trên H2: bỏ dấu, xếp hạng, khớp tiền tố, lọc chủ đề, cập nhật khi duyệt/từ chối
+ * và khởi động lại từ snapshot trên đĩa.
+ */
+@JpaServiceTest
+class ContentSearchIndexTest {
+
+    @Autowired
+    private CourseRepository courseRepository;
+    @Autowired
+    private BlogRepository blogRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @TempDir
+    private Path snapshotDir;
+
+    private User staff;
+    private Topic drugTopic;
+    private Topic alcoholTopic;
+    private Course titleMatch;
+    private Course contentMatch;
+    private Course pending;
+    private Blog alcoholBlog;
+
+    @BeforeEach
+    void setUp() {
+        staff = userRepository.save(user("staff", ERole.ROLE_STAFF));
+        drugTopic = topicRepository.save(topic("Phòng chống ma tuý"));
+        alcoholTopic = topicRepository.save(topic("Rượu bia"));
+
+        titleMatch = course("Nhận biết ma tuý tổng hợp", "Khoá học cho học sinh", null, drugTopic, ApprovalStatus.APPROVED);
+        contentMatch = course("Kỹ năng sống", "Khoá học kỹ năng",
+                "Bài 3: từ chối khi bạn bè rủ dùng ma túy", alcoholTopic, ApprovalStatus.APPROVED);
+        course("Giáo dục đồng đẳng", "Tuyên truyền viên đồng đẳng", null, alcoholTopic, ApprovalStatus.APPROVED);
+        pending = course("Ma tuý và pháp luật", "Chưa duyệt", null, drugTopic, ApprovalStatus.PENDING);
+
+        alcoholBlog = new Blog();
+        alcoholBlog.setTitle("Tác hại của đồ uống có cồn");
+        alcoholBlog.setDescription("Bài viết test");
+        alcoholBlog.setContent("<p>Uống <b>rượu&nbsp;bia</b> thường xuyên gây hại gan</p>");
+        alcoholBlog.setTopic(alcoholTopic);
+        alcoholBlog.setAuthor(staff);
+        alcoholBlog.setStatus(ApprovalStatus.APPROVED);
+        alcoholBlog = blogRepository.save(alcoholBlog);
+    }
+
+    @AfterEach
+    void tearDown() {
+        blogRepository.deleteAll();
+        courseRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void foldsDiacriticsAndRanksTitleMatchesFirst() {
+        ContentSearchIndex index = newIndex();
+
+        assertThat(courseIds(index, "MA TUY", null)).containsExactly(titleMatch.getId(), contentMatch.getId());
+        assertThat(courseIds(index, "ma túy", null)).containsExactly(titleMatch.getId(), contentMatch.getId());
+        assertThat(courseIds(index, "dong dang", null)).hasSize(1);
+        assertThat(courseIds(index, "ma tuy phap luat", null)).isEmpty();
+        assertThat(index.search(ContentType.BLOG, "ruou bia", null, 0, 10).orElseThrow().ids())
+                .containsExactly(alcoholBlog.getId());
+    }
+
+    @Test
+    void matchesLastTermByPrefixAndFiltersByTopic() {
+        ContentSearchIndex index = newIndex();
+
+        assertThat(courseIds(index, "ma tu", null)).containsExactly(titleMatch.getId(), contentMatch.getId());
+        assertThat(courseIds(index, "ma tuy", alcoholTopic.getId())).containsExactly(contentMatch.getId());
+
+        SearchPage secondPage = index.search(ContentType.COURSE, "ma tuy", null, 1, 1).orElseThrow();
+        assertThat(secondPage.ids()).containsExactly(contentMatch.getId());
+        assertThat(secondPage.total()).isEqualTo(2);
+    }
+
+    @Test
+    void approvingAndRejectingUpdatesIndex() {
+        ContentSearchIndex index = newIndex();
+        assertThat(courseIds(index, "phap luat", null)).isEmpty();
+
+        pending.setStatus(ApprovalStatus.APPROVED);
+        courseRepository.save(pending);
+        index.courseChanged(pending);
+        assertThat(courseIds(index, "phap luat", null)).containsExactly(pending.getId());
+
+        titleMatch.setStatus(ApprovalStatus.REJECTED);
+        courseRepository.save(titleMatch);
+        index.courseChanged(titleMatch);
+        assertThat(courseIds(index, "ma tuy", drugTopic.getId())).containsExactly(pending.getId());
+    }
+
+    @Test
+    void restartsFromSnapshotAndReconcilesRecentChanges() {
+        ContentSearchIndex index = newIndex();
+        index.courseChanged(titleMatch);
+        index.flush();
+        assertThat(Files.exists(snapshotDir.resolve("index.bin"))).isTrue();
+
+        // Thay đổi không đi qua chỉ mục (ví dụ trên node khác) phải được đối soát khi khởi động lại
+        pending.setStatus(ApprovalStatus.APPROVED);
+        courseRepository.save(pending);
+        contentMatch.setStatus(ApprovalStatus.REJECTED);
+        courseRepository.save(contentMatch);
+
+        ContentSearchIndex restarted = newIndex();
+        assertThat(courseIds(restarted, "ma tuy", null)).containsExactlyInAnyOrder(titleMatch.getId(), pending.getId());
+        assertThat(restarted.search(ContentType.BLOG, "ruou", null, 0, 10).orElseThrow().ids())
+                .containsExactly(alcoholBlog.getId());
+    }
+
+    @Test
+    void searchPageLoadsHitsInRelevanceOrderAndFallsBackWithoutKeyword() {
+        ContentSearchIndex index = newIndex();
+        PageRequest pageable = PageRequest.of(0, 10);
+        Page<Course> fallback = new PageImpl<>(List.of(pending), pageable, 1);
+
+        Page<Course> hits = index.searchPage(ContentType.COURSE, "ma tuy", null, pageable,
+                courseRepository::findSearchableByIdIn, Course::getId, () -> fallback);
+        assertThat(hits.getContent()).extracting(Course::getId)
+                .containsExactly(titleMatch.getId(), contentMatch.getId());
+        assertThat(hits.getTotalElements()).isEqualTo(2);
+
+        assertThat(index.searchPage(ContentType.COURSE, " ", null, pageable,
+                courseRepository::findSearchableByIdIn, Course::getId, () -> fallback)).isSameAs(fallback);
+    }
+
+    private ContentSearchIndex newIndex() {
+        // Lô 2 bản ghi để dựng lại đi qua nhiều trang
+        ContentSearchIndex index = new ContentSearchIndex(courseRepository, blogRepository, new SimpleMeterRegistry(),
+                snapshotDir.resolve("index.bin").toString(), 2);
+        index.initialize();
+        return index;
+    }
+
+    private static List<Long> courseIds(ContentSearchIndex index, String query, Long topicId) {
+        return index.search(ContentType.COURSE, query, topicId, 0, 10).orElseThrow().ids();
+    }
+
+    private Course course(String title, String description, String content, Topic topic, ApprovalStatus status) {
+        Course course = new Course();
+        course.setTitle(title);
+        course.setDescription(description);
+        course.setContent(content);
+        course.setTopic(topic);
+        course.setCreator(staff);
+        course.setStatus(status);
+        course.setActive(true);
+        return courseRepository.save(course);
+    }
+}
@@ -0,0 +1,159 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.dto.response.CourseModuleResponse;
+import com.dupss.app.BE_Dupss.dto.response.CourseResponse;
+import com.dupss.app.BE_Dupss.dto.response.VideoCourseResponse;
+import com.dupss.app.BE_Dupss.entity.ApprovalStatus;
+import com.dupss.app.BE_Dupss.entity.Course;
+import com.dupss.app.BE_Dupss.entity.CourseEnrollment;
+import com.dupss.app.BE_Dupss.entity.CourseModule;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.EnrollmentStatus;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.entity.VideoCourse;
+import com.dupss.app.BE_Dupss.entity.WatchedVideo;
+import com.dupss.app.BE_Dupss.respository.CourseEnrollmentRepository;
+import com.dupss.app.BE_Dupss.respository.CourseModuleRepository;
+import com.dupss.app.BE_Dupss.respository.CourseRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.respository.VideoCourseRepo;
+import com.dupss.app.BE_Dupss.respository.WatchedVideoRepo;
+import com.dupss.app.BE_Dupss.support.CourseServiceTest;
+import com.dupss.app.BE_Dupss.support.QueryCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Trang chi tiết khoá học phải chạy một số câu SQL cố định, không tăng theo số module/video
+ * (không lazy load video theo từng module, không kiểm tra đã xem theo từng video).
+ * Mỗi lượt đọc chạy trong một transaction giống open-in-view để lazy load (nếu có) bị đếm vào.
+ */
+@CourseServiceTest
+class CourseDetailQueryCountTest {
+
+    private static final int MODULES = 10;
+    private static final int VIDEOS_PER_MODULE = 8;
+
+    @Autowired
+    private CourseService courseService;
+    @Autowired
+    private CourseRepository courseRepository;
+    @Autowired
+    private CourseModuleRepository moduleRepository;
+    @Autowired
+    private VideoCourseRepo videoCourseRepository;
+    @Autowired
+    private WatchedVideoRepo watchedVideoRepository;
+    @Autowired
+    private CourseEnrollmentRepository enrollmentRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private QueryCounter queryCounter;
+    @Autowired
+    private CurrentUserResolver currentUserResolver;
+
+    private User member;
+    private Course course;
+    private Set<Long> watchedVideoIds;
+
+    @BeforeEach
+    void setUp() {
+        User staff = userRepository.save(user("staff", ERole.ROLE_STAFF));
+        member = userRepository.save(user("member", ERole.ROLE_MEMBER));
+        Topic topic = topicRepository.save(topic("Phòng chống ma tuý"));
+
+        Course newCourse = new Course();
+        newCourse.setTitle("Khoá học test");
+        newCourse.setTopic(topic);
+        newCourse.setCreator(staff);
+        newCourse.setStatus(ApprovalStatus.APPROVED);
+        newCourse.setActive(true);
+        course = courseRepository.save(newCourse);
+
+        // Xem video đầu tiên của mỗi module và video thứ hai của các module chẵn
+        watchedVideoIds = new HashSet<>();
+        for (int m = 0; m < MODULES; m++) {
+            CourseModule module = new CourseModule();
+            module.setTitle("Module " + m);
+            module.setOrderIndex(m);
+            module.setCourse(course);
+            module = moduleRepository.save(module);
+            for (int v = 0; v < VIDEOS_PER_MODULE; v++) {
+                VideoCourse video = new VideoCourse();
+                video.setTitle("Video " + m + "." + v);
+                video.setVideoUrl("https://videos.dupss.com/" + m + "/" + v);
+                video.setCourseModule(module);
+                video = videoCourseRepository.save(video);
+                if (v == 0 || (v == 1 && m % 2 == 0)) {
+                    watchedVideoRepository.save(new WatchedVideo(null, member, video, LocalDateTime.now(), true));
+                    watchedVideoIds.add(video.getId());
+                } else if (v == 2) {
+                    watchedVideoRepository.save(new WatchedVideo(null, member, video, LocalDateTime.now(), false));
+                }
+            }
+        }
+
+        CourseEnrollment enrollment = new CourseEnrollment();
+        enrollment.setUser(member);
+        enrollment.setCourse(course);
+        enrollment.setStatus(EnrollmentStatus.IN_PROGRESS);
+        enrollment.setEnrollmentDate(LocalDateTime.now());
+        enrollment.setProgress(0.0);
+        enrollmentRepository.save(enrollment);
+
+        when(currentUserResolver.findCurrentUser()).thenReturn(Optional.of(member));
+    }
+
+    @AfterEach
+    void tearDown() {
+        watchedVideoRepository.deleteAll();
+        enrollmentRepository.deleteAll();
+        videoCourseRepository.deleteAll();
+        moduleRepository.deleteAll();
+        courseRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void courseDetailRunsFixedNumberOfQueries() {
+        // course (+ hồ sơ tư vấn viên eager của creator), kiểm tra đăng ký, module + video, id video đã xem,
+        // bản ghi đăng ký (+ user và hồ sơ eager); số người đăng ký đọc từ cột course.enrollment_count;
+        // trước đây là ~100 câu với 10 module, 80 video
+        CourseResponse response = queryCounter.runInReadOnlyTransaction(() -> courseService.getCourseById(course.getId()));
+        assertThat(queryCounter.count()).isEqualTo(8);
+
+        assertThat(response.getModules()).hasSize(MODULES)
+                .allSatisfy(module -> assertThat(module.getVideos()).hasSize(VIDEOS_PER_MODULE));
+        assertThat(response.getModules()).extracting(CourseModuleResponse::getOrderIndex)
+                .isSorted();
+        List<Long> watched = new ArrayList<>();
+        for (CourseModuleResponse module : response.getModules()) {
+            for (VideoCourseResponse video : module.getVideos()) {
+                if (video.isWatched()) {
+                    watched.add(video.getId());
+                }
+            }
+        }
+        assertThat(watched).containsExactlyInAnyOrderElementsOf(watchedVideoIds);
+    }
+}
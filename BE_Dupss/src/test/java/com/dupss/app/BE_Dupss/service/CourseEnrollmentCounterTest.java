@@ -0,0 +1,185 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.entity.ApprovalStatus;
+import com.dupss.app.BE_Dupss.entity.Course;
+import com.dupss.app.BE_Dupss.entity.CourseEnrollment;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.EnrollmentStatus;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.CourseEnrollmentRepository;
+import com.dupss.app.BE_Dupss.respository.CourseRepository;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.support.JpaServiceTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.runConcurrently;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bộ đếm lượt đăng ký trên H2: chỉ cộng sau commit, đọc được trước khi flush, flush không đếm trùng,
+ * lưu course bằng JPA không ghi đè cột đếm, đếm lại sửa được sai lệch và không đếm trùng phần chưa flush,
+ * khởi động lần đầu sau khi thêm cột đếm thì đếm lại ngay.
+ */
+@JpaServiceTest
+@Import({CourseEnrollmentCounter.class, SchedulerLockService.class})
+class CourseEnrollmentCounterTest {
+
+    @Autowired
+    private CourseEnrollmentCounter enrollmentCounter;
+    @Autowired
+    private CourseRepository courseRepository;
+    @Autowired
+    private CourseEnrollmentRepository enrollmentRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private SchedulerLockService schedulerLockService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User member;
+    private Course course;
+
+    @BeforeEach
+    void setUp() {
+        member = userRepository.save(user("member", ERole.ROLE_MEMBER));
+        Course newCourse = new Course();
+        newCourse.setTitle("Khoá học test");
+        newCourse.setStatus(ApprovalStatus.APPROVED);
+        newCourse.setActive(true);
+        course = courseRepository.save(newCourse);
+    }
+
+    @AfterEach
+    void tearDown() {
+        enrollmentCounter.flush();
+        enrollmentRepository.deleteAll();
+        courseRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentEnrollmentsAreCountedOnceAcrossFlush() throws Exception {
+        int enrollments = 2000;
+        List<CourseEnrollment> saved = new ArrayList<>();
+        for (int i = 0; i < enrollments; i++) {
+            saved.add(enrollment(LocalDateTime.now()));
+        }
+        List<Long> enrollmentIds = enrollmentRepository.saveAll(saved).stream().map(CourseEnrollment::getId).toList();
+
+        runConcurrently(8, enrollments + 1, i -> {
+            if (i == enrollments) {
+                // Flush giữa chừng trong lúc các lượt đăng ký khác vẫn đang được thêm
+                enrollmentCounter.flush();
+            } else {
+                enrollmentCounter.enrollmentAdded(course.getId(), enrollmentIds.get(i));
+            }
+        });
+
+        assertThat(enrollmentCounter.getEnrollmentCount(reload())).isEqualTo(enrollments);
+        enrollmentCounter.flush();
+        Course flushed = reload();
+        assertThat(flushed.getEnrollmentCount()).isEqualTo(enrollments);
+        assertThat(enrollmentCounter.getEnrollmentCount(flushed)).isEqualTo(enrollments);
+    }
+
+    @Test
+    void countsOnlyCommittedEnrollments() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            enrollmentCounter.enrollmentAdded(course.getId(), enroll(LocalDateTime.now()).getId());
+            status.setRollbackOnly();
+        });
+        assertThat(enrollmentCounter.getEnrollmentCount(reload())).isZero();
+
+        transactionTemplate.executeWithoutResult(status ->
+                enrollmentCounter.enrollmentAdded(course.getId(), enroll(LocalDateTime.now()).getId()));
+        assertThat(enrollmentCounter.getEnrollmentCount(reload())).isEqualTo(1);
+    }
+
+    @Test
+    void savingCourseKeepsCounterAndRecountFixesDrift() {
+        enrollmentCounter.enrollmentAdded(course.getId(), enroll(LocalDateTime.now()).getId());
+        enrollmentCounter.enrollmentAdded(course.getId(), enroll(LocalDateTime.now()).getId());
+        enrollmentCounter.flush();
+
+        Course stale = reload();
+        stale.setTitle("Khoá học đã sửa");
+        courseRepository.save(stale);
+        assertThat(reload().getEnrollmentCount()).isEqualTo(2);
+
+        // Ba lượt đăng ký từ một giờ trước chưa từng được flush (node dừng) và cột đếm bị sửa tay trong DB
+        enroll(LocalDateTime.now().minusHours(1));
+        enroll(LocalDateTime.now().minusHours(1));
+        enroll(LocalDateTime.now().minusHours(1));
+        jdbcTemplate.update("UPDATE course SET enrollment_count = 42 WHERE id = ?", course.getId());
+
+        assertThat(enrollmentCounter.recount()).isEqualTo(1);
+        assertThat(enrollmentCounter.getEnrollmentCount(reload())).isEqualTo(5);
+    }
+
+    @Test
+    void recountDoesNotDoubleCountEnrollmentsPendingOnAnotherNode() {
+        CourseEnrollmentCounter otherNode = new CourseEnrollmentCounter(
+                courseRepository, enrollmentRepository, schedulerLockService, transactionManager);
+        // Đã commit nhưng node kia chưa flush: một lượt mới và một lượt cũ hơn settle-seconds (flush bị kẹt lâu)
+        otherNode.enrollmentAdded(course.getId(), enroll(LocalDateTime.now()).getId());
+        otherNode.enrollmentAdded(course.getId(), enroll(LocalDateTime.now().minusHours(1)).getId());
+
+        enrollmentCounter.recount();
+        assertThat(reload().getEnrollmentCount()).isEqualTo(1);
+
+        otherNode.flush();
+        assertThat(reload().getEnrollmentCount()).isEqualTo(2);
+        enrollmentCounter.recount();
+        assertThat(reload().getEnrollmentCount()).isEqualTo(2);
+    }
+
+    @Test
+    void backfillsOnlyWhenCounterColumnWasJustAdded() {
+        // Lượt đăng ký có từ trước khi có cột đếm: chưa lượt nào được đánh dấu, enrollment_count = 0
+        enroll(LocalDateTime.now().minusDays(2));
+        enroll(LocalDateTime.now().minusDays(1));
+        enroll(LocalDateTime.now().minusDays(1));
+        assertThat(reload().getEnrollmentCount()).isZero();
+
+        enrollmentCounter.backfillIfNeeded();
+        assertThat(reload().getEnrollmentCount()).isEqualTo(3);
+
+        // Đã đếm rồi thì lần khởi động sau không đếm lại, lượt mới để flush/job đêm lo
+        enroll(LocalDateTime.now().minusHours(1));
+        enrollmentCounter.backfillIfNeeded();
+        assertThat(reload().getEnrollmentCount()).isEqualTo(3);
+    }
+
+    private CourseEnrollment enroll(LocalDateTime enrollmentDate) {
+        return enrollmentRepository.save(enrollment(enrollmentDate));
+    }
+
+    private CourseEnrollment enrollment(LocalDateTime enrollmentDate) {
+        CourseEnrollment enrollment = new CourseEnrollment();
+        enrollment.setUser(member);
+        enrollment.setCourse(course);
+        enrollment.setStatus(EnrollmentStatus.IN_PROGRESS);
+        enrollment.setEnrollmentDate(enrollmentDate);
+        return enrollment;
+    }
+
+    private Course reload() {
+        return courseRepository.findById(course.getId()).orElseThrow();
+    }
+}
@@ -0,0 +1,148 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.dto.response.CourseHomeResponse;
+import com.dupss.app.BE_Dupss.entity.ApprovalStatus;
+import com.dupss.app.BE_Dupss.entity.Course;
+import com.dupss.app.BE_Dupss.entity.CourseEnrollment;
+import com.dupss.app.BE_Dupss.entity.CourseModule;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.EnrollmentStatus;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.CourseEnrollmentRepository;
+import com.dupss.app.BE_Dupss.respository.CourseModuleRepository;
+import com.dupss.app.BE_Dupss.respository.CourseRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.support.CourseServiceTest;
+import com.dupss.app.BE_Dupss.support.QueryCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Danh sách khoá học phải chạy một số câu SQL cố định, không tăng theo số khoá học trong trang
+ * (không kiểm tra đã đăng ký theo từng khoá học, không load module thừa).
+ */
+@CourseServiceTest
+class CourseListingQueryCountTest {
+
+    private static final int COURSES = 6;
+
+    @Autowired
+    private CourseService courseService;
+    @Autowired
+    private CourseRepository courseRepository;
+    @Autowired
+    private CourseModuleRepository moduleRepository;
+    @Autowired
+    private CourseEnrollmentRepository enrollmentRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private QueryCounter queryCounter;
+    @Autowired
+    private CurrentUserResolver currentUserResolver;
+    @Autowired
+    private ContentSearchIndex contentSearchIndex;
+
+    private Set<Long> enrolledCourseIds;
+
+    @BeforeEach
+    void setUp() {
+        User member = userRepository.save(user("member", ERole.ROLE_MEMBER));
+
+        // Mỗi khoá học có topic và người tạo riêng để lộ ra select phụ nếu có; đăng ký các khoá học chẵn
+        enrolledCourseIds = new HashSet<>();
+        for (int i = 0; i < COURSES; i++) {
+            User staff = userRepository.save(user("staff" + i, ERole.ROLE_STAFF));
+            Topic topic = topic("Chủ đề " + i);
+            topic.setCreator(staff);
+            topic = topicRepository.save(topic);
+
+            Course course = new Course();
+            course.setTitle("Khoá học " + i);
+            course.setDescription("Mô tả khoá học " + i);
+            course.setDuration(60);
+            course.setTopic(topic);
+            course.setCreator(staff);
+            course.setStatus(ApprovalStatus.APPROVED);
+            course.setActive(true);
+            course = courseRepository.save(course);
+
+            CourseModule module = new CourseModule();
+            module.setTitle("Module " + i);
+            module.setOrderIndex(0);
+            module.setCourse(course);
+            moduleRepository.save(module);
+
+            if (i % 2 == 0) {
+                CourseEnrollment enrollment = new CourseEnrollment();
+                enrollment.setUser(member);
+                enrollment.setCourse(course);
+                enrollment.setStatus(EnrollmentStatus.IN_PROGRESS);
+                enrollment.setEnrollmentDate(LocalDateTime.now());
+                enrollmentRepository.save(enrollment);
+                enrolledCourseIds.add(course.getId());
+            }
+        }
+
+        when(currentUserResolver.findCurrentUser()).thenReturn(Optional.of(member));
+        // Không có từ khoá thì đi thẳng xuống DB như khi chỉ mục chưa sẵn sàng
+        when(contentSearchIndex.searchPage(any(), any(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Page<Course>>>getArgument(6).get());
+    }
+
+    @AfterEach
+    void tearDown() {
+        enrollmentRepository.deleteAll();
+        moduleRepository.deleteAll();
+        courseRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void searchPageRunsFixedNumberOfQueries() {
+        // trang khoá học (kèm topic, người tạo), đếm tổng, id khoá học đã đăng ký
+        Page<CourseHomeResponse> page = queryCounter.runInReadOnlyTransaction(
+                () -> courseService.searchCoursesSummary("", null, PageRequest.of(0, COURSES)));
+        assertThat(queryCounter.count()).isEqualTo(3);
+
+        assertThat(page.getContent()).hasSize(COURSES);
+        assertEnrolledFlags(page.getContent());
+    }
+
+    @Test
+    void latestCoursesRunFixedNumberOfQueries() {
+        // khoá học mới nhất (kèm topic, người tạo), id khoá học đã đăng ký
+        List<CourseHomeResponse> courses = queryCounter.runInReadOnlyTransaction(() -> courseService.getLastestCourses());
+        assertThat(queryCounter.count()).isEqualTo(2);
+
+        assertThat(courses).hasSize(3);
+        assertEnrolledFlags(courses);
+    }
+
+    private void assertEnrolledFlags(List<CourseHomeResponse> courses) {
+        assertThat(courses).allSatisfy(course ->
+                assertThat(course.isEnrolled()).isEqualTo(enrolledCourseIds.contains(course.getId())));
+    }
+}
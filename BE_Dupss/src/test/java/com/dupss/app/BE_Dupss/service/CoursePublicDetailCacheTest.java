@@ -0,0 +1,191 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.dto.response.CourseDetailPublicResponse;
+import com.dupss.app.BE_Dupss.entity.ApprovalStatus;
+import com.dupss.app.BE_Dupss.entity.Course;
+import com.dupss.app.BE_Dupss.entity.CourseEnrollment;
+import com.dupss.app.BE_Dupss.entity.CourseModule;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.EnrollmentStatus;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.entity.VideoCourse;
+import com.dupss.app.BE_Dupss.respository.CourseEnrollmentRepository;
+import com.dupss.app.BE_Dupss.respository.CourseModuleRepository;
+import com.dupss.app.BE_Dupss.respository.CourseRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.respository.VideoCourseRepo;
+import com.dupss.app.BE_Dupss.support.CourseServiceTest;
+import com.dupss.app.BE_Dupss.support.QueryCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.runConcurrently;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Trang chi tiết khoá học công khai đọc phần chung từ CourseDetailCache: lượt trúng cache chỉ còn câu query
+ * trạng thái đăng ký của người xem, nhiều request trượt cache cùng lúc chỉ nạp DB một lần,
+ * sau khi xoá entry thì dữ liệu mới được nạp lại, còn số lượt đăng ký luôn đọc mới ở mỗi request.
+ */
+@CourseServiceTest
+class CoursePublicDetailCacheTest {
+
+    private static final int MODULES = 4;
+    private static final int VIDEOS_PER_MODULE = 3;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private CourseService courseService;
+    @Autowired
+    private CourseDetailCache courseDetailCache;
+    @Autowired
+    private CourseRepository courseRepository;
+    @Autowired
+    private CourseModuleRepository moduleRepository;
+    @Autowired
+    private VideoCourseRepo videoCourseRepository;
+    @Autowired
+    private CourseEnrollmentRepository enrollmentRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private QueryCounter queryCounter;
+    @Autowired
+    private CurrentUserResolver currentUserResolver;
+    @Autowired
+    private CourseEnrollmentCounter enrollmentCounter;
+
+    private User member;
+    private User guest;
+    private Course course;
+
+    @BeforeEach
+    void setUp() {
+        User staff = userRepository.save(user("staff", ERole.ROLE_STAFF));
+        member = userRepository.save(user("member", ERole.ROLE_MEMBER));
+        guest = userRepository.save(user("guest", ERole.ROLE_MEMBER));
+        Topic topic = topicRepository.save(topic("Phòng chống ma tuý"));
+
+        Course newCourse = new Course();
+        newCourse.setTitle("Khoá học test");
+        newCourse.setDuration(60);
+        newCourse.setTopic(topic);
+        newCourse.setCreator(staff);
+        newCourse.setStatus(ApprovalStatus.APPROVED);
+        newCourse.setActive(true);
+        course = courseRepository.save(newCourse);
+
+        for (int m = 0; m < MODULES; m++) {
+            CourseModule module = new CourseModule();
+            module.setTitle("Module " + m);
+            module.setOrderIndex(m);
+            module.setCourse(course);
+            module = moduleRepository.save(module);
+            for (int v = 0; v < VIDEOS_PER_MODULE; v++) {
+                VideoCourse video = new VideoCourse();
+                video.setTitle("Video " + m + "." + v);
+                video.setVideoUrl("https://videos.dupss.com/" + m + "/" + v);
+                video.setCourseModule(module);
+                videoCourseRepository.save(video);
+            }
+        }
+
+        CourseEnrollment enrollment = new CourseEnrollment();
+        enrollment.setUser(member);
+        enrollment.setCourse(course);
+        enrollment.setStatus(EnrollmentStatus.IN_PROGRESS);
+        enrollment.setEnrollmentDate(LocalDateTime.now());
+        enrollmentRepository.save(enrollment);
+
+        courseDetailCache.evict(course.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        enrollmentRepository.deleteAll();
+        videoCourseRepository.deleteAll();
+        moduleRepository.deleteAll();
+        courseRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void cachedDetailKeepsEnrollmentStatusPerUser() {
+        viewAs(member);
+        courseService.getCoursePublicDetail(course.getId());
+        CourseDetailPublicResponse forMember = queryCounter.run(() -> courseService.getCoursePublicDetail(course.getId()));
+        // chỉ còn câu query trạng thái đăng ký của người xem
+        assertThat(queryCounter.count()).isEqualTo(1);
+        assertThat(forMember.getStatus()).isEqualTo(EnrollmentStatus.IN_PROGRESS);
+        assertThat(forMember.getVideoCount()).isEqualTo(MODULES * VIDEOS_PER_MODULE);
+        assertThat(forMember.getModules()).hasSize(MODULES);
+
+        viewAs(guest);
+        assertThat(courseService.getCoursePublicDetail(course.getId()).getStatus())
+                .isEqualTo(EnrollmentStatus.NOT_ENROLLED);
+        viewAs(null);
+        assertThat(queryCounter.run(() -> courseService.getCoursePublicDetail(course.getId())).getStatus())
+                .isEqualTo(EnrollmentStatus.NOT_ENROLLED);
+        assertThat(queryCounter.count()).isZero();
+        viewAs(member);
+        assertThat(courseService.getCoursePublicDetail(course.getId()).getStatus())
+                .isEqualTo(EnrollmentStatus.IN_PROGRESS);
+    }
+
+    @Test
+    void concurrentMissesLoadCourseOnce() throws Exception {
+        viewAs(null);
+        queryCounter.run(() -> courseService.getCoursePublicDetail(course.getId()));
+        long singleLoad = queryCounter.count();
+        assertThat(singleLoad).isPositive();
+
+        courseDetailCache.evict(course.getId());
+        queryCounter.reset();
+        runConcurrently(THREADS, THREADS, i ->
+                assertThat(courseService.getCoursePublicDetail(course.getId()).getTitle()).isEqualTo("Khoá học test"));
+        assertThat(queryCounter.count()).isEqualTo(singleLoad);
+    }
+
+    @Test
+    void evictionReloadsChangedCourse() {
+        viewAs(null);
+        assertThat(courseService.getCoursePublicDetail(course.getId()).getTitle()).isEqualTo("Khoá học test");
+
+        course.setTitle("Khoá học đã sửa");
+        courseRepository.save(course);
+        assertThat(courseService.getCoursePublicDetail(course.getId()).getTitle()).isEqualTo("Khoá học test");
+
+        courseDetailCache.evict(course.getId());
+        assertThat(courseService.getCoursePublicDetail(course.getId()).getTitle()).isEqualTo("Khoá học đã sửa");
+    }
+
+    @Test
+    void enrollmentCountIsNotCached() {
+        viewAs(null);
+        when(enrollmentCounter.getEnrollmentCount(course.getId())).thenReturn(1L);
+        assertThat(courseService.getCoursePublicDetail(course.getId()).getTotalEnrolled()).isEqualTo(1);
+
+        // Có người đăng ký thêm: không xoá cache mà số lượt đăng ký vẫn mới
+        when(enrollmentCounter.getEnrollmentCount(course.getId())).thenReturn(2L);
+        CourseDetailPublicResponse detail = queryCounter.run(() -> courseService.getCoursePublicDetail(course.getId()));
+        assertThat(detail.getTotalEnrolled()).isEqualTo(2);
+        assertThat(queryCounter.count()).isZero();
+    }
+
+    private void viewAs(User user) {
+        when(currentUserResolver.findCurrentUser()).thenReturn(Optional.ofNullable(user));
+    }
+}
@@ -0,0 +1,142 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.service.MailBatchDispatcher.OutgoingMail;
+import jakarta.mail.Message;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Gửi email theo lô: chỉ trả về key của email thực sự đã gửi, kể cả khi một phần lô bị lỗi.
+ */
+class MailBatchDispatcherTest {
+
+    private JavaMailSender mailSender;
+    private MailBatchDispatcher dispatcher;
+    // Các lô đã gửi theo thứ tự, mỗi lô là tập người nhận (thứ tự trong lô không cố định)
+    private final List<Set<String>> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mailSender = mock(JavaMailSender.class);
+        Session session = Session.getInstance(new Properties());
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(session));
+        dispatcher = new MailBatchDispatcher(mailSender);
+        ReflectionTestUtils.setField(dispatcher, "fromEmail", "support@dupss.com");
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 2);
+        ReflectionTestUtils.setField(dispatcher, "maxPerSecond", 0.0);
+    }
+
+    @Test
+    void sendsInBatchesAndReturnsAllKeys() {
+        recordBatches();
+
+        Set<Long> sent = dispatcher.send(mails(5));
+
+        assertThat(sent).containsExactlyInAnyOrder(0L, 1L, 2L, 3L, 4L);
+        assertThat(batches).containsExactly(
+                Set.of("user0@dupss.com", "user1@dupss.com"),
+                Set.of("user2@dupss.com", "user3@dupss.com"),
+                Set.of("user4@dupss.com"));
+    }
+
+    @Test
+    void partialFailureReturnsOnlyDeliveredKeys() {
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 3);
+        doAnswer(invocation -> {
+            // SMTP từ chối người nhận user1, hai email còn lại trong lô đã đi
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            for (Object argument : invocation.getArguments()) {
+                MimeMessage message = (MimeMessage) argument;
+                if (recipient(message).equals("user1@dupss.com")) {
+                    failed.put(message, new IllegalStateException("550 mailbox unavailable"));
+                }
+            }
+            throw new MailSendException(failed);
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        Set<Long> sent = dispatcher.send(mails(3));
+
+        assertThat(sent).containsExactlyInAnyOrder(0L, 2L);
+    }
+
+    @Test
+    void failureWithoutFailedMessagesDeliversNothingFromThatBatch() {
+        recordBatches();
+        // Lô đầu lỗi kết nối (không có failedMessages), lô sau gửi bình thường
+        doThrow(new MailSendException("Connection reset"))
+                .doAnswer(invocation -> null)
+                .when(mailSender).send(any(MimeMessage[].class));
+
+        Set<Long> sent = dispatcher.send(mails(4));
+
+        assertThat(sent).containsExactlyInAnyOrder(2L, 3L);
+        verify(mailSender, times(2)).send(any(MimeMessage[].class));
+    }
+
+    @Test
+    void otherMailExceptionDeliversNothing() {
+        doThrow(new MailAuthenticationException("535 authentication failed"))
+                .when(mailSender).send(any(MimeMessage[].class));
+
+        assertThat(dispatcher.send(mails(3))).isEmpty();
+    }
+
+    @Test
+    void invalidAddressIsSkippedWithoutFailingTheBatch() {
+        recordBatches();
+        List<OutgoingMail<Long>> mails = new ArrayList<>(mails(2));
+        mails.set(0, new OutgoingMail<>(0L, "khach@@dupss", "Nhắc lịch", "<p>x</p>"));
+
+        Set<Long> sent = dispatcher.send(mails);
+
+        assertThat(sent).containsExactly(1L);
+        assertThat(batches).containsExactly(Set.of("user1@dupss.com"));
+    }
+
+    private void recordBatches() {
+        doAnswer(invocation -> {
+            Set<String> recipients = new HashSet<>();
+            for (Object argument : invocation.getArguments()) {
+                recipients.add(recipient((MimeMessage) argument));
+            }
+            batches.add(recipients);
+            return null;
+        }).when(mailSender).send(any(MimeMessage[].class));
+    }
+
+    private static List<OutgoingMail<Long>> mails(int count) {
+        List<OutgoingMail<Long>> mails = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            mails.add(new OutgoingMail<>(i, "user" + i + "@dupss.com", "Nhắc lịch", "<p>Mail " + i + "</p>"));
+        }
+        return mails;
+    }
+
+    private static String recipient(MimeMessage message) throws Exception {
+        return ((InternetAddress) message.getRecipients(Message.RecipientType.TO)[0]).getAddress();
+    }
+}
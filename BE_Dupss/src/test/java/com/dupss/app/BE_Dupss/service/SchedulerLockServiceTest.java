@@ -0,0 +1,53 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.respository.SchedulerLockRepository;
+import com.dupss.app.BE_Dupss.support.JpaServiceTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lease của job theo lô: node đang giữ gia hạn được, node khác không nhận được lease đang được gia hạn,
+ * lease đã hết hạn thì không gia hạn được nữa (job phải dừng) và node khác nhận được.
+ */
+@JpaServiceTest
+class SchedulerLockServiceTest {
+
+    private static final String LOCK_NAME = "test-job";
+
+    @Autowired
+    private SchedulerLockRepository schedulerLockRepository;
+
+    private final Duration lease = Duration.ofSeconds(60);
+
+    @AfterEach
+    void tearDown() {
+        schedulerLockRepository.deleteAll();
+    }
+
+    @Test
+    void holderExtendsLeaseAndOtherNodeCannot() {
+        SchedulerLockService node = new SchedulerLockService(schedulerLockRepository);
+        SchedulerLockService otherNode = new SchedulerLockService(schedulerLockRepository);
+
+        assertThat(node.tryAcquire(LOCK_NAME, lease)).isTrue();
+        assertThat(node.extend(LOCK_NAME, lease)).isTrue();
+        assertThat(otherNode.extend(LOCK_NAME, lease)).isFalse();
+        assertThat(otherNode.tryAcquire(LOCK_NAME, lease)).isFalse();
+    }
+
+    @Test
+    void expiredLeaseCannotBeExtended() {
+        SchedulerLockService node = new SchedulerLockService(schedulerLockRepository);
+        SchedulerLockService otherNode = new SchedulerLockService(schedulerLockRepository);
+
+        assertThat(node.tryAcquire(LOCK_NAME, Duration.ofSeconds(-1))).isTrue();
+        assertThat(node.extend(LOCK_NAME, lease)).isFalse();
+        assertThat(otherNode.tryAcquire(LOCK_NAME, lease)).isTrue();
+        assertThat(node.extend(LOCK_NAME, lease)).isFalse();
+    }
+}
@@ -0,0 +1,151 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.dto.request.AppointmentRequestDto;
+import com.dupss.app.BE_Dupss.dto.request.SlotRequestDto;
+import com.dupss.app.BE_Dupss.dto.response.AppointmentResponseDto;
+import com.dupss.app.BE_Dupss.dto.response.SlotResponseDto;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository;
+import com.dupss.app.BE_Dupss.respository.SlotRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.service.impl.AppointmentServiceImpl;
+import com.dupss.app.BE_Dupss.service.impl.SlotServiceImpl;
+import com.dupss.app.BE_Dupss.support.JpaServiceTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lịch trống in-memory phải khớp với bảng slots sau mỗi lần tạo slot, đặt lịch và huỷ lịch trên cùng node,
+ * còn node khác thấy thay đổi chậm nhất sau ttl-seconds.
+ */
+@JpaServiceTest
+@Import({AppointmentServiceImpl.class, SlotServiceImpl.class, SlotAvailabilityCalendar.class})
+@MockitoBean(types = {
+        CurrentUserResolver.class,
+        EmailService.class,
+        AppointmentAutoAssigner.class,
+        AppointmentEventBroadcaster.class,
+        ConsultantRatingService.class
+})
+class SlotAvailabilityCalendarCoherenceTest {
+
+    private static final LocalTime NINE = LocalTime.of(9, 0);
+    private static final LocalTime TEN = LocalTime.of(10, 0);
+
+    @Autowired
+    private SlotServiceImpl slotService;
+    @Autowired
+    private AppointmentServiceImpl appointmentService;
+    @Autowired
+    private SlotAvailabilityCalendar calendar;
+    @Autowired
+    private CurrentUserResolver currentUserResolver;
+    @Autowired
+    private SlotRepository slotRepository;
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+
+    private User consultant;
+    private User member;
+    private Topic topic;
+    private LocalDate day;
+
+    @BeforeEach
+    void setUp() {
+        consultant = userRepository.save(user("consultant", ERole.ROLE_CONSULTANT));
+        member = userRepository.save(user("member", ERole.ROLE_MEMBER));
+        topic = topicRepository.save(topic("Tư vấn"));
+        day = LocalDate.now().plusDays(1);
+        when(currentUserResolver.findCurrentUser()).thenReturn(Optional.of(consultant));
+    }
+
+    @AfterEach
+    void tearDown() {
+        appointmentRepository.deleteAll();
+        slotRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void followsCreateBookAndCancel() {
+        // Nạp lịch trước khi có slot để mọi thay đổi sau đều đi qua hook
+        assertThat(startTimes(slotService.getAvailableSlotsByConsultantAndDate(consultant.getId(), day))).isEmpty();
+
+        SlotResponseDto nine = slotService.createSlot(new SlotRequestDto(day, NINE, NINE.plusHours(1)));
+        slotService.createSlot(new SlotRequestDto(day, TEN, TEN.plusHours(1)));
+        assertCoherent(NINE, TEN);
+
+        AppointmentRequestDto request = new AppointmentRequestDto();
+        request.setCustomerName("Thành viên");
+        request.setPhoneNumber("0900000000");
+        request.setEmail(member.getEmail());
+        request.setTopicId(topic.getId());
+        request.setSlotId(nine.getId());
+        request.setUserId(member.getId());
+        AppointmentResponseDto booked = appointmentService.createAppointment(request);
+        assertCoherent(TEN);
+
+        appointmentService.cancelAppointmentByUser(booked.getId(), member.getId());
+        assertCoherent(NINE, TEN);
+    }
+
+    @Test
+    void otherNodeSeesBookingAfterTtl() throws Exception {
+        SlotResponseDto nine = slotService.createSlot(new SlotRequestDto(day, NINE, NINE.plusHours(1)));
+        SlotAvailabilityCalendar otherNode = new SlotAvailabilityCalendar(slotRepository, userRepository,
+                new SimpleMeterRegistry(), 100, 1);
+        assertThat(startTimes(otherNode.findAvailableSlots(consultant.getId(), day).orElseThrow())).containsExactly(NINE);
+
+        AppointmentRequestDto request = new AppointmentRequestDto();
+        request.setCustomerName("Khách");
+        request.setPhoneNumber("0900000000");
+        request.setEmail("guest@dupss.com");
+        request.setTopicId(topic.getId());
+        request.setSlotId(nine.getId());
+        appointmentService.createAppointment(request);
+
+        // Node khác không nhận hook nên còn thấy slot cũ cho tới khi lịch hết hạn
+        assertThat(startTimes(otherNode.findAvailableSlots(consultant.getId(), day).orElseThrow())).containsExactly(NINE);
+        Thread.sleep(1100);
+        assertThat(startTimes(otherNode.findAvailableSlots(consultant.getId(), day).orElseThrow())).isEmpty();
+    }
+
+    /**
+     * Lịch của node này khớp với lịch nạp mới từ DB và với các giờ mong đợi.
+     */
+    private void assertCoherent(LocalTime... expected) {
+        SlotAvailabilityCalendar fresh = new SlotAvailabilityCalendar(slotRepository, userRepository,
+                new SimpleMeterRegistry(), 100, 60);
+        List<LocalTime> fromDatabase = startTimes(fresh.findAvailableSlots(consultant.getId(), day).orElseThrow());
+        List<LocalTime> cached = startTimes(calendar.findAvailableSlots(consultant.getId(), day).orElseThrow());
+        assertThat(cached).containsExactly(expected);
+        assertThat(cached).isEqualTo(fromDatabase);
+    }
+
+    private static List<LocalTime> startTimes(List<SlotResponseDto> slots) {
+        return slots.stream().map(SlotResponseDto::getStartTime).toList();
+    }
+}
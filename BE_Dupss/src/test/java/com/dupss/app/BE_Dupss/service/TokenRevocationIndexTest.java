@@ -0,0 +1,63 @@
+package com.dupss.app.BE_Dupss.service;
+
+import com.dupss.app.BE_Dupss.respository.InvalidatedTokenRepository;
+import com.dupss.app.BE_Dupss.support.JpaServiceTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Token logout ở một node phải bị node khác từ chối sau lần refresh kế tiếp, không cần khởi động lại.
+ */
+@JpaServiceTest
+class TokenRevocationIndexTest {
+
+    @Autowired
+    private InvalidatedTokenRepository invalidatedTokenRepository;
+
+    @AfterEach
+    void tearDown() {
+        invalidatedTokenRepository.deleteAll();
+    }
+
+    @Test
+    void otherNodeSeesRevocationAfterRefresh() {
+        TokenRevocationIndex node = startNode();
+        TokenRevocationIndex otherNode = startNode();
+
+        node.revoke("jti-1", new Date(System.currentTimeMillis() + 3_600_000));
+        assertThat(node.isRevoked("jti-1")).isTrue();
+        assertThat(otherNode.isRevoked("jti-1")).isFalse();
+
+        otherNode.refreshFromDatabase();
+        assertThat(otherNode.isRevoked("jti-1")).isTrue();
+    }
+
+    @Test
+    void refreshSkipsTokensThatAlreadyExpired() {
+        TokenRevocationIndex node = startNode();
+        TokenRevocationIndex otherNode = startNode();
+
+        node.revoke("jti-2", new Date(System.currentTimeMillis() + 3_600_000));
+        invalidatedTokenRepository.findById("jti-2").ifPresent(token -> {
+            token.setExpirationTime(new Date(System.currentTimeMillis() - 1000));
+            invalidatedTokenRepository.save(token);
+        });
+
+        otherNode.refreshFromDatabase();
+        assertThat(otherNode.isRevoked("jti-2")).isFalse();
+    }
+
+    private TokenRevocationIndex startNode() {
+        TokenRevocationIndex index = new TokenRevocationIndex(invalidatedTokenRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(index, "refreshOverlapMs", 60_000L);
+        index.loadFromDatabase();
+        return index;
+    }
+}
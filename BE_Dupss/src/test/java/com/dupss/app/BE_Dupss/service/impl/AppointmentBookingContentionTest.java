@@ -0,0 +1,138 @@
+package com.dupss.app.BE_Dupss.service.impl;
+
+import com.dupss.app.BE_Dupss.dto.request.AppointmentRequestDto;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.Slot;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository;
+import com.dupss.app.BE_Dupss.respository.SlotRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.support.AppointmentServiceTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.runConcurrently;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Nhiều thread cùng đặt lịch để kiểm tra createAppointment không bao giờ cho hai người giữ cùng một slot.
+ * Chạy trên H2 in-memory, mỗi lần đặt lịch là một transaction thật (test không bọc transaction).
+ */
+@AppointmentServiceTest
+class AppointmentBookingContentionTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private AppointmentServiceImpl appointmentService;
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+    @Autowired
+    private SlotRepository slotRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private User consultant;
+    private Topic topic;
+
+    @BeforeEach
+    void setUp() {
+        consultant = userRepository.save(user("consultant", ERole.ROLE_CONSULTANT));
+        topic = topicRepository.save(topic("Phòng chống ma tuý"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        appointmentRepository.deleteAll();
+        slotRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentBookingsOfSameSlotProduceExactlyOneAppointment() throws Exception {
+        Slot slot = createSlots(1).get(0);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(THREADS, THREADS, i -> {
+            try {
+                appointmentService.createAppointment(request(slot.getId(), i));
+                booked.incrementAndGet();
+            } catch (IllegalStateException e) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertThat(booked.get()).isEqualTo(1);
+        assertThat(rejected.get()).isEqualTo(THREADS - 1);
+        assertThat(appointmentRepository.count()).isEqualTo(1);
+        assertThat(slotRepository.findById(slot.getId()).orElseThrow().isAvailable()).isFalse();
+    }
+
+    @Test
+    void concurrentBookingsAcrossSlotsNeverDoubleBook() throws Exception {
+        int slotCount = 400;
+        List<Slot> slots = createSlots(slotCount);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        // Mỗi slot bị hai request tranh nhau
+        long start = System.nanoTime();
+        runConcurrently(THREADS, slotCount * 2, i -> {
+            try {
+                appointmentService.createAppointment(request(slots.get(i % slotCount).getId(), i));
+                booked.incrementAndGet();
+            } catch (IllegalStateException e) {
+                rejected.incrementAndGet();
+            }
+        });
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        assertThat(booked.get()).isEqualTo(slotCount);
+        assertThat(rejected.get()).isEqualTo(slotCount);
+        assertThat(appointmentRepository.count()).isEqualTo(slotCount);
+        assertThat(slotRepository.findAll()).noneMatch(Slot::isAvailable);
+        System.out.printf("Booking contention: %d attempts on %d slots with %d threads, %.0f bookings/sec%n",
+                slotCount * 2, slotCount, THREADS, booked.get() / seconds);
+    }
+
+    private List<Slot> createSlots(int count) {
+        List<Slot> slots = new ArrayList<>();
+        LocalDate date = LocalDate.now().plusDays(1);
+        for (int i = 0; i < count; i++) {
+            Slot slot = new Slot();
+            slot.setDate(date.plusDays(i / 24));
+            slot.setStartTime(LocalTime.of(i % 24, 0));
+            slot.setEndTime(LocalTime.of(i % 24, 30));
+            slot.setAvailable(true);
+            slot.setConsultant(consultant);
+            slots.add(slot);
+        }
+        return slotRepository.saveAll(slots);
+    }
+
+    private AppointmentRequestDto request(Long slotId, int index) {
+        AppointmentRequestDto request = new AppointmentRequestDto();
+        request.setCustomerName("Khách " + index);
+        request.setPhoneNumber("0900000000");
+        request.setEmail("guest" + index + "@dupss.com");
+        request.setTopicId(topic.getId());
+        request.setSlotId(slotId);
+        return request;
+    }
+}
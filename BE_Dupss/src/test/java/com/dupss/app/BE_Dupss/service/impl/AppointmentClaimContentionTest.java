@@ -0,0 +1,159 @@
+package com.dupss.app.BE_Dupss.service.impl;
+
+import com.dupss.app.BE_Dupss.dto.response.AppointmentResponseDto;
+import com.dupss.app.BE_Dupss.entity.Appointment;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.service.EmailService;
+import com.dupss.app.BE_Dupss.support.AppointmentServiceTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.runConcurrently;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Nhiều tư vấn viên cùng nhận một cuộc hẹn chưa phân công: chỉ một người được nhận và chỉ người đó gửi email.
+ * Chạy trên H2 in-memory, mỗi lượt nhận là một transaction thật (test không bọc transaction).
+ */
+@AppointmentServiceTest
+class AppointmentClaimContentionTest {
+
+    private static final int THREADS = 16;
+    private static final long PLACEHOLDER_CONSULTANT_ID = 2L;
+
+    @Autowired
+    private AppointmentServiceImpl appointmentService;
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EmailService emailService;
+
+    private User placeholder;
+    private List<User> consultants;
+    private Topic topic;
+
+    @BeforeEach
+    void setUp() {
+        // Tư vấn viên placeholder phải có đúng ID = 2, các user khác lấy ID từ 1000 để không trùng
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH 1000");
+        jdbcTemplate.update("INSERT INTO users (id, username, password, fullname, email, role, enabled) " +
+                "VALUES (?, 'placeholder', 'secret', 'Chưa phân công', 'placeholder@dupss.com', 'ROLE_CONSULTANT', true)",
+                PLACEHOLDER_CONSULTANT_ID);
+        placeholder = userRepository.findById(PLACEHOLDER_CONSULTANT_ID).orElseThrow();
+
+        consultants = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            consultants.add(userRepository.save(user("consultant" + i, ERole.ROLE_CONSULTANT)));
+        }
+        topic = topicRepository.save(topic("Phòng chống ma tuý"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        appointmentRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentClaimsOfSameAppointmentHaveExactlyOneWinner() throws Exception {
+        Appointment appointment = createPendingAppointments(1).get(0);
+        AtomicInteger won = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        Map<Long, Long> winners = new ConcurrentHashMap<>();
+
+        runConcurrently(THREADS, THREADS, i -> {
+            User consultant = consultants.get(i);
+            try {
+                AppointmentResponseDto claimed = appointmentService.claimAppointment(appointment.getId(), consultant.getId());
+                assertThat(claimed.getConsultantName()).isEqualTo(consultant.getFullname());
+                winners.put(claimed.getId(), consultant.getId());
+                won.incrementAndGet();
+            } catch (IllegalStateException e) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertThat(won.get()).isEqualTo(1);
+        assertThat(rejected.get()).isEqualTo(THREADS - 1);
+        Appointment stored = appointmentRepository.findById(appointment.getId()).orElseThrow();
+        assertThat(stored.getStatus()).isEqualTo("CONFIRMED");
+        assertThat(stored.getConsultant().getId()).isEqualTo(winners.get(appointment.getId()));
+        verify(emailService, times(1)).sendAppointmentStatusUpdate(any(), eq("PENDING"));
+    }
+
+    @Test
+    void concurrentClaimsAcrossAppointmentsAssignEachOnce() throws Exception {
+        int appointmentCount = 100;
+        int claimersPerAppointment = 4;
+        List<Appointment> appointments = createPendingAppointments(appointmentCount);
+        Map<Long, Long> winners = new ConcurrentHashMap<>();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(THREADS, appointmentCount * claimersPerAppointment, i -> {
+            Long appointmentId = appointments.get(i % appointmentCount).getId();
+            Long consultantId = consultants.get(i % consultants.size()).getId();
+            try {
+                appointmentService.claimAppointment(appointmentId, consultantId);
+                assertThat(winners.putIfAbsent(appointmentId, consultantId)).isNull();
+            } catch (IllegalStateException e) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertThat(winners).hasSize(appointmentCount);
+        assertThat(rejected.get()).isEqualTo(appointmentCount * (claimersPerAppointment - 1));
+        for (Appointment appointment : appointments) {
+            Appointment stored = appointmentRepository.findById(appointment.getId()).orElseThrow();
+            assertThat(stored.getStatus()).isEqualTo("CONFIRMED");
+            assertThat(stored.getConsultant().getId()).isEqualTo(winners.get(appointment.getId()));
+        }
+        verify(emailService, times(appointmentCount)).sendAppointmentStatusUpdate(any(), eq("PENDING"));
+    }
+
+    private List<Appointment> createPendingAppointments(int count) {
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setCustomerName("Khách " + i);
+            appointment.setPhoneNumber("0900000000");
+            appointment.setEmail("guest" + i + "@dupss.com");
+            appointment.setAppointmentDate(LocalDate.now().plusDays(1 + i / 24));
+            appointment.setAppointmentTime(LocalTime.of(i % 24, 0));
+            appointment.setTopic(topic);
+            appointment.setConsultant(placeholder);
+            appointment.setGuest(true);
+            appointment.setStatus("PENDING");
+            appointments.add(appointment);
+        }
+        return appointmentRepository.saveAll(appointments);
+    }
+}
@@ -0,0 +1,182 @@
+package com.dupss.app.BE_Dupss.service.impl;
+
+import com.dupss.app.BE_Dupss.dto.request.AppointmentSearchRequest;
+import com.dupss.app.BE_Dupss.dto.response.AppointmentResponseDto;
+import com.dupss.app.BE_Dupss.dto.response.CursorPageResponse;
+import com.dupss.app.BE_Dupss.entity.Appointment;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.AppointmentRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.support.AppointmentServiceTest;
+import com.dupss.app.BE_Dupss.support.QueryCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mỗi API danh sách cuộc hẹn phải chạy một số câu SQL cố định, không tăng theo số dòng
+ * (không có select phụ cho topic/consultant/user của từng cuộc hẹn).
+ */
+@AppointmentServiceTest
+class AppointmentListingQueryCountTest {
+
+    private static final int APPOINTMENTS_PER_OWNER = 6;
+    private static final String GUEST_EMAIL = "guest@dupss.com";
+    private static final long PLACEHOLDER_CONSULTANT_ID = 2L;
+
+    @Autowired
+    private AppointmentServiceImpl appointmentService;
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private QueryCounter queryCounter;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User member;
+    private User consultant;
+
+    @BeforeEach
+    void setUp() {
+        member = userRepository.save(user("member", ERole.ROLE_MEMBER));
+        consultant = userRepository.save(user("consultant", ERole.ROLE_CONSULTANT));
+        User otherConsultant = userRepository.save(user("consultant2", ERole.ROLE_CONSULTANT));
+
+        // Dùng nhiều topic và tư vấn viên khác nhau để lộ ra select phụ nếu có
+        List<Topic> topics = topicRepository.saveAll(List.of(topic("Chủ đề 1"), topic("Chủ đề 2"), topic("Chủ đề 3")));
+        String[] statuses = {"CONFIRMED", "COMPLETED", "CANCELLED"};
+        for (int i = 0; i < APPOINTMENTS_PER_OWNER; i++) {
+            Topic topic = topics.get(i % topics.size());
+            String status = statuses[i % statuses.length];
+            appointmentRepository.save(appointment(topic, consultant, member, null, status, i));
+            appointmentRepository.save(appointment(topic, otherConsultant, null, GUEST_EMAIL, status, i));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        appointmentRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void guestListingRunsOneQuery() {
+        List<AppointmentResponseDto> result = countQueries(1,
+                () -> appointmentService.getAppointmentsByGuestEmail(GUEST_EMAIL));
+        assertThat(result).hasSize(APPOINTMENTS_PER_OWNER);
+    }
+
+    @Test
+    void userListingRunsExistenceCheckAndOneQuery() {
+        List<AppointmentResponseDto> result = countQueries(2,
+                () -> appointmentService.getAppointmentsByUserId(member.getId()));
+        assertThat(result).hasSize(APPOINTMENTS_PER_OWNER)
+                .allSatisfy(dto -> assertThat(dto.getUserId()).isEqualTo(member.getId()));
+    }
+
+    @Test
+    void currentUserListingRunsExistenceCheckAndOneQuery() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken(member.getUsername(), null, "ROLE_MEMBER"));
+        List<AppointmentResponseDto> result = countQueries(2,
+                () -> appointmentService.getAllAppointmentsByUser(member.getId()));
+        assertThat(result).hasSize(APPOINTMENTS_PER_OWNER);
+    }
+
+    @Test
+    void consultantListingRunsOneQuery() {
+        List<AppointmentResponseDto> result = countQueries(1,
+                () -> appointmentService.getAppointmentsByConsultantId(consultant.getId()));
+        assertThat(result).hasSize(APPOINTMENTS_PER_OWNER)
+                .allSatisfy(dto -> assertThat(dto.getConsultantName()).isEqualTo(consultant.getFullname()));
+    }
+
+    @Test
+    void completedOrCanceledListingRunsOneQuery() {
+        List<AppointmentResponseDto> result = countQueries(1,
+                () -> appointmentService.getCompletedOrCanceledAppointmentsByConsultantId(consultant.getId()));
+        assertThat(result).hasSize(APPOINTMENTS_PER_OWNER * 2 / 3);
+    }
+
+    @Test
+    void unassignedListingRunsOneQuery() {
+        countQueries(1, () -> appointmentService.getUnassignedAppointments(null, 20));
+    }
+
+    @Test
+    void unassignedCountRunsOneQuery() {
+        // Cuộc hẹn chưa phân công nằm ở tư vấn viên placeholder ID = 2 (ID của các user khác đã vượt qua 2)
+        if (!userRepository.existsById(PLACEHOLDER_CONSULTANT_ID)) {
+            jdbcTemplate.update("INSERT INTO users (id, username, password, fullname, email, role, enabled) " +
+                    "VALUES (?, 'placeholder', 'secret', 'Chưa phân công', 'placeholder@dupss.com', 'ROLE_CONSULTANT', true)",
+                    PLACEHOLDER_CONSULTANT_ID);
+        }
+        User placeholder = userRepository.findById(PLACEHOLDER_CONSULTANT_ID).orElseThrow();
+        Topic topic = topicRepository.findAll().get(0);
+        for (int i = 0; i < 3; i++) {
+            appointmentRepository.save(appointment(topic, placeholder, null, GUEST_EMAIL, "PENDING", i));
+        }
+
+        long count = countQueries(1, () -> appointmentService.countUnassignedAppointments());
+        assertThat(count).isEqualTo(3);
+    }
+
+    @Test
+    void searchRunsOneQueryPerPage() {
+        AppointmentSearchRequest searchRequest = new AppointmentSearchRequest();
+        searchRequest.setSize(5);
+        Set<Long> seen = new HashSet<>();
+        CursorPageResponse<AppointmentResponseDto> page;
+        do {
+            page = countQueries(1, () -> appointmentService.searchAppointments(searchRequest));
+            page.getContent().forEach(dto -> assertThat(seen.add(dto.getId())).isTrue());
+            searchRequest.setCursor(page.getNextCursor());
+        } while (page.isHasNext());
+        assertThat(seen).hasSize(APPOINTMENTS_PER_OWNER * 2);
+    }
+
+    private <T> T countQueries(long expected, Supplier<T> listing) {
+        T result = queryCounter.run(listing);
+        assertThat(queryCounter.count()).isEqualTo(expected);
+        return result;
+    }
+
+    private Appointment appointment(Topic topic, User consultant, User user, String guestEmail, String status, int index) {
+        Appointment appointment = new Appointment();
+        appointment.setCustomerName("Khách " + index);
+        appointment.setPhoneNumber("0900000000");
+        appointment.setEmail(user != null ? user.getEmail() : guestEmail);
+        appointment.setAppointmentDate(LocalDate.now().plusDays(index));
+        appointment.setAppointmentTime(LocalTime.of(9, 0));
+        appointment.setTopic(topic);
+        appointment.setConsultant(consultant);
+        appointment.setUser(user);
+        appointment.setGuest(user == null);
+        appointment.setStatus(status);
+        return appointment;
+    }
+}
@@ -0,0 +1,136 @@
+package com.dupss.app.BE_Dupss.service.impl;
+
+import com.dupss.app.BE_Dupss.dto.response.SlotResponseDto;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.respository.SlotRepository;
+import com.dupss.app.BE_Dupss.respository.TopicRepo;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.service.AppointmentAutoAssigner;
+import com.dupss.app.BE_Dupss.service.CurrentUserResolver;
+import com.dupss.app.BE_Dupss.service.SlotAvailabilityCalendar;
+import com.dupss.app.BE_Dupss.support.JpaServiceTest;
+import com.dupss.app.BE_Dupss.support.QueryCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.topic;
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tìm slot trống sớm nhất trên 10.000 slot: bỏ slot của tư vấn viên placeholder (ID = 2) và tư vấn viên bị khoá,
+ * và số câu SQL có giới hạn kể cả khi phần lớn slot đầu bị lọc. Thời gian mỗi lần tìm (mục tiêu dưới 20 ms)
+ * đo bằng benchmark.EarliestSlotSearchBenchmark.
+ */
+@JpaServiceTest
+@Import(SlotServiceImpl.class)
+@MockitoBean(types = {CurrentUserResolver.class, SlotAvailabilityCalendar.class, AppointmentAutoAssigner.class})
+class EarliestSlotSearchTest {
+
+    private static final int SLOT_COUNT = 10_000;
+    private static final int SLOTS_PER_DAY = 200;
+    private static final long PLACEHOLDER_ID = 2L;
+
+    @Autowired
+    private SlotServiceImpl slotService;
+    @Autowired
+    private SlotRepository slotRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TopicRepo topicRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private QueryCounter queryCounter;
+
+    private User consultant;
+    private User placeholder;
+    private User lockedConsultant;
+    private Long topicId;
+    private LocalDate firstDay;
+
+    @BeforeEach
+    void setUp() {
+        // Placeholder phải có ID = 2 như dữ liệu thật
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH 1");
+        consultant = userRepository.save(user("consultant", ERole.ROLE_CONSULTANT));
+        placeholder = userRepository.save(user("placeholder", ERole.ROLE_CONSULTANT));
+        User locked = user("locked", ERole.ROLE_CONSULTANT);
+        locked.setEnabled(false);
+        lockedConsultant = userRepository.save(locked);
+        assertThat(placeholder.getId()).isEqualTo(PLACEHOLDER_ID);
+
+        topicId = topicRepository.save(topic("Tư vấn")).getId();
+        firstDay = LocalDate.now().plusDays(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        slotRepository.deleteAll();
+        topicRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void skipsPlaceholderAndLockedConsultants() {
+        // Ngày đầu toàn slot của placeholder, ngày thứ hai và ba của tư vấn viên bị khoá
+        seedSlots(SLOTS_PER_DAY, SLOTS_PER_DAY * 2);
+
+        List<SlotResponseDto> slots = queryCounter.run(() ->
+                slotService.findEarliestAvailableSlots(topicId, firstDay, firstDay.plusDays(60), 10));
+
+        assertThat(slots).hasSize(10);
+        assertThat(slots).allSatisfy(slot -> {
+            assertThat(slot.getConsultantName()).isEqualTo(consultant.getFullname());
+            assertThat(slot.getDate()).isEqualTo(firstDay.plusDays(3));
+        });
+        // topic, danh sách tư vấn viên, rồi 20 -> 80 -> 320 -> 1280 dòng slot (slot placeholder đã bị lọc trong SQL)
+        assertThat(queryCounter.count()).isLessThanOrEqualTo(6);
+    }
+
+    @Test
+    void stopsGrowingFetchAtCap() {
+        // Hầu hết slot thuộc tư vấn viên bị khoá: dừng ở mức trần thay vì đọc hết bảng
+        seedSlots(0, SLOT_COUNT - SLOTS_PER_DAY);
+
+        List<SlotResponseDto> slots = queryCounter.run(() ->
+                slotService.findEarliestAvailableSlots(topicId, firstDay, firstDay.plusDays(60), 10));
+
+        assertThat(slots).isEmpty();
+        // topic, danh sách tư vấn viên, rồi 20 -> 80 -> 320 -> 1280 -> 2000 dòng slot
+        assertThat(queryCounter.count()).isLessThanOrEqualTo(7);
+    }
+
+    /**
+     * Chèn SLOT_COUNT slot, SLOTS_PER_DAY slot mỗi ngày từ ngày mai: placeholderSlots slot đầu của placeholder,
+     * lockedSlots slot tiếp theo của tư vấn viên bị khoá, còn lại của tư vấn viên đang hoạt động.
+     */
+    private void seedSlots(int placeholderSlots, int lockedSlots) {
+        List<Object[]> rows = new ArrayList<>(SLOT_COUNT);
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            LocalDate date = firstDay.plusDays(i / SLOTS_PER_DAY);
+            LocalTime start = LocalTime.MIN.plusMinutes((i % SLOTS_PER_DAY) * 7L);
+            User owner = i < placeholderSlots ? placeholder
+                    : i < placeholderSlots + lockedSlots ? lockedConsultant : consultant;
+            rows.add(new Object[]{Date.valueOf(date), Time.valueOf(start), Time.valueOf(start.plusHours(1)),
+                    true, owner.getId()});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO slots (date, start_time, end_time, is_available, consultant_id) VALUES (?, ?, ?, ?, ?)",
+                rows);
+    }
+}
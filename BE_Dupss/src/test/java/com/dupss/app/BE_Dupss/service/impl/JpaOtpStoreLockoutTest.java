@@ -0,0 +1,113 @@
+package com.dupss.app.BE_Dupss.service.impl;
+
+import com.dupss.app.BE_Dupss.dto.request.ResetPasswordRequest;
+import com.dupss.app.BE_Dupss.dto.response.ResetPasswordResponse;
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.PasswordResetOtp;
+import com.dupss.app.BE_Dupss.entity.User;
+import com.dupss.app.BE_Dupss.exception.ResourceNotFoundException;
+import com.dupss.app.BE_Dupss.respository.PasswordResetOtpRepository;
+import com.dupss.app.BE_Dupss.respository.UserRepository;
+import com.dupss.app.BE_Dupss.service.EmailService;
+import com.dupss.app.BE_Dupss.service.OtpStore;
+import com.dupss.app.BE_Dupss.service.PasswordResetService;
+import com.dupss.app.BE_Dupss.support.JpaServiceTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.thymeleaf.TemplateEngine;
+
+import static com.dupss.app.BE_Dupss.support.TestFixtures.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * OTP lưu trong DB: lượt nhập sai làm resetPassword ném exception và rollback transaction của nó,
+ * nhưng số lần nhập vẫn phải được lưu để khoá OTP sau max-attempts lần sai.
+ */
+@JpaServiceTest
+@TestPropertySource(properties = {"app.otp.store=jpa", "app.otp.max-attempts=5"})
+@Import({PasswordResetServiceImpl.class, JpaOtpStore.class})
+class JpaOtpStoreLockoutTest {
+
+    private static final String OTP = "4321";
+    private static final String WRONG_OTP = "1234";
+
+    @Autowired
+    private PasswordResetService passwordResetService;
+    @Autowired
+    private OtpStore otpStore;
+    @Autowired
+    private PasswordResetOtpRepository otpRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private EmailService emailService;
+    @MockitoBean
+    private TemplateEngine templateEngine;
+    @MockitoBean
+    private PasswordEncoder passwordEncoder;
+
+    private User member;
+
+    @BeforeEach
+    void setUp() {
+        member = userRepository.save(user("member", ERole.ROLE_MEMBER));
+        otpStore.save(member.getEmail(), OTP);
+    }
+
+    @AfterEach
+    void tearDown() {
+        otpRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void sixthWrongGuessLocksOtp() {
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> passwordResetService.resetPassword(request(WRONG_OTP)))
+                    .isInstanceOf(ResourceNotFoundException.class);
+        }
+        PasswordResetOtp stored = otpRepository.findAll().get(0);
+        assertThat(stored.getAttempts()).isEqualTo(5);
+        assertThat(stored.isUsed()).isFalse();
+
+        ResetPasswordResponse locked = passwordResetService.resetPassword(request(WRONG_OTP));
+        assertThat(locked.isSuccess()).isFalse();
+        assertThat(otpRepository.findAll().get(0).isUsed()).isTrue();
+
+        // OTP đúng cũng không dùng được nữa sau khi đã bị khoá
+        assertThat(passwordResetService.resetPassword(request(OTP)).isSuccess()).isFalse();
+        verify(passwordEncoder, never()).encode(any());
+    }
+
+    @Test
+    void correctGuessWithinLimitResetsPassword() {
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> passwordResetService.resetPassword(request(WRONG_OTP)))
+                    .isInstanceOf(ResourceNotFoundException.class);
+        }
+        when(passwordEncoder.encode("newSecret123")).thenReturn("encoded");
+        assertThat(passwordResetService.resetPassword(request(OTP)).isSuccess()).isTrue();
+        assertThat(otpRepository.findAll().get(0).isUsed()).isTrue();
+        assertThat(userRepository.findById(member.getId()).orElseThrow().getPassword()).isEqualTo("encoded");
+    }
+
+    private ResetPasswordRequest request(String otp) {
+        ResetPasswordRequest request = new ResetPasswordRequest();
+        request.setEmail(member.getEmail());
+        request.setOtp(otp);
+        request.setNewPassword("newSecret123");
+        return request;
+    }
+}
@@ -0,0 +1,35 @@
+package com.dupss.app.BE_Dupss.support;
+
+import com.dupss.app.BE_Dupss.service.AppointmentAutoAssigner;
+import com.dupss.app.BE_Dupss.service.AppointmentEventBroadcaster;
+import com.dupss.app.BE_Dupss.service.ConsultantRatingService;
+import com.dupss.app.BE_Dupss.service.EmailService;
+import com.dupss.app.BE_Dupss.service.SlotAvailabilityCalendar;
+import com.dupss.app.BE_Dupss.service.impl.AppointmentServiceImpl;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Test AppointmentServiceImpl với repository thật, các phụ thuộc còn lại là mock.
+ * Thêm phụ thuộc mới cho AppointmentServiceImpl thì khai báo mock ở đây; test cần verify thì @Autowired mock đó.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@JpaServiceTest
+@Import(AppointmentServiceImpl.class)
+@MockitoBean(types = {
+        EmailService.class,
+        SlotAvailabilityCalendar.class,
+        AppointmentAutoAssigner.class,
+        AppointmentEventBroadcaster.class,
+        ConsultantRatingService.class
+})
+public @interface AppointmentServiceTest {
+}
@@ -0,0 +1,38 @@
+package com.dupss.app.BE_Dupss.support;
+
+import com.dupss.app.BE_Dupss.service.CloudinaryService;
+import com.dupss.app.BE_Dupss.service.ContentSearchIndex;
+import com.dupss.app.BE_Dupss.service.CourseDetailCache;
+import com.dupss.app.BE_Dupss.service.CourseEnrollmentCounter;
+import com.dupss.app.BE_Dupss.service.CourseService;
+import com.dupss.app.BE_Dupss.service.CurrentUserResolver;
+import com.dupss.app.BE_Dupss.service.SurveyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Test CourseService với repository và CourseDetailCache thật, các phụ thuộc còn lại là mock.
+ * Thêm phụ thuộc mới cho CourseService thì khai báo mock ở đây; test cần stub thì @Autowired mock đó.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@JpaServiceTest
+@Import({CourseService.class, CourseDetailCache.class})
+@MockitoBean(types = {
+        CurrentUserResolver.class,
+        CloudinaryService.class,
+        SurveyService.class,
+        ObjectMapper.class,
+        ContentSearchIndex.class,
+        CourseEnrollmentCounter.class
+})
+public @interface CourseServiceTest {
+}
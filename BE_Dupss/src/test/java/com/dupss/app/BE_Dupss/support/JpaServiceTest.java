@@ -0,0 +1,31 @@
+package com.dupss.app.BE_Dupss.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Test service trên H2 in-memory (cấu hình ở jpa-test.properties) với repository thật.
+ * Test không bọc transaction nên mỗi lời gọi service là một transaction thật, test tự dọn dữ liệu ở @AfterEach.
+ * Có sẵn SimpleMeterRegistry cho các bean đăng ký metric và QueryCounter để đếm câu SQL.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(locations = "classpath:jpa-test.properties")
+@Import({SimpleMeterRegistry.class, QueryCounter.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public @interface JpaServiceTest {
+}
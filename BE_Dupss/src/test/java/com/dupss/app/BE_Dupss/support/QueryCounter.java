@@ -0,0 +1,52 @@
+package com.dupss.app.BE_Dupss.support;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * Đếm số câu SQL Hibernate đã prepare (cần hibernate.generate_statistics=true).
+ */
+public class QueryCounter {
+
+    private final Statistics statistics;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public QueryCounter(EntityManagerFactory entityManagerFactory, PlatformTransactionManager transactionManager) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    /**
+     * Số câu SQL kể từ lần reset gần nhất.
+     */
+    public long count() {
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * Reset bộ đếm rồi chạy action ngoài transaction, như lời gọi service từ controller.
+     */
+    public <T> T run(Supplier<T> action) {
+        reset();
+        return action.get();
+    }
+
+    /**
+     * Reset bộ đếm rồi chạy action trong một transaction chỉ đọc giống open-in-view,
+     * để lazy load (nếu có) cũng bị đếm vào.
+     */
+    public <T> T runInReadOnlyTransaction(Supplier<T> action) {
+        reset();
+        return readOnlyTransaction.execute(status -> action.get());
+    }
+}
@@ -0,0 +1,70 @@
+package com.dupss.app.BE_Dupss.support;
+
+import com.dupss.app.BE_Dupss.entity.ERole;
+import com.dupss.app.BE_Dupss.entity.Topic;
+import com.dupss.app.BE_Dupss.entity.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dữ liệu mẫu và tiện ích dùng chung cho các test service. Các entity trả về chưa được lưu.
+ */
+public final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    public static User user(String username, ERole role) {
+        return User.builder()
+                .username(username)
+                .password("secret")
+                .fullname("Người dùng " + username)
+                .email(username + "@dupss.com")
+                .role(role)
+                .enabled(true)
+                .build();
+    }
+
+    public static Topic topic(String name) {
+        Topic topic = new Topic(name, "Chủ đề test");
+        topic.setActive(true);
+        return topic;
+    }
+
+    /**
+     * Chạy tasks lượt của task trên threads thread, mọi lượt cùng xuất phát sau một cổng chờ
+     * để tăng tranh chấp. Lỗi (kể cả assertion) trong task được ném lại cho test.
+     */
+    public static void runConcurrently(int threads, int tasks, IndexedTask task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch startGate = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                int index = i;
+                futures.add(pool.submit(() -> {
+                    startGate.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+            startGate.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    public interface IndexedTask {
+        void run(int index) throws Exception;
+    }
+}
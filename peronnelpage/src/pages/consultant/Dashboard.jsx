@@ -64,7 +64,7 @@ export default function ConsultantDashboard() {
       }
 
       // Use Promise.all with apiClient
-      const [appointmentsResponse, historyResponse, pendingResponse] = await Promise.all([
+      const [appointmentsResponse, historyResponse, pendingCount] = await Promise.all([
         apiClient.get(`/consultant/${userInfo.id}/appointments`, {
           headers: {
             Authorization: `Bearer ${localStorage.getItem('accessToken')}`
@@ -77,21 +77,17 @@ export default function ConsultantDashboard() {
           }
         }),
         
-        apiClient.get(`/consultant/appointments/unassigned`, {
-          headers: {
-            Authorization: `Bearer ${localStorage.getItem('accessToken')}`
-          }
-        })
+        countUnassignedAppointments()
       ]);
 
       // Combine data
       const allAppointments = [...appointmentsResponse.data, ...historyResponse.data];
       
       if (allAppointments.length > 0) {
-        calculateStats(allAppointments, pendingResponse.data.length);
+        calculateStats(allAppointments, pendingCount);
       } else {
         setStats({
-          pending: pendingResponse.data.length,
+          pending: pendingCount,
           confirmed: 0,
           completed: 0,
           cancelled: 0
@@ -103,6 +99,16 @@ export default function ConsultantDashboard() {
     }
   };
 
+  // Backend đếm bằng COUNT trên index (status, consultant_id), không cần tải hàng chờ về để đếm
+  const countUnassignedAppointments = async () => {
+    const response = await apiClient.get(`/consultant/appointments/unassigned/count`, {
+      headers: {
+        Authorization: `Bearer ${localStorage.getItem('accessToken')}`
+      }
+    });
+    return response.data.count;
+  };
+
   const calculateStats = (appointments, pendingCount) => {
     // Count appointments by status
     const confirmedAppointments = appointments.filter(appt => appt.status === 'CONFIRMED');